@@ -0,0 +1,28 @@
+/*
+ * Copyright 2020 <Copyright Vasu Gupta>
+ * Vasu Gupta
+ * Email: vasu99g@gmail.com
+ */
+
+package benchmark;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * <b>BenchmarkRunner</b> runs the benchmarks with the GC profiler, so the allocation rate is reported next to the
+ * time of every operation. It accepts the same arguments as the JMH command line, for example
+ * {@code -p nodeSize=1500 -rf json -rff baseline.json cutPaste}.
+ */
+public class BenchmarkRunner {
+    public static void main(String[] args) throws RunnerException, CommandLineOptionException {
+        new Runner(new OptionsBuilder()
+                .parent(new CommandLineOptions(args))
+                .addProfiler(GCProfiler.class)
+                .build()).run();
+    }
+}
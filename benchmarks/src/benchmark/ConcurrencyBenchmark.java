@@ -0,0 +1,124 @@
+/*
+ * Copyright 2020 <Copyright Vasu Gupta>
+ * Vasu Gupta
+ * Email: vasu99g@gmail.com
+ */
+
+package benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import texteditor.TextEditor;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * <b>ConcurrencyBenchmark</b> represents the benchmarks of a {@link TextEditor} edited by one thread while other
+ * threads read it. Every group runs one editing thread next to the reading threads, and the edit group without
+ * readers is the baseline, so the cost of the readers on the edits (and of the edits on the readers) can be compared.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(value = 2, jvmArgsAppend = {"-Xms2g", "-Xmx2g"})
+public class ConcurrencyBenchmark {
+    /**
+     * <b>SharedDocument</b> represents the editor shared by the threads of a group.
+     */
+    @State(Scope.Group)
+    public static class SharedDocument {
+        @Param({"2162041"})
+        int documentSize; // number of characters in the document
+
+        @Param({"1500"})
+        int nodeSize; // number of characters per node
+
+        String text; // text of the document
+        TextEditor editor; // editor containing the text
+
+        /**
+         * Builds the text of the document by repeating the sample text.
+         *
+         * @throws IOException if the sample text cannot be read
+         */
+        @Setup(Level.Trial)
+        public void loadText() throws IOException {
+            text = TextEditorBenchmark.sampleText(documentSize);
+        }
+
+        /**
+         * Creates a new editor, so the edits of an iteration do not carry over to the next one.
+         */
+        @Setup(Level.Iteration)
+        public void createEditor() {
+            editor = new TextEditor(text, nodeSize);
+        }
+    }
+
+    @Benchmark
+    @Group("edit")
+    @GroupThreads(1)
+    public int edit(SharedDocument document, TextEditorBenchmark.Edits edits) {
+        return TextEditorBenchmark.cutPaste(document.editor, edits);
+    }
+
+    @Benchmark
+    @Group("editWhileCountingMisspellings")
+    @GroupThreads(1)
+    public int editWhileCountingMisspellings(SharedDocument document, TextEditorBenchmark.Edits edits) {
+        return TextEditorBenchmark.cutPaste(document.editor, edits);
+    }
+
+    @Benchmark
+    @Group("editWhileCountingMisspellings")
+    @GroupThreads(3)
+    public int countMisspellings(SharedDocument document) {
+        return document.editor.misspellings();
+    }
+
+    @Benchmark
+    @Group("editWhileGettingText")
+    @GroupThreads(1)
+    public int editWhileGettingText(SharedDocument document, TextEditorBenchmark.Edits edits) {
+        return TextEditorBenchmark.cutPaste(document.editor, edits);
+    }
+
+    @Benchmark
+    @Group("editWhileGettingText")
+    @GroupThreads(3)
+    public String getText(SharedDocument document) {
+        return document.editor.getText();
+    }
+
+    @Benchmark
+    @Group("editWhileExporting")
+    @GroupThreads(1)
+    public int editWhileExporting(SharedDocument document, TextEditorBenchmark.Edits edits) {
+        return TextEditorBenchmark.cutPaste(document.editor, edits);
+    }
+
+    @Benchmark
+    @Group("editWhileExporting")
+    @GroupThreads(3)
+    public Writer export(SharedDocument document) throws IOException {
+        Writer writer = Writer.nullWriter();
+        document.editor.writeTo(writer);
+
+        return writer;
+    }
+}
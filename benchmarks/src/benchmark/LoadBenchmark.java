@@ -0,0 +1,94 @@
+/*
+ * Copyright 2020 <Copyright Vasu Gupta>
+ * Vasu Gupta
+ * Email: vasu99g@gmail.com
+ */
+
+package benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import texteditor.TextEditor;
+import texteditor.UnrolledTextList;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * <b>LoadBenchmark</b> represents the benchmarks of the startup of an editor on a large file: the time to stream the
+ * file into the nodes, and, through the GC profiler of {@link BenchmarkRunner}, the bytes allocated by a load. Every
+ * invocation loads the whole file once, so the benchmarks run in single shot mode on a fixed heap.
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 10)
+@Fork(value = 2, jvmArgsAppend = {"-Xms2g", "-Xmx2g"})
+public class LoadBenchmark {
+    /**
+     * <b>LargeFile</b> represents the file loaded by the benchmarks.
+     */
+    @State(Scope.Benchmark)
+    public static class LargeFile {
+        @Param({"2162041", "134217728"})
+        int fileSize; // number of characters in the file, 128M for the large file
+
+        @Param({"1500", "6000"})
+        int nodeSize; // number of characters per node
+
+        Path path; // path of the file
+
+        /**
+         * Writes the file by repeating the sample text, which is ASCII, so the file has one byte per character.
+         *
+         * @throws IOException if the sample text cannot be read or the file cannot be written
+         */
+        @Setup(Level.Trial)
+        public void writeFile() throws IOException {
+            byte[] sample = TextEditorBenchmark.sampleText(Math.min(fileSize, 1 << 21))
+                    .getBytes(StandardCharsets.UTF_8);
+            path = Files.createTempFile("load-benchmark", ".txt");
+
+            try (OutputStream output = Files.newOutputStream(path)) {
+                for (long written = 0; written < fileSize; written += sample.length) {
+                    output.write(sample, 0, (int) Math.min(sample.length, fileSize - written));
+                }
+            }
+        }
+
+        /**
+         * Deletes the file.
+         *
+         * @throws IOException if the file cannot be deleted
+         */
+        @TearDown(Level.Trial)
+        public void deleteFile() throws IOException {
+            Files.deleteIfExists(path);
+        }
+    }
+
+    @Benchmark
+    public TextEditor openEditor(LargeFile file) throws IOException {
+        return new TextEditor(file.path, file.nodeSize);
+    }
+
+    @Benchmark
+    public UnrolledTextList loadList(LargeFile file) throws IOException {
+        return UnrolledTextList.load(file.path, file.nodeSize);
+    }
+}
@@ -0,0 +1,454 @@
+/*
+ * Copyright 2020 <Copyright Vasu Gupta>
+ * Vasu Gupta
+ * Email: vasu99g@gmail.com
+ */
+
+package benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import texteditor.EditorStats;
+import texteditor.Match;
+import texteditor.TextEdit;
+import texteditor.TextEditor;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * <b>TextEditorBenchmark</b> represents the benchmarks of the operations of a {@link TextEditor}.
+ * <p>
+ * The documents are built by repeating sample.txt, and every iteration starts with a new editor and the same seed,
+ * so the sequence of edits is repeatable across runs. Run {@link BenchmarkRunner} to also report the allocation
+ * rate.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(value = 2, jvmArgsAppend = {"-Xms2g", "-Xmx2g"})
+public class TextEditorBenchmark {
+    private static final String SAMPLE = "/test/sample.txt"; // sample.txt contains 2,162,041 characters
+    private static final long SEED = 42; // seed of the edits, so every run performs the same edits
+    private static final int BATCH_SIZE = 100; // number of edits in a batch
+    private static final String PATTERN = "consectetur adipiscing"; // pattern searched by indexOf
+    private static final List<String> PATTERNS = List.of("tincidunt", "consectetur adipiscing", "morbi"); // findAll
+
+    /**
+     * <b>Document</b> represents the editor the operations are performed on.
+     */
+    @State(Scope.Thread)
+    public static class Document {
+        @Param({"100000", "2162041"})
+        int documentSize; // number of characters in the document
+
+        @Param({"500", "1500", "6000"})
+        int nodeSize; // number of characters per node
+
+        String text; // text of the document
+        TextEditor editor; // editor containing the text
+
+        /**
+         * Builds the text of the document by repeating the sample text.
+         *
+         * @throws IOException if the sample text cannot be read
+         */
+        @Setup(Level.Trial)
+        public void loadText() throws IOException {
+            text = sampleText(documentSize);
+        }
+
+        /**
+         * Creates a new editor, so the edits of an iteration do not carry over to the next one.
+         */
+        @Setup(Level.Iteration)
+        public void createEditor() {
+            editor = new TextEditor(text, nodeSize);
+        }
+    }
+
+    /**
+     * <b>Edits</b> represents the random positions and lengths of the edits.
+     */
+    @State(Scope.Thread)
+    public static class Edits {
+        @Param({"LOCAL", "PARAGRAPH", "UNIFORM"})
+        Span span; // distribution of the edit lengths
+
+        private SplittableRandom random; // source of the positions and lengths
+        private int position; // position of the previous edit
+
+        /**
+         * Restarts the edits from the seed.
+         */
+        @Setup(Level.Iteration)
+        public void reset() {
+            random = new SplittableRandom(SEED);
+            position = 0;
+        }
+
+        /**
+         * Returns the starting index of the next edit in a document of the given length.
+         *
+         * @param length number of characters in the document
+         * @return index of the first character of the edit
+         */
+        int start(int length) {
+            position = span.start(random, position, length);
+            return position;
+        }
+
+        /**
+         * Returns the ending index (exclusive) of the next edit starting at the given index.
+         *
+         * @param start index of the first character of the edit
+         * @param length number of characters in the document
+         * @return index after the last character of the edit
+         */
+        int end(int start, int length) {
+            return span.end(random, start, length);
+        }
+
+        /**
+         * Returns the position of the next paste in a document of the given length.
+         *
+         * @param length number of characters in the document
+         * @return index of the character the clipboard is pasted at
+         */
+        int paste(int length) {
+            return span.start(random, position, length);
+        }
+    }
+
+    /**
+     * <b>Mix</b> represents the relative frequencies of the operations in the mixed workload.
+     */
+    @State(Scope.Thread)
+    public static class Mix {
+        @Param({"40:40:10:10", "10:10:40:40"})
+        String weights; // weights of cut/paste, copy/paste, getText and misspellings
+
+        private int[] thresholds; // cumulative weights of the operations
+        private SplittableRandom random; // source of the operations
+
+        /**
+         * Parses the weights and restarts the operations from the seed.
+         */
+        @Setup(Level.Iteration)
+        public void reset() {
+            String[] parts = weights.split(":");
+
+            if (parts.length != 4) {
+                throw new IllegalArgumentException("Mix must have 4 weights: " + weights);
+            }
+
+            thresholds = new int[parts.length];
+            int total = 0;
+
+            for (int k = 0; k < parts.length; k++) {
+                total += Integer.parseInt(parts[k]);
+                thresholds[k] = total;
+            }
+
+            random = new SplittableRandom(SEED + 1);
+        }
+
+        /**
+         * Picks the next operation.
+         *
+         * @return index of the operation in the weights
+         */
+        int next() {
+            int k = random.nextInt(thresholds[thresholds.length - 1]);
+            int operation = 0;
+
+            while (k >= thresholds[operation]) {
+                operation++;
+            }
+
+            return operation;
+        }
+    }
+
+    /**
+     * <b>Measured</b> represents the statistics collected from the editor, to measure the cost of the metrics.
+     */
+    @State(Scope.Thread)
+    public static class Measured {
+        EditorStats stats; // statistics of the editor of the iteration
+
+        /**
+         * Starts collecting the statistics of the new editor.
+         *
+         * @param document the editor the operations are performed on
+         */
+        @Setup(Level.Iteration)
+        public void attach(Document document) {
+            stats = new EditorStats(document.editor);
+            document.editor.setMetrics(stats);
+        }
+    }
+
+    /**
+     * <b>Span</b> represents a distribution of the edit positions and lengths.
+     */
+    public enum Span {
+        /**
+         * Edits of at most 100 characters within 500 characters of the previous edit, like typing or moving text
+         * within a paragraph.
+         */
+        LOCAL {
+            @Override
+            int start(SplittableRandom random, int previous, int length) {
+                return random.nextInt(Math.max(0, previous - 500), Math.max(1, Math.min(length, previous + 500)));
+            }
+
+            @Override
+            int end(SplittableRandom random, int start, int length) {
+                return start + random.nextInt(Math.min(100, length - start) + 1);
+            }
+        },
+
+        /**
+         * Edits of at most 5,000 characters anywhere in the document.
+         */
+        PARAGRAPH {
+            @Override
+            int end(SplittableRandom random, int start, int length) {
+                return start + random.nextInt(Math.min(5_000, length - start) + 1);
+            }
+        },
+
+        /**
+         * Edits ending anywhere after their start, so on average a third of the document is edited.
+         */
+        UNIFORM {
+            @Override
+            int end(SplittableRandom random, int start, int length) {
+                return start + random.nextInt(length - start + 1);
+            }
+        };
+
+        /**
+         * Returns the starting index of an edit.
+         *
+         * @param random the source of the index
+         * @param previous index of the previous edit
+         * @param length number of characters in the document
+         * @return index of the first character of the edit
+         */
+        int start(SplittableRandom random, int previous, int length) {
+            return random.nextInt(Math.max(1, length));
+        }
+
+        /**
+         * Returns the ending index (exclusive) of an edit.
+         *
+         * @param random the source of the index
+         * @param start index of the first character of the edit
+         * @param length number of characters in the document
+         * @return index after the last character of the edit
+         */
+        abstract int end(SplittableRandom random, int start, int length);
+    }
+
+    @Benchmark
+    public int cutPaste(Document document, Edits edits) {
+        return cutPaste(document.editor, edits);
+    }
+
+    @Benchmark
+    public int cutPasteMeasured(Document document, Edits edits, Measured measured) {
+        return cutPaste(document.editor, edits);
+    }
+
+    @Benchmark
+    public int copyPaste(Document document, Edits edits) {
+        return copyPaste(document.editor, edits);
+    }
+
+    @Benchmark
+    public String getText(Document document) {
+        return document.editor.getText();
+    }
+
+    @Benchmark
+    public Writer writeTo(Document document) throws IOException {
+        Writer writer = Writer.nullWriter();
+        document.editor.writeTo(writer);
+
+        return writer;
+    }
+
+    @Benchmark
+    public int misspellings(Document document) {
+        return document.editor.misspellings();
+    }
+
+    @Benchmark
+    public int indexOf(Document document, Edits edits) {
+        return document.editor.indexOf(PATTERN, edits.start(document.text.length()));
+    }
+
+    @Benchmark
+    public int lines(Document document, Edits edits) {
+        int line = document.editor.offsetToLine(edits.start(document.text.length()));
+
+        return document.editor.lineToOffset(line);
+    }
+
+    @Benchmark
+    public List<String> suggest(Document document, Edits edits) {
+        return document.editor.suggest(edits.start(document.text.length()), 5);
+    }
+
+    @Benchmark
+    public List<Match> findAll(Document document) {
+        return document.editor.findAll(PATTERNS);
+    }
+
+    @Benchmark
+    public TextEditor load(Document document) {
+        return new TextEditor(document.text, document.nodeSize);
+    }
+
+    @Benchmark
+    public int applyBatch(Document document, Edits edits) {
+        document.editor.applyBatch(batch(document, edits));
+
+        return document.editor.misspellings();
+    }
+
+    @Benchmark
+    public int applyOneByOne(Document document, Edits edits) {
+        for (TextEdit edit : batch(document, edits)) {
+            document.editor.applyBatch(List.of(edit));
+        }
+
+        return document.editor.misspellings();
+    }
+
+    @Benchmark
+    public Object mixed(Document document, Edits edits, Mix mix) {
+        switch (mix.next()) {
+            case 0:
+                return cutPaste(document.editor, edits);
+            case 1:
+                return copyPaste(document.editor, edits);
+            case 2:
+                return document.editor.getText();
+            default:
+                return document.editor.misspellings();
+        }
+    }
+
+    ///////////////////////////////////////////////////////////////////////////////////////
+    ////  Util methods
+    ///////////////////////////////////////////////////////////////////////////////////////
+
+    /**
+     * Builds a text of the given length by repeating the sample text.
+     *
+     * @param length number of characters in the text
+     * @return the text
+     * @throws IOException if the sample text cannot be read
+     */
+    static String sampleText(int length) throws IOException {
+        String sample;
+
+        try (InputStream input = TextEditorBenchmark.class.getResourceAsStream(SAMPLE)) {
+            if (input == null) {
+                throw new IOException(SAMPLE + " is not on the classpath");
+            }
+
+            sample = new String(input.readAllBytes(), StandardCharsets.UTF_8);
+        }
+
+        StringBuilder builder = new StringBuilder(length);
+
+        while (builder.length() < length) {
+            builder.append(sample, 0, Math.min(sample.length(), length - builder.length()));
+        }
+
+        return builder.toString();
+    }
+
+    /**
+     * Cuts the next edit and pastes it at another position.
+     *
+     * @param editor the editor to edit
+     * @param edits the positions and lengths of the edits
+     * @return number of misspelled words after the edit
+     */
+    static int cutPaste(TextEditor editor, Edits edits) {
+        int length = editor.getTextView().length();
+        int start = edits.start(length);
+        int end = edits.end(start, length);
+
+        editor.cut(start, end);
+        editor.paste(edits.paste(length - (end - start)));
+
+        return editor.misspellings();
+    }
+
+    /**
+     * Builds a batch of the next edits, each replacing the characters with as many characters from another position
+     * of the document, so the document keeps its size across invocations.
+     *
+     * @param document the document to edit
+     * @param edits the positions and lengths of the edits
+     * @return the batch of edits
+     */
+    private static List<TextEdit> batch(Document document, Edits edits) {
+        int length = document.text.length();
+        List<TextEdit> batch = new ArrayList<>(BATCH_SIZE);
+
+        for (int k = 0; k < BATCH_SIZE; k++) {
+            int start = edits.start(length);
+            int end = edits.end(start, length);
+            int from = edits.paste(length - (end - start));
+            batch.add(TextEdit.replace(start, end, document.text.substring(from, from + (end - start))));
+        }
+
+        return batch;
+    }
+
+    /**
+     * Copies the next edit and pastes it at another position, then cuts as many characters at a third position,
+     * so the document keeps its size across invocations.
+     *
+     * @param editor the editor to edit
+     * @param edits the positions and lengths of the edits
+     * @return number of misspelled words after the edit
+     */
+    private static int copyPaste(TextEditor editor, Edits edits) {
+        int length = editor.getTextView().length();
+        int start = edits.start(length);
+        int end = edits.end(start, length);
+
+        editor.copy(start, end);
+        editor.paste(edits.paste(length));
+
+        int cut = edits.paste(length);
+        editor.cut(cut, cut + (end - start));
+
+        return editor.misspellings();
+    }
+}
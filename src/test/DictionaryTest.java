@@ -0,0 +1,191 @@
+package test;
+
+import texteditor.Dictionary;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+public class DictionaryTest {
+    public static void main(String[] args) throws IOException {
+        Path directory = Files.createTempDirectory("dictionary");
+        Path source = directory.resolve("words");
+        Path compiled = directory.resolve("words.dict");
+        Path index = directory.resolve("words.dict.suggest");
+
+        boolean testPassed;
+
+        try {
+            testPassed = testLookup(source, compiled) && testCorrupted(source, compiled)
+                    && testRecompile(source, compiled) && testSuggestions(source, compiled, index)
+                    && testLatin1(source, compiled);
+        } finally {
+            Files.deleteIfExists(source);
+            Files.deleteIfExists(compiled);
+            Files.deleteIfExists(index);
+            Files.delete(directory);
+        }
+
+        if (testPassed) {
+            System.out.println("All tests passed!");
+        } else {
+            System.out.println("All tests didn't pass :(");
+        }
+    }
+
+    private static boolean testLookup(Path source, Path compiled) throws IOException {
+        Files.write(source, Arrays.asList("zebra", "apple", "caf\u00e9", "apple", "Apple", "app"));
+
+        // the first load compiles the dictionary, the second one maps the compiled file
+        Dictionary dictionary = Dictionary.load(source, compiled);
+        Dictionary mapped = Dictionary.load(source, compiled);
+
+        return Files.exists(compiled) && checkWords(dictionary) && checkWords(mapped);
+    }
+
+    private static boolean testCorrupted(Path source, Path compiled) throws IOException {
+        // an offset pointing past the characters, in a file which keeps the header and the total length
+        ByteBuffer bytes = ByteBuffer.wrap(Files.readAllBytes(compiled));
+        bytes.putInt(28 + Integer.BYTES, Integer.MAX_VALUE);
+        Files.write(compiled, bytes.array());
+
+        Dictionary dictionary = Dictionary.load(source, compiled);
+
+        return checkWords(dictionary) && checkWords(Dictionary.load(source, compiled));
+    }
+
+    private static boolean testRecompile(Path source, Path compiled) throws IOException {
+        Files.write(source, Arrays.asList("banana"));
+        Files.setLastModifiedTime(source, FileTime.fromMillis(0));
+        Dictionary dictionary = Dictionary.load(source, compiled);
+
+        return dictionary.contains("banana") && !dictionary.contains("apple");
+    }
+
+    private static boolean testLatin1(Path source, Path compiled) throws IOException {
+        // a words file which is not valid UTF-8 is read as Latin-1 instead of failing
+        Files.write(source, "zebra\ncaf\u00e9\n".getBytes(StandardCharsets.ISO_8859_1));
+        Files.setLastModifiedTime(source, FileTime.fromMillis(2));
+        Dictionary dictionary = Dictionary.load(source, compiled);
+
+        return dictionary.contains("caf\u00e9") && dictionary.contains("zebra") && !dictionary.contains("banana");
+    }
+
+    private static boolean testSuggestions(Path source, Path compiled, Path index) throws IOException {
+        Files.write(source, Arrays.asList("apple", "apply", "ample", "maple", "applet", "pale", "banana", "a"));
+        Files.setLastModifiedTime(source, FileTime.fromMillis(1));
+        Dictionary dictionary = Dictionary.load(source, compiled);
+
+        // the closest words come first, then the ones of the closest length, then in alphabetical order
+        if (!dictionary.suggest("aple", 10).equals(List.of("pale", "ample", "apple", "maple", "apply", "applet"))
+                || !dictionary.suggest("apple", 2).equals(List.of("apple", "ample"))
+                || !dictionary.suggest("pplae", 10).equals(List.of("apple", "pale"))
+                || !dictionary.suggest("xyz", 10).isEmpty() || !dictionary.suggest("aple", 0).isEmpty()
+                || !Files.exists(index)) {
+            return false;
+        }
+
+        // deletes pointing past the words, in an index which keeps the header and the size
+        ByteBuffer bytes = ByteBuffer.wrap(Files.readAllBytes(index));
+
+        for (int i = bytes.limit() - bytes.getInt(28) * Integer.BYTES; i < bytes.limit(); i += Integer.BYTES) {
+            bytes.putInt(i, Integer.MAX_VALUE);
+        }
+
+        Files.write(index, bytes.array());
+
+        if (!Dictionary.load(source, compiled).suggest("aple", 10)
+                .equals(List.of("pale", "ample", "apple", "maple", "apply", "applet"))) {
+            return false;
+        }
+
+        // short words over a small alphabet have many neighbours, which must all be found
+        Random random = new Random(3);
+        List<String> words = new ArrayList<>();
+
+        for (int k = 0; k < 3000; k++) {
+            words.add(randomWord(random));
+        }
+
+        Files.write(source, words);
+        Files.setLastModifiedTime(source, FileTime.fromMillis(2));
+        Dictionary built = Dictionary.load(source, compiled);
+        Dictionary mapped = Dictionary.load(source, compiled);
+
+        for (int k = 0; k < 300; k++) {
+            String word = randomWord(random);
+            Set<String> expected = new HashSet<>();
+
+            for (String candidate : words) {
+                if (distance(word, candidate) <= 2) {
+                    expected.add(candidate);
+                }
+            }
+
+            List<String> suggestions = built.suggest(word, Integer.MAX_VALUE);
+
+            if (!new HashSet<>(suggestions).equals(expected) || suggestions.size() != expected.size()
+                    || !mapped.suggest(word, Integer.MAX_VALUE).equals(suggestions)) {
+                return false;
+            }
+
+            for (int i = 1; i < suggestions.size(); i++) {
+                if (distance(word, suggestions.get(i - 1)) > distance(word, suggestions.get(i))) {
+                    return false;
+                }
+            }
+        }
+
+        return true;
+    }
+
+    private static String randomWord(Random random) {
+        StringBuilder word = new StringBuilder();
+        int length = 1 + random.nextInt(10);
+
+        for (int i = 0; i < length; i++) {
+            word.append("abcde".charAt(random.nextInt(5)));
+        }
+
+        return word.toString();
+    }
+
+    private static int distance(String a, String b) {
+        // optimal string alignment distance, computed over the whole table
+        int[][] table = new int[a.length() + 1][b.length() + 1];
+
+        for (int i = 0; i <= a.length(); i++) {
+            for (int j = 0; j <= b.length(); j++) {
+                if (i == 0 || j == 0) {
+                    table[i][j] = i + j;
+                    continue;
+                }
+
+                int cost = a.charAt(i - 1) == b.charAt(j - 1) ? 0 : 1;
+                table[i][j] = Math.min(Math.min(table[i - 1][j] + 1, table[i][j - 1] + 1), table[i - 1][j - 1] + cost);
+
+                if (i > 1 && j > 1 && a.charAt(i - 1) == b.charAt(j - 2) && a.charAt(i - 2) == b.charAt(j - 1)) {
+                    table[i][j] = Math.min(table[i][j], table[i - 2][j - 2] + 1);
+                }
+            }
+        }
+
+        return table[a.length()][b.length()];
+    }
+
+    private static boolean checkWords(Dictionary dictionary) {
+        return dictionary.contains("apple") && dictionary.contains("Apple") && dictionary.contains("app")
+                && dictionary.contains("zebra") && dictionary.contains("caf\u00e9")
+                && !dictionary.contains("appl") && !dictionary.contains("apples") && !dictionary.contains("")
+                && dictionary.contains("a zebra crossing", 2, 7) && !dictionary.contains("a zebra crossing", 2, 8);
+    }
+}
@@ -0,0 +1,186 @@
+/*
+ * Copyright 2020 <Copyright Vasu Gupta>
+ * Vasu Gupta
+ * Email: vasu99g@gmail.com
+ */
+
+package test;
+
+import texteditor.OffHeapTextList;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Random;
+
+public class OffHeapTextListTest {
+    public static void main(String[] args) throws IOException {
+        boolean testPassed = testEdits() && testRandomEdits() && testLines() && testLoad() && testBlockReuse();
+
+        if (testPassed) {
+            System.out.println("All tests passed!");
+        } else {
+            System.out.println("All tests didn't pass :(");
+        }
+    }
+
+    private static boolean testEdits() {
+        OffHeapTextList document = new OffHeapTextList(8);
+        document.insert(0, "Hello World!");
+        document.insert(5, ",");
+        document.insert(document.length(), " Today is a good day");
+        document.delete(13, 22);
+
+        boolean edited = document.substring(0, document.length()).equals("Hello, World! a good day")
+                && document.charAt(7) == 'W' && document.indexOf('d', 0) == 11 && document.indexOf('d', 12) == 19
+                && document.indexOf('z', 0) == -1 && document.segments() > 1;
+
+        document.delete(0, Long.MAX_VALUE);
+        edited &= document.length() == 0 && document.segments() == 0 && document.substring(0, 0).isEmpty();
+
+        // an arena holds fewer blocks of large segments, and never overflows an int
+        OffHeapTextList large = new OffHeapTextList(1 << 22);
+        large.insert(0, "abc");
+
+        try {
+            new OffHeapTextList(OffHeapTextList.MAX_SEGMENT_SIZE + 1);
+            return false;
+        } catch (IllegalArgumentException e) {
+            // the segment size is checked by the constructor
+        }
+
+        return edited && large.substring(0, 3).equals("abc") && large.offHeapBytes() == 1 << 26;
+    }
+
+    private static boolean testRandomEdits() throws IOException {
+        Random random = new Random(21);
+        String[] characters = {"a", "b", " ", "\n", "\u00e9", "\u20ac", "\ud83d\ude00"};
+        OffHeapTextList document = new OffHeapTextList(16);
+        StringBuilder expected = new StringBuilder();
+
+        for (int k = 0; k < 2000; k++) {
+            if (random.nextInt(3) > 0 || expected.length() == 0) {
+                StringBuilder text = new StringBuilder();
+
+                for (int n = random.nextInt(40); n >= 0; n--) {
+                    text.append(characters[random.nextInt(characters.length)]);
+                }
+
+                int i = random.nextInt(expected.length() + 1);
+                document.insert(i, text);
+                expected.insert(i, text);
+            } else {
+                int i = random.nextInt(expected.length());
+                int j = Math.min(i + random.nextInt(60), expected.length());
+                document.delete(i, j);
+                expected.delete(i, j);
+            }
+
+            int i = random.nextInt(expected.length() + 1);
+            int j = i + random.nextInt(expected.length() - i + 1);
+
+            if (document.length() != expected.length()
+                    || !document.substring(i, j).equals(expected.substring(i, j))
+                    || (i < expected.length() && document.charAt(i) != expected.charAt(i))
+                    || document.indexOf('\u20ac', i) != expected.indexOf("\u20ac", i)) {
+                return false;
+            }
+        }
+
+        // the edits split some surrogate pairs, which are encoded the same way as by String.getBytes
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        long written = document.transferTo(Channels.newChannel(bytes));
+
+        return document.substring(0, document.length()).equals(expected.toString())
+                && Arrays.equals(bytes.toByteArray(), expected.toString().getBytes(StandardCharsets.UTF_8))
+                && written == bytes.size();
+    }
+
+    private static boolean testLines() {
+        Random random = new Random(13);
+        String[] characters = {"a", "b", " ", "\n", "\r\n", "\u20ac"};
+        OffHeapTextList document = new OffHeapTextList(8);
+        StringBuilder text = new StringBuilder();
+
+        for (int i = 0; i < 2000; i++) {
+            text.append(characters[random.nextInt(characters.length)]);
+        }
+
+        document.insert(0, text);
+        String expected = text.toString();
+        String[] lines = expected.split("\n", -1);
+        long start = 0;
+
+        if (document.lineCount() != lines.length) {
+            return false;
+        }
+
+        for (int line = 0; line < lines.length; line++) {
+            if (document.lineToOffset(line) != start || document.offsetToLine(start) != line) {
+                return false;
+            }
+
+            start += lines[line].length() + 1;
+        }
+
+        return document.offsetToLine(document.length()) == lines.length - 1;
+    }
+
+    private static boolean testLoad() throws IOException {
+        String[] characters = {"a", "b", "\u00e9", "\u20ac", "\ud83d\ude00", " ", "\r\n"};
+        StringBuilder text = new StringBuilder();
+
+        for (int i = 0; i < 300000; i++) {
+            text.append(i % 1000 < 900 ? "x" : characters[i % characters.length]);
+        }
+
+        Path file = Files.createTempFile("offheap", ".txt");
+        Path copy = Files.createTempFile("offheap", ".txt");
+
+        try {
+            Files.write(file, text.toString().getBytes(StandardCharsets.UTF_8));
+            OffHeapTextList loaded = OffHeapTextList.load(file, 1 << 12);
+            boolean same = loaded.substring(0, loaded.length()).equals(text.toString())
+                    && loaded.lineCount() == text.toString().split("\n", -1).length;
+
+            try (FileChannel channel = FileChannel.open(copy, StandardOpenOption.WRITE)) {
+                loaded.transferTo(channel);
+            }
+
+            loaded.close();
+
+            return same && loaded.length() == 0 && Arrays.equals(Files.readAllBytes(file), Files.readAllBytes(copy))
+                    && OffHeapTextList.load(copy, OffHeapTextList.DEFAULT_SEGMENT_SIZE).length() == text.length();
+        } finally {
+            Files.delete(file);
+            Files.delete(copy);
+        }
+    }
+
+    private static boolean testBlockReuse() {
+        OffHeapTextList document = new OffHeapTextList(64);
+        String line = "a line of a large log file\n";
+
+        for (int i = 0; i < 1000; i++) {
+            document.insert(document.length(), line);
+        }
+
+        long allocated = document.offHeapBytes();
+
+        // the blocks of the replaced segments are reused, so editing does not grow the arenas
+        for (int i = 0; i < 1000; i++) {
+            long offset = document.lineToOffset(i % 900);
+            document.delete(offset, offset + line.length());
+            document.insert(offset, line.toUpperCase());
+        }
+
+        return document.offHeapBytes() == allocated && document.length() == 1000L * line.length()
+                && document.lineCount() == 1001;
+    }
+}
@@ -0,0 +1,1006 @@
+package test;
+
+import texteditor.ChangeListener;
+import texteditor.Dictionary;
+import texteditor.EditorMetrics;
+import texteditor.EditorStats;
+import texteditor.Snapshot;
+import texteditor.SpellCheckPipeline;
+import texteditor.SpellCheckReport;
+import texteditor.TextChange;
+import texteditor.TextEdit;
+import texteditor.TextEditor;
+import texteditor.Workspace;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Stream;
+
+public class TextEditorTest {
+    private static final String[] WORDS = {"the", "quick", "brwn", "fox", "", "jumps", "ovr", "a", "lazy", "dgo"};
+
+    public static void main(String[] args) throws IOException, JMException {
+        boolean testPassed = testMisspellings() && testLineBreaks() && testLargeDocument() && testUndoRedo()
+                && testBatch() && testReplaceAll() && testConcurrentReaders() && testSave()
+                && testMetrics() && testWorkspace() && testSuggest() && testChangeListener()
+                && testSpellCheckPipeline() && testClipboardHistory();
+
+        if (testPassed) {
+            System.out.println("All tests passed!");
+        } else {
+            System.out.println("All tests didn't pass :(");
+        }
+    }
+
+    private static boolean testMisspellings() throws IOException {
+        Random random = new Random(7);
+        Set<String> dictionary = loadDictionary();
+        StringBuilder document = new StringBuilder();
+
+        for (int i = 0; i < 300; i++) {
+            document.append(WORDS[random.nextInt(WORDS.length)]).append(' ');
+        }
+
+        TextEditor editor = new TextEditor(document.toString());
+
+        if (editor.misspellings() != misspellings(editor.getText(), dictionary)) {
+            return false;
+        }
+
+        for (int k = 0; k < 1000; k++) {
+            int length = editor.getText().length();
+            int i = random.nextInt(length);
+            int j = i + random.nextInt(30);
+
+            if (random.nextBoolean() && length - (j - i) > 1) {
+                editor.cut(i, j);
+            } else {
+                editor.copy(i, j);
+            }
+
+            editor.paste(random.nextInt(editor.getText().length()));
+
+            if (editor.misspellings() != misspellings(editor.getText(), dictionary)) {
+                return false;
+            }
+        }
+
+        return new TextEditor("").misspellings() == misspellings("", dictionary)
+                && new TextEditor("   ").misspellings() == misspellings("   ", dictionary);
+    }
+
+    private static boolean testLineBreaks() throws IOException {
+        Random random = new Random(5);
+        Set<String> dictionary = loadDictionary();
+        StringBuilder document = new StringBuilder();
+
+        // short lines and blank lines, so the line breaks separate most of the words
+        for (int i = 0; i < 2000; i++) {
+            for (int k = random.nextInt(3); k > 0; k--) {
+                document.append(WORDS[random.nextInt(WORDS.length)]).append(k > 1 ? " " : "");
+            }
+
+            document.append('\n');
+        }
+
+        TextEditor editor = new TextEditor(document.toString());
+
+        if (editor.misspellings() != misspellings(editor.getText(), dictionary)) {
+            return false;
+        }
+
+        for (int k = 0; k < 1000; k++) {
+            int length = editor.getText().length();
+            int i = random.nextInt(length);
+            int j = Math.min(length, i + random.nextInt(20));
+
+            // breaking lines, joining lines, and replacing text with several lines
+            switch (random.nextInt(3)) {
+                case 0:
+                    editor.applyBatch(List.of(TextEdit.insert(i, "\n")));
+                    break;
+                case 1:
+                    editor.applyBatch(List.of(TextEdit.delete(i, j)));
+                    break;
+                default:
+                    editor.applyBatch(List.of(TextEdit.replace(i, j, WORDS[random.nextInt(WORDS.length)] + "\n"
+                            + WORDS[random.nextInt(WORDS.length)])));
+                    break;
+            }
+
+            if (editor.misspellings() != misspellings(editor.getText(), dictionary)) {
+                return false;
+            }
+        }
+
+        return new TextEditor("\n\n").misspellings() == misspellings("\n\n", dictionary)
+                && new TextEditor("a\n \nb\n").misspellings() == misspellings("a\n \nb\n", dictionary);
+    }
+
+    private static boolean testLargeDocument() throws IOException {
+        Random random = new Random(11);
+        Set<String> dictionary = loadDictionary();
+        StringBuilder document = new StringBuilder();
+
+        // long runs without spaces make words span several nodes and several parallel scans
+        while (document.length() < 1_000_000) {
+            if (random.nextInt(1000) == 0) {
+                document.append("x".repeat(random.nextInt(100_000)));
+            }
+
+            document.append(WORDS[random.nextInt(WORDS.length)]).append(' ');
+        }
+
+        TextEditor editor = new TextEditor(document.toString());
+
+        if (editor.misspellings() != misspellings(editor.getText(), dictionary)) {
+            return false;
+        }
+
+        for (int k = 0; k < 10; k++) {
+            int i = random.nextInt(editor.getText().length() / 2);
+            editor.cut(i, i + random.nextInt(400_000));
+            editor.paste(random.nextInt(editor.getText().length()));
+
+            if (editor.misspellings() != misspellings(editor.getText(), dictionary)) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    private static boolean testUndoRedo() throws IOException {
+        Random random = new Random(5);
+        Set<String> dictionary = loadDictionary();
+        StringBuilder document = new StringBuilder();
+
+        for (int i = 0; i < 300; i++) {
+            document.append(WORDS[random.nextInt(WORDS.length)]).append(' ');
+        }
+
+        TextEditor editor = new TextEditor(document.toString(), 16);
+        Deque<String> texts = new ArrayDeque<>();
+
+        for (int k = 0; k < 200; k++) {
+            texts.push(editor.getText());
+            int length = editor.getText().length();
+            int i = random.nextInt(length);
+            int j = i + random.nextInt(60);
+
+            if (k % 3 == 0) {
+                editor.cut(i, j);
+            } else if (k % 3 == 1) {
+                editor.copy(i, j);
+            } else {
+                editor.paste(random.nextInt(length));
+            }
+        }
+
+        String last = editor.getText();
+
+        // undoing everything, then redoing everything
+        for (int k = 0; k < 200; k++) {
+            if (!editor.undo() || !editor.getText().equals(texts.peek())
+                    || editor.misspellings() != misspellings(texts.pop(), dictionary)) {
+                return false;
+            }
+        }
+
+        if (editor.undo() || !editor.getText().equals(document.toString())) {
+            return false;
+        }
+
+        for (int k = 0; k < 200; k++) {
+            if (!editor.redo()) {
+                return false;
+            }
+        }
+
+        if (editor.redo() || !editor.getText().equals(last)
+                || editor.misspellings() != misspellings(last, dictionary)) {
+            return false;
+        }
+
+        // the pasted clipboard is the one restored by the undo
+        editor.cut(0, 10);
+        String cut = last.substring(0, 10);
+        editor.copy(0, 5);
+        editor.undo();
+        editor.paste(0);
+        String text = editor.getText();
+
+        if (!text.equals(cut + last.substring(10)) && !text.equals(last.charAt(10) + cut + last.substring(11))) {
+            return false;
+        }
+
+        // an empty cut and its paste at the end of the document are undone and redone without changing the text
+        TextEditor empty = new TextEditor("abc", 4);
+        empty.cut(1, 1);
+        empty.paste(2);
+
+        if (!empty.undo() || !empty.undo() || empty.undo() || !empty.redo() || !empty.redo() || empty.redo()
+                || !empty.getText().equals("abc")) {
+            return false;
+        }
+
+        // an edit after an undo discards the redo history, and a small budget keeps only the latest edits
+        editor.undo();
+        editor.copy(0, 1);
+
+        if (editor.redo()) {
+            return false;
+        }
+
+        editor.setHistoryBudget(200);
+        int undone = 0;
+
+        while (editor.undo()) {
+            undone++;
+        }
+
+        return undone > 0 && undone < 5;
+    }
+
+    private static boolean testBatch() throws IOException {
+        Random random = new Random(9);
+        Set<String> dictionary = loadDictionary();
+        StringBuilder document = new StringBuilder();
+
+        for (int i = 0; i < 300; i++) {
+            document.append(WORDS[random.nextInt(WORDS.length)]).append(' ');
+        }
+
+        TextEditor editor = new TextEditor(document.toString(), 16);
+        Deque<String> texts = new ArrayDeque<>();
+
+        for (int k = 0; k < 100; k++) {
+            texts.push(document.toString());
+            List<TextEdit> edits = new ArrayList<>();
+
+            // replacing words, and deleting and inserting text across word boundaries, so every batch is recorded
+            for (int e = 1 + random.nextInt(7); e > 0; e--) {
+                int i = random.nextInt(document.length() + 1);
+                int j = Math.min(i + random.nextInt(12), document.length());
+                String text = random.nextBoolean() ? WORDS[random.nextInt(WORDS.length)] + " " : " ";
+                edits.add(TextEdit.replace(i, j, text));
+                document.replace(i, j, text);
+            }
+
+            editor.applyBatch(edits);
+
+            if (!editor.getText().equals(document.toString())
+                    || editor.misspellings() != misspellings(document.toString(), dictionary)) {
+                return false;
+            }
+        }
+
+        String last = document.toString();
+        editor.cut(0, 10);
+
+        // the cut is undone first, then every batch
+        if (!editor.undo() || !editor.getText().equals(last)) {
+            return false;
+        }
+
+        while (!texts.isEmpty()) {
+            if (!editor.undo() || !editor.getText().equals(texts.peek())
+                    || editor.misspellings() != misspellings(texts.pop(), dictionary)) {
+                return false;
+            }
+        }
+
+        while (editor.redo()) {
+            // redoing the batches and the cut
+        }
+
+        // the batch does not touch the clipboard
+        editor.applyBatch(List.of(TextEdit.insert(0, "the ")));
+        editor.paste(0);
+
+        return editor.getText().startsWith(last.substring(0, 10) + "the ") || editor.getText().startsWith(
+                "t" + last.substring(0, 10) + "he ");
+    }
+
+    private static boolean testReplaceAll() throws IOException {
+        Set<String> dictionary = loadDictionary();
+        String text = "the quick brwn fox jumps ovr the lazy dgo ".repeat(50);
+        TextEditor editor = new TextEditor(text, 16);
+
+        // the replacements fix and break words, and join words across spaces
+        int fixed = editor.replaceAll("brwn", "brown") + editor.replaceAll("ovr the", "over the");
+        int broken = editor.replaceAll("fox", "fx");
+        String replaced = text.replace("brwn", "brown").replace("ovr the", "over the").replace("fox", "fx");
+
+        if (fixed != 100 || broken != 50 || !editor.getText().equals(replaced)
+                || editor.misspellings() != misspellings(replaced, dictionary)
+                || editor.indexOf("fx", 100) != replaced.indexOf("fx", 100)
+                || editor.findAll(List.of("the", "fx", "the ")).size() != 250) {
+            return false;
+        }
+
+        // every replaceAll is undone as a single edit
+        String brown = text.replace("brwn", "brown");
+
+        return editor.undo() && editor.undo() && editor.getText().equals(brown)
+                && editor.misspellings() == misspellings(brown, dictionary) && editor.undo()
+                && editor.getText().equals(text) && editor.misspellings() == misspellings(text, dictionary);
+    }
+
+    private static boolean testConcurrentReaders() throws IOException {
+        Random random = new Random(9);
+        Set<String> dictionary = loadDictionary();
+        StringBuilder document = new StringBuilder();
+
+        for (int i = 0; i < 20000; i++) {
+            document.append(WORDS[random.nextInt(WORDS.length)]).append(' ');
+        }
+
+        TextEditor editor = new TextEditor(document.toString(), 64);
+        AtomicBoolean editing = new AtomicBoolean(true);
+        AtomicBoolean consistent = new AtomicBoolean(true);
+        Thread[] readers = new Thread[2];
+
+        // every snapshot must be a single version of the document, with the misspellings of that version
+        for (int k = 0; k < readers.length; k++) {
+            readers[k] = new Thread(() -> {
+                while (editing.get()) {
+                    Snapshot snapshot = editor.snapshot();
+                    String text = snapshot.getText();
+                    StringWriter writer = new StringWriter();
+
+                    try {
+                        snapshot.writeTo(writer);
+                    } catch (IOException exception) {
+                        consistent.set(false);
+                    }
+
+                    if (text.length() != snapshot.length() || !writer.toString().equals(text)
+                            || snapshot.misspellings() != misspellings(text, dictionary)
+                            || editor.getText().length() > document.length()) {
+                        consistent.set(false);
+                    }
+
+                    // the document is a single line, read under the read lock while the editor cuts and pastes
+                    try {
+                        if (editor.getLine(0).length() > document.length()) {
+                            consistent.set(false);
+                        }
+                    } catch (RuntimeException exception) {
+                        consistent.set(false);
+                    }
+                }
+            });
+            readers[k].start();
+        }
+
+        for (int k = 0; k < 2000; k++) {
+            int length = document.length();
+            int i = random.nextInt(length);
+            editor.cut(i, i + random.nextInt(500));
+            editor.paste(random.nextInt(editor.getTextView().length()));
+        }
+
+        editing.set(false);
+
+        for (Thread reader : readers) {
+            try {
+                reader.join();
+            } catch (InterruptedException exception) {
+                return false;
+            }
+        }
+
+        return consistent.get() && editor.misspellings() == misspellings(editor.getText(), dictionary);
+    }
+
+    private static boolean testSave() throws IOException {
+        Random random = new Random(13);
+        StringBuilder document = new StringBuilder();
+
+        for (int i = 0; i < 5000; i++) {
+            document.append(WORDS[random.nextInt(WORDS.length)]).append(i % 12 == 0 ? "\n" : " ");
+        }
+
+        Path directory = Files.createTempDirectory("texteditor");
+        Path path = directory.resolve("document.txt");
+        Path journal = directory.resolve("document.txt.journal");
+        Path copy = directory.resolve("copy.txt");
+
+        try {
+            TextEditor editor = new TextEditor(document.toString(), 64);
+            editor.save(path);
+
+            if (!Files.readString(path).equals(editor.getText()) || Files.size(journal) == 0) {
+                return false;
+            }
+
+            // later saves only append the edits to the journal, and leave the file as it is
+            String checkpoint = editor.getText();
+
+            for (int k = 0; k < 20; k++) {
+                long journalSize = Files.size(journal);
+                Snapshot atSave = editor.snapshot();
+                String before = editor.getText();
+                int length = editor.getText().length();
+                int i = random.nextInt(length - 100);
+                editor.cut(i, i + random.nextInt(100));
+                editor.paste(random.nextInt(editor.getText().length()));
+                editor.applyBatch(List.of(TextEdit.insert(i, "\u00fcn\u00efcode "), TextEdit.delete(i + 50, i + 60)));
+
+                if (k % 3 == 0) {
+                    editor.undo();
+                }
+
+                // the changes since the previous save are found from the snapshot taken then
+                TextEdit changes = editor.changesSince(atSave);
+
+                if (changes == null || !(before.substring(0, changes.start()) + changes.text()
+                        + before.substring(changes.end())).equals(editor.getText())) {
+                    return false;
+                }
+
+                editor.save(path);
+
+                if (!Files.readString(path).equals(checkpoint) || Files.size(journal) <= journalSize
+                        || !TextEditor.open(path).getText().equals(editor.getText())) {
+                    return false;
+                }
+            }
+
+            // a torn record is dropped, so the document is recovered as it was at the last save
+            String saved = editor.getText();
+
+            if (editor.changesSince(editor.snapshot()) != null) {
+                return false;
+            }
+
+            Files.write(journal, new byte[]{0, 0, 1, 0, 42, 42, 42}, StandardOpenOption.APPEND);
+            TextEditor recovered = TextEditor.open(path);
+
+            if (!recovered.getText().equals(saved)) {
+                return false;
+            }
+
+            recovered.cut(0, 10);
+            recovered.save(path);
+
+            if (!TextEditor.open(path).getText().equals(saved.substring(10))) {
+                return false;
+            }
+
+            // the journal is not replayed onto a file rewritten by someone else
+            Files.writeString(path, "rewritten");
+
+            if (!TextEditor.open(path).getText().equals("rewritten")) {
+                return false;
+            }
+
+            recovered.paste(0);
+            recovered.save(path);
+
+            if (!Files.readString(path).equals(recovered.getText())
+                    || !TextEditor.open(path).getText().equals(recovered.getText())) {
+                return false;
+            }
+
+            // saving to another file writes all of it
+            recovered.cut(5, 20);
+            recovered.save(copy);
+
+            if (!Files.readString(copy).equals(recovered.getText())
+                    || !TextEditor.open(copy).getText().equals(recovered.getText())
+                    || !TextEditor.open(path).getText().equals(saved.substring(0, 10) + saved.substring(10))) {
+                return false;
+            }
+
+            // the checkpoints leave no temporary files behind, only the documents and their journals
+            try (Stream<Path> files = Files.list(directory)) {
+                return files.count() == 4;
+            }
+        } finally {
+            for (Path file : List.of(path, journal, copy, directory.resolve("copy.txt.journal"), directory)) {
+                Files.deleteIfExists(file);
+            }
+        }
+    }
+
+    private static boolean testMetrics() throws JMException {
+        Random random = new Random(17);
+        StringBuilder document = new StringBuilder();
+
+        for (int i = 0; i < 5000; i++) {
+            document.append(WORDS[random.nextInt(WORDS.length)]).append(' ');
+        }
+
+        TextEditor editor = new TextEditor(document.toString(), 64);
+        EditorStats stats = new EditorStats(editor);
+        editor.setMetrics(stats);
+        long cutBytes = 0;
+        long copiedBytes = 0;
+        long pastedBytes = 0;
+
+        for (int k = 0; k < 200; k++) {
+            int length = editor.getText().length();
+            int i = random.nextInt(length - 100);
+            int j = i + random.nextInt(100);
+
+            if (k % 2 == 0) {
+                editor.cut(i, j);
+                cutBytes += (j - i) * Character.BYTES;
+            } else {
+                editor.copy(i, j);
+                copiedBytes += (j - i) * Character.BYTES;
+            }
+
+            editor.paste(random.nextInt(editor.getText().length()));
+            pastedBytes += (j - i) * Character.BYTES;
+            editor.misspellings();
+        }
+
+        if (stats.getCutCount() != 100 || stats.getCopyCount() != 100 || stats.getPasteCount() != 200
+                || stats.getMisspellingsCount() != 200 || stats.getCutBytes() != cutBytes
+                || stats.getCopiedBytes() != copiedBytes || stats.getPastedBytes() != pastedBytes
+                || stats.getNodeLookups() < 400 || stats.getAverageNodesTraversed() < 1
+                || stats.getNodes() != editor.fragmentation().nodes()
+                || stats.getAverageFill() != editor.fragmentation().averageFill()
+                || stats.getCutMeanNanos() <= 0 || stats.getPasteP99Nanos() <= 0
+                || stats.percentile(EditorMetrics.Operation.COPY, 1) < stats.getCopyMeanNanos()) {
+            return false;
+        }
+
+        // the attributes are read through JMX
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        ObjectName name = stats.register("document");
+
+        try {
+            if (!Long.valueOf(200).equals(server.getAttribute(name, "PasteCount"))) {
+                return false;
+            }
+
+            server.invoke(name, "reset", null, null);
+        } finally {
+            server.unregisterMBean(name);
+        }
+
+        // without metrics nothing is counted
+        editor.setMetrics(null);
+        editor.cut(0, 10);
+        editor.paste(5);
+        editor.misspellings();
+
+        return stats.getCutCount() == 0 && stats.getPasteCount() == 0 && stats.getNodeLookups() == 0
+                && stats.getCutBytes() == 0 && stats.getMisspellingsP99Nanos() == 0;
+    }
+
+    private static boolean testWorkspace() throws IOException {
+        Random random = new Random(19);
+        Set<String> dictionary = loadDictionary();
+        List<TextEditor> editors = new ArrayList<>();
+        List<StringBuilder> documents = new ArrayList<>();
+
+        // the budget holds two of the documents, so every access to another one evicts the least recently used
+        try (Workspace workspace = new Workspace(100_000)) {
+            for (int d = 0; d < 5; d++) {
+                StringBuilder document = new StringBuilder("\ud800 unpaired ");
+
+                while (document.length() < 20_000) {
+                    document.append(WORDS[random.nextInt(WORDS.length)]).append(' ');
+                }
+
+                TextEditor editor = new TextEditor(document.toString(), 64);
+                workspace.add(editor);
+                editors.add(editor);
+                documents.add(document);
+            }
+
+            if (workspace.residentDocuments() != 2 || workspace.memoryUsage() > workspace.memoryBudget()) {
+                return false;
+            }
+
+            for (int k = 0; k < 300; k++) {
+                int d = random.nextInt(editors.size());
+                TextEditor editor = editors.get(d);
+                StringBuilder document = documents.get(d);
+                int i = random.nextInt(document.length() - 50);
+                int j = i + random.nextInt(50);
+
+                // misspellings are counted without reading the evicted document back
+                int resident = workspace.residentDocuments();
+
+                if (editor.misspellings() != misspellings(document.toString(), dictionary)
+                        || workspace.residentDocuments() != resident) {
+                    return false;
+                }
+
+                editor.cut(i, j);
+                String cut = document.substring(i, j);
+                document.delete(i, j);
+
+                if (k % 5 == 0) {
+                    editor.undo();
+                    document.insert(i, cut);
+                }
+
+                if (!editor.getText().equals(document.toString())
+                        || workspace.memoryUsage() > workspace.memoryBudget() || workspace.residentDocuments() > 2) {
+                    return false;
+                }
+            }
+
+            // an evicted editor keeps its clipboard, its earlier clips and its history, which share nodes with it
+            TextEditor first = editors.get(0);
+            StringBuilder document = documents.get(0);
+            String original = document.toString();
+            first.cut(0, 5);
+            first.copy(0, 10);
+            String cut = original.substring(0, 5);
+            String copied = original.substring(5, 15);
+            int slots = first.clipboardSlots();
+            editors.get(1).lineCount();
+            editors.get(2).lineCount();
+            first.paste(0);
+            editors.get(1).lineCount();
+            editors.get(2).lineCount();
+            first.paste(0, 1);
+            editors.get(1).lineCount();
+            editors.get(2).lineCount();
+            document.replace(0, 5, cut + copied);
+
+            if (workspace.residentDocuments() != 2 || first.clipboardSlots() != slots
+                    || !first.getText().equals(document.toString())) {
+                return false;
+            }
+
+            // undoing the pastes, the copy and the cut after evictions restores the document they were made on
+            editors.get(1).lineCount();
+            editors.get(2).lineCount();
+
+            if (!first.undo() || !first.undo() || !first.undo() || !first.undo()
+                    || !first.getText().equals(original)) {
+                return false;
+            }
+
+            editors.get(1).lineCount();
+            editors.get(2).lineCount();
+
+            if (!first.redo() || !first.getText().equals(original.substring(5))) {
+                return false;
+            }
+
+            // the statistics of an evicted document are read from the document read back
+            editors.get(1).lineCount();
+            editors.get(2).lineCount();
+
+            if (first.fragmentation().length() != original.length() - 5) {
+                return false;
+            }
+
+            // polling the statistics of an evicted document reports it as it was evicted, without reading it back
+            EditorStats stats = new EditorStats(first);
+            int nodes = first.fragmentation().nodes();
+            double averageFill = first.fragmentation().averageFill();
+            editors.get(1).lineCount();
+            editors.get(2).lineCount();
+            long memoryUsage = workspace.memoryUsage();
+
+            if (stats.getNodes() != nodes || stats.getAverageFill() != averageFill
+                    || workspace.memoryUsage() != memoryUsage) {
+                return false;
+            }
+
+            document.delete(0, document.length()).append(original, 5, original.length());
+
+            // a document larger than the budget stays in memory while it is used
+            TextEditor large = new TextEditor("x".repeat(60_000));
+            workspace.add(large);
+
+            if (workspace.residentDocuments() != 1 || large.lineCount() != 1) {
+                return false;
+            }
+
+            workspace.remove(large);
+        }
+
+        // closing the workspace reads every document back
+        for (int d = 0; d < editors.size(); d++) {
+            editors.get(d).cut(0, 10);
+            documents.get(d).delete(0, 10);
+
+            if (!editors.get(d).getText().equals(documents.get(d).toString())) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    private static boolean testSuggest() throws IOException {
+        Set<String> dictionary = loadDictionary();
+        TextEditor editor = new TextEditor("the quikc brwn fox  jumps", 8);
+
+        // a correctly spelled word, or the empty word between two spaces, has no corrections
+        if (!editor.suggest(0, 5).isEmpty() || !editor.suggest(3, 5).isEmpty() || !editor.suggest(19, 5).isEmpty()
+                || !editor.suggest(editor.getText().length(), 5).isEmpty()) {
+            return false;
+        }
+
+        List<String> quick = editor.suggest(6, 5);
+        List<String> brown = editor.suggest(13, 1);
+
+        if (!dictionary.contains("quick") || !dictionary.contains("brown")) {
+            return quick.isEmpty() && brown.isEmpty();
+        }
+
+        return quick.size() <= 5 && quick.contains("quick") && brown.equals(List.of("brown"));
+    }
+
+    private static boolean testChangeListener() throws IOException {
+        Random random = new Random(22);
+        StringBuilder document = new StringBuilder();
+
+        for (int i = 0; i < 200; i++) {
+            document.append(WORDS[random.nextInt(WORDS.length)]).append(' ');
+        }
+
+        TextEditor editor = new TextEditor(document.toString(), 16);
+        StringBuilder mirror = new StringBuilder(editor.getText());
+        List<List<TextChange>> batches = new ArrayList<>();
+
+        // the changes are delivered on the editing thread, and applied to the mirror with placeholders for the
+        // inserted characters, which must then match the document everywhere else
+        editor.addChangeListener(batches::add, Runnable::run);
+
+        for (int k = 0; k < 300; k++) {
+            int length = editor.getText().length();
+            int i = random.nextInt(length);
+            int j = i + random.nextInt(30);
+            int operation = random.nextInt(5);
+
+            if (operation == 0) {
+                editor.cut(i, j);
+            } else if (operation == 1) {
+                editor.copy(i, j);
+                editor.paste(random.nextInt(editor.getText().length()));
+            } else if (operation == 2) {
+                editor.applyBatch(List.of(TextEdit.replace(i, Math.min(j, length), "batch"), TextEdit.insert(0, "x")));
+            } else if (operation == 3) {
+                editor.undo();
+            } else {
+                editor.redo();
+            }
+
+            for (List<TextChange> batch : batches) {
+                for (TextChange change : batch) {
+                    mirror.replace(change.offset(), change.offset() + change.removed(),
+                            "\0".repeat(change.inserted()));
+                }
+            }
+
+            batches.clear();
+            String text = editor.getText();
+
+            if (mirror.length() != text.length()) {
+                return false;
+            }
+
+            for (int c = 0; c < text.length(); c++) {
+                if (mirror.charAt(c) != '\0' && mirror.charAt(c) != text.charAt(c)) {
+                    return false;
+                }
+            }
+
+            mirror.replace(0, mirror.length(), text);
+        }
+
+        // the edits made while a batch waits for the executor join it, merged as long as they touch
+        Deque<Runnable> tasks = new ArrayDeque<>();
+        ChangeListener coalesced = batches::add;
+        editor = new TextEditor("abc");
+        editor.addChangeListener(coalesced, tasks::add);
+        editor.copy(0, 1);
+
+        // pasting at the last character of a node inserts after it, like typing at the end of the document
+        for (int i = 0; i < 100; i++) {
+            editor.paste(editor.getText().length() - 1);
+        }
+
+        editor.cut(102, 103);
+        editor.cut(0, 1);
+        boolean merged = tasks.size() == 1;
+        tasks.poll().run();
+        merged &= batches.size() == 1 && batches.get(0).size() == 2
+                && batches.get(0).get(0).toString().equals(new TextChange(3, 0, 99).toString())
+                && batches.get(0).get(1).toString().equals(new TextChange(0, 1, 0).toString());
+
+        // a removed listener, or one whose executor was shut down, receives nothing more
+        batches.clear();
+        editor.removeChangeListener(coalesced);
+        editor.addChangeListener(batches::add, task -> {
+            throw new RejectedExecutionException();
+        });
+        editor.paste(0);
+        editor.paste(0);
+
+        boolean removed = merged && tasks.isEmpty() && batches.isEmpty() && !editor.removeChangeListener(coalesced)
+                && editor.getText().startsWith("aa");
+
+        // a failing listener is reported to the handler of the delivering thread, and does not fail the edit
+        Thread thread = Thread.currentThread();
+        Thread.UncaughtExceptionHandler handler = thread.getUncaughtExceptionHandler();
+        List<Throwable> failures = new ArrayList<>();
+        List<List<TextChange>> delivered = new ArrayList<>();
+        editor = new TextEditor("abcdef");
+        editor.addChangeListener(changes -> {
+            throw new IllegalStateException("Listener failed");
+        }, Runnable::run);
+        editor.addChangeListener(delivered::add, Runnable::run);
+        thread.setUncaughtExceptionHandler((failed, exception) -> failures.add(exception));
+
+        try {
+            editor.cut(0, 3);
+            editor.paste(0);
+        } finally {
+            thread.setUncaughtExceptionHandler(handler);
+        }
+
+        return removed && failures.size() == 2 && failures.get(0) instanceof IllegalStateException
+                && delivered.size() == 2 && editor.getText().equals("abcdef");
+    }
+
+    private static boolean testSpellCheckPipeline() throws IOException {
+        Random random = new Random(23);
+        Set<String> words = Set.of("the", "quick", "fox", "jumps", "a", "lazy");
+        Path directory = Files.createTempDirectory("pipeline");
+        Path source = directory.resolve("words.txt");
+        Map<Path, String> texts = new HashMap<>();
+        List<SpellCheckReport> reports = new ArrayList<>();
+
+        try {
+            Files.write(source, words);
+            Dictionary dictionary = Dictionary.load(source, directory.resolve("words.dict"));
+            Files.createDirectories(directory.resolve("documents").resolve("nested"));
+
+            for (int f = 0; f < 40; f++) {
+                StringBuilder text = new StringBuilder();
+
+                for (int i = random.nextInt(300); i >= 0; i--) {
+                    text.append(WORDS[random.nextInt(WORDS.length)]).append(' ');
+                }
+
+                Path file = directory.resolve("documents").resolve(f % 2 == 0 ? "nested" : "").resolve(f + ".txt");
+                Files.writeString(file, text);
+                texts.put(file, text.toString());
+            }
+
+            // more files than in flight at once, so the walk waits for the consumer
+            int reported = new SpellCheckPipeline(dictionary, 3, 4, 2).run(directory.resolve("documents"),
+                    reports::add);
+            boolean checked = reported == texts.size() && reports.size() == texts.size();
+
+            for (SpellCheckReport report : reports) {
+                String text = texts.remove(report.path());
+                checked &= text != null && report.error() == null && report.length() == text.length()
+                        && report.misspellings() == misspellings(text, words)
+                        && report.misspelledWords().size() == Math.min(2, (int) Arrays.stream(text.split("[ \n]"))
+                        .filter(word -> !word.isEmpty() && !words.contains(word)).distinct().count());
+            }
+
+            // a failing check is reported with its error instead of stalling the pipeline
+            Dictionary failing = new Dictionary() {
+                @Override
+                public boolean contains(CharSequence text, int start, int end) {
+                    throw new IllegalStateException("Dictionary failed");
+                }
+
+                @Override
+                public List<String> suggest(CharSequence word, int limit) {
+                    return List.of();
+                }
+            };
+            List<SpellCheckReport> failed = new ArrayList<>();
+            reported = new SpellCheckPipeline(failing, 2, 2, 2).run(directory.resolve("documents"), failed::add);
+
+            return checked && texts.isEmpty() && reported == 40 && failed.stream()
+                    .allMatch(report -> report.error() instanceof IllegalStateException && report.misspellings() == 0);
+        } catch (InterruptedException exception) {
+            return false;
+        } finally {
+            try (Stream<Path> files = Files.walk(directory)) {
+                for (Path file : files.sorted(Comparator.reverseOrder()).toArray(Path[]::new)) {
+                    Files.delete(file);
+                }
+            }
+        }
+    }
+
+    private static int misspellings(String text, Set<String> dictionary) {
+        int misspelledWords = 0;
+
+        for (String word : text.split("[ \n]")) {
+            if (!dictionary.contains(word)) {
+                misspelledWords++;
+            }
+        }
+
+        return misspelledWords;
+    }
+
+    private static Set<String> loadDictionary() throws IOException {
+        try {
+            return new HashSet<>(Files.readAllLines(Paths.get("/usr/share/dict/words")));
+        } catch (NoSuchFileException exception) {
+            return new HashSet<>();
+        }
+    }
+
+    private static boolean testClipboardHistory() {
+        TextEditor editor = new TextEditor("one two three four ", 64);
+        editor.copy(0, 4);
+        editor.copy(4, 8);
+        editor.cut(8, 14);
+
+        // copying a text which is already in the history moves its clip to the front
+        editor.copy(0, 4);
+
+        if (editor.clipboardSlots() != 3 || !editor.getText().equals("one two four ")) {
+            return false;
+        }
+
+        // pasting an earlier clip makes it the clipboard
+        editor.paste(0, 2);
+        editor.paste(0);
+        editor.paste(0, 2);
+
+        if (!editor.getText().equals("three two two one two four ")) {
+            return false;
+        }
+
+        // the undo restores the clipboard before the paste
+        editor.undo();
+        editor.paste(0);
+
+        if (!editor.getText().equals("two two two one two four ")) {
+            return false;
+        }
+
+        for (int slot : new int[]{-1, 3}) {
+            try {
+                editor.paste(0, slot);
+                return false;
+            } catch (IllegalArgumentException e) {
+                // the slot is checked before the document is modified
+            }
+        }
+
+        // the budget forgets the oldest clips, but keeps the clipboard
+        editor.setClipboardBudget(4);
+        boolean trimmed = editor.clipboardSlots() == 1;
+        editor.setClipboardBudget(0);
+        editor.paste(0, 0);
+
+        return trimmed && editor.clipboardSlots() == 1 && editor.getText().equals("two two two two one two four ");
+    }
+}
@@ -1,16 +1,34 @@
 package test;
 
+import texteditor.Fragmentation;
+import texteditor.Match;
+import texteditor.TextEdit;
 import texteditor.UnrolledTextList;
 
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicBoolean;
+
 public class UnrolledTextListTest {
-    public static void main(String[] args) {
+    public static void main(String[] args) throws IOException {
         UnrolledTextList document = new UnrolledTextList(4);
 
         // tests
         boolean testPassed = true;
 
         // paste will be tested automatically in copy and cut
-        testPassed = testInsert(document) && testCopy(document) && testCut(document);
+        testPassed = testInsert(document) && testCopy(document) && testCut(document) && testRandomEdits()
+                && testSharedClipboard() && testLoad()
+                && testExport() && testCompaction() && testBatch()
+                && testFind() && testLines() && testHashes() && testConcurrentReads();
 
         if (testPassed) {
             System.out.println("All tests passed!");
@@ -38,4 +56,550 @@ public class UnrolledTextListTest {
 
         return document.toString().equals("Today is a good day! Hello World!");
     }
+
+    private static boolean testRandomEdits() {
+        Random random = new Random(42);
+        UnrolledTextList document = new UnrolledTextList(8);
+        StringBuilder expected = new StringBuilder();
+
+        for (int i = 0; i < 500; i++) {
+            expected.append(i % 50 == 0 ? '\u20ac' : (char) ('a' + random.nextInt(26)));
+        }
+
+        document.insertText(expected.toString());
+
+        for (int k = 0; k < 2000; k++) {
+            int length = expected.length();
+            int i = random.nextInt(length);
+            int j = i + random.nextInt(40);
+            String selected = expected.substring(i, Math.min(j, length));
+            UnrolledTextList clipboard;
+
+            if (random.nextBoolean()) {
+                clipboard = document.cutText(i, j);
+                expected.delete(i, Math.min(j, length));
+            } else {
+                clipboard = document.copyText(i, j);
+            }
+
+            String clip = clipboard.toString();
+
+            if (!clip.equals(selected) || !document.toString().equals(expected.toString())
+                    || !testSearch(document, expected.toString(), random)) {
+                return false;
+            }
+
+            if (expected.length() == 0) {
+                document.insertText(clip);
+                expected.append(clip);
+                continue;
+            }
+
+            // the clipboard is spliced either before or after the ith character
+            int p = random.nextInt(expected.length());
+            document.pasteText(p, clipboard);
+            String text = document.toString();
+
+            if (text.equals(new StringBuilder(expected).insert(p, clip).toString())) {
+                expected.insert(p, clip);
+            } else if (text.equals(new StringBuilder(expected).insert(p + 1, clip).toString())) {
+                expected.insert(p + 1, clip);
+            } else {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    private static boolean testCompaction() {
+        Random random = new Random(3);
+        UnrolledTextList compacted = new UnrolledTextList(16);
+        UnrolledTextList fragmented = new UnrolledTextList(16);
+        StringBuilder expected = new StringBuilder();
+
+        for (int i = 0; i < 1000; i++) {
+            expected.append((char) ('a' + random.nextInt(26)));
+        }
+
+        compacted.insertText(expected.toString());
+        fragmented.setAutoCompact(false);
+        fragmented.insertText(expected.toString());
+
+        for (int k = 0; k < 2000; k++) {
+            int length = expected.length();
+            int i = random.nextInt(length);
+            int j = Math.min(i + random.nextInt(60), length - 1);
+            String clip = expected.substring(i, j);
+            UnrolledTextList clipboard;
+
+            // cutting and copying in turns, so the length of the text stays around the same
+            if (k % 2 == 0) {
+                clipboard = compacted.cutText(i, j);
+                expected.delete(i, j);
+            } else {
+                clipboard = compacted.copyText(i, j);
+            }
+
+            int f = i % fragmented.length();
+            fragmented.pasteText(random.nextInt(fragmented.length() - 60), fragmented.cutText(f, f + 60));
+
+            // the clipboard is spliced either before or after the pth character
+            int p = random.nextInt(expected.length());
+            compacted.pasteText(p, clipboard);
+            String text = compacted.toString();
+
+            if (text.equals(new StringBuilder(expected).insert(p, clip).toString())) {
+                expected.insert(p, clip);
+            } else if (text.equals(new StringBuilder(expected).insert(p + 1, clip).toString())) {
+                expected.insert(p + 1, clip);
+            } else {
+                return false;
+            }
+
+            if (!isCompact(compacted.fragmentation())) {
+                return false;
+            }
+        }
+
+        String text = fragmented.toString();
+        boolean wasFragmented = fragmented.fragmentation().underfilledNodes() > 0;
+        fragmented.compact();
+
+        return wasFragmented && isCompact(fragmented.fragmentation()) && fragmented.toString().equals(text);
+    }
+
+    private static boolean testBatch() {
+        Random random = new Random(5);
+        UnrolledTextList document = new UnrolledTextList(8);
+        StringBuilder expected = new StringBuilder();
+
+        for (int i = 0; i < 300; i++) {
+            expected.append(i % 40 == 0 ? '\u20ac' : (char) ('a' + random.nextInt(26)));
+        }
+
+        document.insertText(expected.toString());
+
+        for (int k = 0; k < 500; k++) {
+            // a clipboard sharing nodes with the document must not see the batch
+            UnrolledTextList clipboard = document.copyText(0, expected.length());
+            String copied = expected.toString();
+            List<TextEdit> edits = new ArrayList<>();
+
+            for (int e = random.nextInt(6); e > 0; e--) {
+                int i = random.nextInt(expected.length() + 1);
+                int j = Math.min(i + random.nextInt(30), expected.length());
+                String text = "xyz".substring(random.nextInt(4));
+                edits.add(TextEdit.replace(i, j, text));
+                expected.replace(i, j, text);
+            }
+
+            document.applyBatch(edits);
+
+            if (!document.toString().equals(expected.toString()) || !clipboard.toString().equals(copied)
+                    || !testSearch(document, expected.toString(), random)) {
+                return false;
+            }
+
+            // the text is kept around the same length
+            if (expected.length() < 100) {
+                document.applyBatch(List.of(TextEdit.insert(0, copied)));
+                expected.insert(0, copied);
+            }
+        }
+
+        try {
+            document.applyBatch(List.of(TextEdit.delete(0, 1), TextEdit.delete(0, expected.length())));
+            return false;
+        } catch (IllegalArgumentException e) {
+            // the batch is checked before the document is modified
+        }
+
+        document.applyBatch(List.of(TextEdit.delete(0, expected.length())));
+        boolean deleted = document.length() == 0;
+        document.applyBatch(List.of(TextEdit.insert(0, "abc"), TextEdit.replace(1, 2, "de"), TextEdit.insert(4, "f")));
+
+        return deleted && document.toString().equals("adecf")
+                && isCompact(document.fragmentation()) && testLargeBatch(random);
+    }
+
+    private static boolean testLargeBatch(Random random) {
+        StringBuilder expected = new StringBuilder();
+
+        for (int i = 0; i < 100000; i++) {
+            expected.append((char) ('a' + random.nextInt(26)));
+        }
+
+        UnrolledTextList document = new UnrolledTextList(64);
+        document.insertText(expected.toString());
+
+        // a batch built from left to right, with edits touching each other, then a batch in random order
+        for (boolean sorted : new boolean[]{true, false}) {
+            List<TextEdit> edits = new ArrayList<>();
+            int position = 0;
+
+            for (int k = 0; k < 20000; k++) {
+                int i = sorted ? Math.min(position + random.nextInt(3), expected.length())
+                        : random.nextInt(expected.length() + 1);
+                int j = Math.min(i + random.nextInt(4), expected.length());
+                String text = "xyz".substring(random.nextInt(4));
+                edits.add(TextEdit.replace(i, j, text));
+                expected.replace(i, j, text);
+                position = Math.min(i + text.length(), expected.length());
+            }
+
+            document.applyBatch(edits);
+
+            if (!document.toString().equals(expected.toString())) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    private static boolean testFind() {
+        Random random = new Random(11);
+        UnrolledTextList document = new UnrolledTextList(8);
+        StringBuilder expected = new StringBuilder();
+
+        // a small alphabet, so most patterns occur and many occurrences span several nodes
+        for (int i = 0; i < 2000; i++) {
+            expected.append(i % 100 == 0 ? '\u0161' : "ab c".charAt(random.nextInt(4)));
+        }
+
+        document.insertText(expected.toString());
+        String text = expected.toString();
+
+        for (int k = 0; k < 200; k++) {
+            List<String> patterns = new ArrayList<>();
+
+            for (int p = 1 + random.nextInt(4); p > 0; p--) {
+                int i = random.nextInt(text.length() - 20);
+                patterns.add(text.substring(i, i + 1 + random.nextInt(20)));
+            }
+
+            int from = random.nextInt(text.length());
+
+            if (document.indexOf(patterns.get(0), from) != text.indexOf(patterns.get(0), from)
+                    || !sameMatches(document.findAll(patterns), text, patterns)) {
+                return false;
+            }
+        }
+
+        int replaced = document.replaceAll("ab", "\u20acab");
+
+        return document.indexOf("xyz", 0) == -1 && document.toString().equals(text.replace("ab", "\u20acab"))
+                && replaced == (text.length() - text.replace("ab", "").length()) / 2
+                && document.replaceAll("xyz", "") == 0;
+    }
+
+    private static boolean sameMatches(List<Match> matches, String text, List<String> patterns) {
+        int k = 0;
+
+        // the expected matches ordered by their start and then by their end, duplicate patterns are reported once
+        for (int i = 0; i < text.length(); i++) {
+            for (int length = 1; length <= 20; length++) {
+                int pattern = patterns.indexOf(text.substring(i, Math.min(i + length, text.length())));
+
+                if (i + length > text.length() || pattern == -1) {
+                    continue;
+                }
+
+                Match match = k < matches.size() ? matches.get(k++) : null;
+
+                if (match == null || match.start() != i || match.end() != i + length || match.pattern() != pattern) {
+                    return false;
+                }
+            }
+        }
+
+        return k == matches.size();
+    }
+
+    private static boolean testLines() {
+        Random random = new Random(13);
+        UnrolledTextList document = new UnrolledTextList(8);
+        StringBuilder expected = new StringBuilder();
+        String[] characters = {"a", "b", " ", "\n", "\r\n", "\u20ac"};
+
+        for (int i = 0; i < 500; i++) {
+            expected.append(characters[random.nextInt(characters.length)]);
+        }
+
+        document.insertText(expected.toString());
+
+        for (int k = 0; k < 1000; k++) {
+            int length = expected.length();
+            int i = random.nextInt(length);
+            int j = Math.min(i + random.nextInt(40), length);
+            UnrolledTextList clipboard = document.cutText(i, j);
+            expected.delete(i, j);
+            int p = random.nextInt(expected.length());
+            document.pasteText(p, clipboard);
+
+            // the clipboard is pasted after the character if it is the last one of its node
+            String before = new StringBuilder(expected).insert(p, clipboard.toString()).toString();
+            expected.insert(document.toString().equals(before) ? p : p + 1, clipboard.toString());
+
+            if (!sameLines(document, expected.toString(), random)) {
+                return false;
+            }
+        }
+
+        document.clear();
+
+        return document.lineCount() == 1 && document.lineToOffset(0) == 0 && document.offsetToLine(0) == 0
+                && document.getLine(0).isEmpty();
+    }
+
+    private static boolean sameLines(UnrolledTextList document, String expected, Random random) {
+        String[] lines = expected.split("\n", -1);
+        int line = random.nextInt(lines.length);
+        int start = 0;
+
+        for (int l = 0; l < line; l++) {
+            start += lines[l].length() + 1;
+        }
+
+        int i = random.nextInt(expected.length() + 1);
+        int expectedLine = expected.substring(0, i).split("\n", -1).length - 1;
+        String text = lines[line].endsWith("\r") && line + 1 < lines.length
+                ? lines[line].substring(0, lines[line].length() - 1) : lines[line];
+
+        return document.lineCount() == lines.length && document.lineToOffset(line) == start
+                && document.offsetToLine(i) == expectedLine && document.getLine(line).equals(text);
+    }
+
+    private static boolean isCompact(Fragmentation fragmentation) {
+        return fragmentation.largestNode() <= 16
+                && (fragmentation.underfilledNodes() == 0 || fragmentation.nodes() == 1);
+    }
+
+    private static boolean testConcurrentReads() {
+        StringBuilder builder = new StringBuilder();
+        Random random = new Random(23);
+
+        for (int i = 0; i < 100_000; i++) {
+            builder.append((char) ('a' + random.nextInt(26)));
+        }
+
+        String text = builder.toString();
+        UnrolledTextList document = new UnrolledTextList(16);
+        document.insertText(text);
+        AtomicBoolean consistent = new AtomicBoolean(true);
+        Thread[] readers = new Thread[4];
+
+        // the readers move the cursor of the same list, and every one of them must still find its own characters
+        for (int k = 0; k < readers.length; k++) {
+            long seed = k;
+            readers[k] = new Thread(() -> {
+                Random positions = new Random(seed);
+
+                for (int n = 0; n < 200_000; n++) {
+                    int i = positions.nextInt(text.length() - 20);
+                    int j = i + positions.nextInt(20);
+
+                    try {
+                        if (!document.substring(i, j).equals(text.substring(i, j))
+                                || document.indexOf(text.charAt(j), i) != text.indexOf(text.charAt(j), i)) {
+                            consistent.set(false);
+                        }
+                    } catch (RuntimeException exception) {
+                        consistent.set(false);
+                    }
+                }
+            });
+            readers[k].start();
+        }
+
+        for (Thread reader : readers) {
+            try {
+                reader.join();
+            } catch (InterruptedException exception) {
+                return false;
+            }
+        }
+
+        return consistent.get();
+    }
+
+    private static boolean testHashes() {
+        Random random = new Random(24);
+        UnrolledTextList document = new UnrolledTextList(8);
+        StringBuilder expected = new StringBuilder();
+
+        for (int i = 0; i < 400; i++) {
+            expected.append(i % 30 == 0 ? '\u20ac' : (char) ('a' + random.nextInt(3)));
+        }
+
+        document.insertText(expected.toString());
+
+        // the hashes do not depend on how the text is split into nodes
+        UnrolledTextList other = new UnrolledTextList(5);
+        other.insertText(expected.toString());
+
+        if (!document.contentEquals(other) || document.contentHash() != other.contentHash()
+                || document.diff(other) != null) {
+            return false;
+        }
+
+        for (int k = 0; k < 300; k++) {
+            // the checkpoint shares the nodes of the document
+            UnrolledTextList checkpoint = document.copyText(0, expected.length());
+            String saved = expected.toString();
+
+            for (int e = random.nextInt(4); e > 0; e--) {
+                int i = random.nextInt(expected.length() + 1);
+                int j = Math.min(i + random.nextInt(20), expected.length());
+                String text = "abc".substring(random.nextInt(4));
+                document.applyBatch(List.of(TextEdit.replace(i, j, text)));
+                expected.replace(i, j, text);
+            }
+
+            String current = expected.toString();
+            int prefix = 0;
+            int suffix = 0;
+            int shorter = Math.min(saved.length(), current.length());
+
+            while (prefix < shorter && saved.charAt(prefix) == current.charAt(prefix)) {
+                prefix++;
+            }
+
+            while (suffix < shorter - prefix && saved.charAt(saved.length() - suffix - 1)
+                    == current.charAt(current.length() - suffix - 1)) {
+                suffix++;
+            }
+
+            TextEdit diff = checkpoint.diff(document);
+
+            if (saved.equals(current) ? diff != null || !checkpoint.contentEquals(document)
+                    : diff == null || checkpoint.contentEquals(document) || diff.start() != prefix
+                    || diff.end() != saved.length() - suffix
+                    || !diff.text().equals(current.substring(prefix, current.length() - suffix))) {
+                return false;
+            }
+
+            // applying the diff to the checkpoint gives the document
+            if (diff != null) {
+                checkpoint.applyBatch(List.of(diff));
+            }
+
+            if (!checkpoint.contentEquals(document) || !checkpoint.toString().equals(current)) {
+                return false;
+            }
+
+            if (expected.length() < 100) {
+                document.insertText(saved);
+                expected.append(saved);
+            }
+        }
+
+        return true;
+    }
+
+    private static boolean testSearch(UnrolledTextList document, String expected, Random random) {
+        int length = expected.length();
+
+        if (document.length() != length) {
+            return false;
+        }
+
+        if (length == 0) {
+            return true;
+        }
+
+        int i = random.nextInt(length);
+        int j = i + random.nextInt(length - i + 1);
+        char c = (char) ('a' + random.nextInt(26));
+
+        return document.charAt(i) == expected.charAt(i)
+                && document.substring(i, j).equals(expected.substring(i, j))
+                && document.indexOf(c, i) == expected.indexOf(c, i)
+                && document.lastIndexOf(c, i) == expected.lastIndexOf(c, i);
+    }
+
+    private static boolean testSharedClipboard() {
+        UnrolledTextList document = new UnrolledTextList(4);
+        document.insertText("abcdefghijklmnopqrstuvwxyz");
+
+        UnrolledTextList clipboard = document.copyText(2, 18);
+        document.pasteText(0, clipboard);
+        document.pasteText(document.length() - 1, clipboard);
+        document.cutText(4, 40);
+        document.pasteText(3, document);
+
+        return clipboard.toString().equals("cdefghijklmnopqr")
+                && document.toString().equals("cdecdefyzcdefghijklmnopqrfyzcdefghijklmnopqr");
+    }
+
+    private static boolean testLoad() throws IOException {
+        String[] characters = {"a", "b", "\u00e9", "\u20ac", "\ud83d\ude00", " ", "\r\n"};
+        StringBuilder text = new StringBuilder();
+
+        for (int i = 0; i < 20000; i++) {
+            text.append(characters[i % characters.length]);
+        }
+
+        Path file = Files.createTempFile("unrolled", ".txt");
+
+        try {
+            Files.write(file, text.toString().getBytes(StandardCharsets.UTF_8));
+
+            UnrolledTextList loaded = UnrolledTextList.load(file, 7);
+
+            // the line breaks are kept, so the loaded lines are the lines of the file
+            return loaded.toString().equals(text.toString())
+                    && UnrolledTextList.load(file, 1).toString().equals(text.toString())
+                    && loaded.lineCount() == text.toString().split("\n", -1).length
+                    && loaded.getLine(1).equals(text.toString().split("\r\n")[1]);
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    private static boolean testExport() throws IOException {
+        UnrolledTextList document = new UnrolledTextList(5);
+        document.insertText("plain ascii text, caf\u00e9 \u20ac and \ud83d\ude00 emoji split over nodes");
+        String expected = document.toString();
+        CharSequence view = document.asCharSequence();
+
+        StringWriter writer = new StringWriter();
+        document.writeTo(writer);
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        long written = document.transferTo(Channels.newChannel(bytes));
+
+        boolean exported = view.toString().equals(expected) && view.subSequence(6, 11).toString().equals("ascii")
+                && writer.toString().equals(expected)
+                && bytes.toString(StandardCharsets.UTF_8).equals(expected) && written == bytes.size();
+
+        for (int i = 0; i < expected.length(); i++) {
+            exported &= view.charAt(i) == expected.charAt(i);
+        }
+
+        // the cached text is dropped when the document changes, and the view follows the document
+        boolean cached = document.toString() == expected;
+        document.cutText(0, 6);
+
+        if (!exported || !cached || !view.toString().equals(expected.substring(6))
+                || !document.toString().equals(expected.substring(6))) {
+            return false;
+        }
+
+        // Latin-1 characters which are not ASCII are inserted, split across nodes and cut again, and the nodes
+        // written as raw bytes must never hold one of them
+        UnrolledTextList latin1 = new UnrolledTextList(8);
+        latin1.insertText("ascii only text in several nodes");
+
+        for (int i = 1; i < 30; i += 3) {
+            latin1.applyBatch(List.of(TextEdit.insert(i, "\u00e9\u00e0")));
+        }
+
+        latin1.cutText(4, 9);
+        latin1.cutText(20, 22);
+        bytes.reset();
+        written = latin1.transferTo(Channels.newChannel(bytes));
+
+        return bytes.toString(StandardCharsets.UTF_8).equals(latin1.toString()) && written == bytes.size();
+    }
 }
@@ -0,0 +1,164 @@
+/*
+ * Copyright 2020 <Copyright Vasu Gupta>
+ * Vasu Gupta
+ * Email: vasu99g@gmail.com
+ */
+
+package texteditor;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+
+/**
+ * <b>AhoCorasick</b> represents the Aho-Corasick search of several patterns at once.
+ * <p>
+ * The patterns are stored in a trie, where every state also links to the state of its longest proper suffix (the
+ * failure link) and to the closest suffix state which completes a pattern (the output link). The text is read once,
+ * character by character, so the search costs O(n + matches) however many patterns are searched.
+ */
+final class AhoCorasick {
+    private final List<Map<Character, Integer>> transitions = new ArrayList<>(); // children of every state
+    private final List<Integer> patterns = new ArrayList<>(); // pattern completed by every state, -1 if none
+    private final int[] lengths; // number of characters in every pattern
+    private int[] failures; // state of the longest proper suffix of every state
+    private int[] outputs; // closest suffix state completing a pattern, -1 if none
+
+    /**
+     * Builds the trie of the patterns. Duplicate patterns are reported with the index of the first one.
+     *
+     * @param patterns the patterns to be searched
+     * @throws IllegalArgumentException if patterns is null, or a pattern is null or empty
+     */
+    AhoCorasick(List<String> patterns) {
+        if (patterns == null) {
+            throw new IllegalArgumentException("Patterns cannot be null");
+        }
+
+        lengths = new int[patterns.size()];
+        newState();
+
+        for (int k = 0; k < patterns.size(); k++) {
+            String pattern = patterns.get(k);
+
+            if (pattern == null || pattern.isEmpty()) {
+                throw new IllegalArgumentException("Pattern cannot be empty");
+            }
+
+            int state = 0;
+
+            for (int i = 0; i < pattern.length(); i++) {
+                Integer next = transitions.get(state).get(pattern.charAt(i));
+
+                if (next == null) {
+                    next = newState();
+                    transitions.get(state).put(pattern.charAt(i), next);
+                }
+
+                state = next;
+            }
+
+            if (this.patterns.get(state) == -1) {
+                this.patterns.set(state, k);
+            }
+
+            lengths[k] = pattern.length();
+        }
+
+        link();
+    }
+
+    /**
+     * Returns every occurrence of the patterns in the text, including the overlapping ones, ordered by their
+     * starting index and then by their ending index.
+     *
+     * @param text the text to search in
+     * @return the matches of the patterns
+     */
+    List<Match> findAll(CharSequence text) {
+        List<Match> matches = new ArrayList<>();
+        int state = 0;
+
+        for (int i = 0; i < text.length(); i++) {
+            state = next(state, text.charAt(i));
+            int matched = patterns.get(state) != -1 ? state : outputs[state];
+
+            for (; matched != -1; matched = outputs[matched]) {
+                int pattern = patterns.get(matched);
+                matches.add(new Match(i + 1 - lengths[pattern], i + 1, pattern));
+            }
+        }
+
+        matches.sort(Comparator.comparingInt(Match::start).thenComparingInt(Match::end));
+
+        return matches;
+    }
+
+    /**
+     * Returns the state reached from the state by reading the character, following the failure links till a state
+     * has a transition for it.
+     *
+     * @param state the current state
+     * @param c the character read
+     * @return the next state
+     */
+    private int next(int state, char c) {
+        while (true) {
+            Integer next = transitions.get(state).get(c);
+
+            if (next != null) {
+                return next;
+            }
+
+            if (state == 0) {
+                return 0;
+            }
+
+            state = failures[state];
+        }
+    }
+
+    /**
+     * Adds a new state to the trie.
+     *
+     * @return index of the new state
+     */
+    private int newState() {
+        transitions.add(new HashMap<>());
+        patterns.add(-1);
+
+        return transitions.size() - 1;
+    }
+
+    /**
+     * Computes the failure and output links of the states, in breadth first order so the links of the shorter
+     * suffixes are known first.
+     */
+    private void link() {
+        failures = new int[transitions.size()];
+        outputs = new int[transitions.size()];
+        outputs[0] = -1;
+        Queue<Integer> queue = new ArrayDeque<>(transitions.get(0).values());
+
+        for (int child : queue) {
+            outputs[child] = -1;
+        }
+
+        while (!queue.isEmpty()) {
+            int state = queue.poll();
+
+            for (Map.Entry<Character, Integer> transition : transitions.get(state).entrySet()) {
+                int child = transition.getValue();
+                int failure = next(failures[state], transition.getKey());
+
+                failures[child] = failure;
+                outputs[child] = patterns.get(failure) != -1 ? failure : outputs[failure];
+                queue.add(child);
+            }
+        }
+    }
+}
@@ -0,0 +1,28 @@
+/*
+ * Copyright 2020 <Copyright Vasu Gupta>
+ * Vasu Gupta
+ * Email: vasu99g@gmail.com
+ */
+
+package texteditor;
+
+import java.util.List;
+
+/**
+ * <b>ChangeListener</b> represents a receiver of the changes of the document of a {@link TextEditor}, added with
+ * {@link TextEditor#addChangeListener(ChangeListener, java.util.concurrent.Executor)}.
+ * <p>
+ * The changes are delivered in batches on the executor of the listener, after the edits have released the lock of the
+ * editor, so a listener can read the editor. The batches of a listener are delivered one at a time and in order, and
+ * the changes made while a batch is waiting to be delivered join it, adjacent changes being merged into one. Applying
+ * the changes of every batch in order to a copy of the document at the time the listener was added gives the current
+ * document.
+ */
+public interface ChangeListener {
+    /**
+     * Called with the changes of the document since the previous call.
+     *
+     * @param changes the changes, in the order they were applied
+     */
+    void changed(List<TextChange> changes);
+}
@@ -0,0 +1,115 @@
+/*
+ * Copyright 2020 <Copyright Vasu Gupta>
+ * Vasu Gupta
+ * Email: vasu99g@gmail.com
+ */
+
+package texteditor;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * <b>ClipboardRing</b> represents the history of the clipboard of an editor, the latest clip first. A clip is the list
+ * returned by a cut or a copy, kept as it is: a cut clip holds the nodes detached from the document, and a copied clip
+ * shares its nodes with the document, so the ring never copies the text of a clip.
+ * <p>
+ * A clip with the same text as a clip already in the ring replaces it, and the oldest clips are forgotten once the
+ * clips hold more characters than the budget. The latest clip is kept whatever its length, since it is the clipboard.
+ */
+final class ClipboardRing {
+    private final List<UnrolledTextList> clips = new ArrayList<>(); // the clips, the latest first
+    private long chars; // number of characters in the clips
+    private long budget; // max number of characters in the clips, unless the latest clip alone is longer
+
+    /**
+     * Constructs an empty ring.
+     *
+     * @param budget max number of characters in the clips
+     */
+    ClipboardRing(long budget) {
+        this.budget = budget;
+    }
+
+    /**
+     * Makes the clip the latest one. A clip with the same text is removed from the ring, which is found by comparing
+     * the hashes of the clips of the same length, so the text of the clips is not read again.
+     *
+     * @param clip the new clipboard
+     */
+    void push(UnrolledTextList clip) {
+        for (int slot = 0; slot < clips.size(); slot++) {
+            UnrolledTextList other = clips.get(slot);
+
+            if (other == clip || other.contentEquals(clip)) {
+                clips.remove(slot);
+                chars -= other.length();
+                break;
+            }
+        }
+
+        clips.add(0, clip);
+        chars += clip.length();
+        trim();
+    }
+
+    /**
+     * Returns the clip in the slot.
+     *
+     * @param slot the index of the clip, 0 for the latest one
+     * @return the clip in the slot
+     * @throws IllegalArgumentException if slot < 0 or slot >= number of clips
+     */
+    UnrolledTextList get(int slot) {
+        if (slot < 0 || slot >= clips.size()) {
+            throw new IllegalArgumentException("Clipboard slot " + slot + " is out of bounds");
+        }
+
+        return clips.get(slot);
+    }
+
+    /**
+     * Returns the number of clips in the ring.
+     *
+     * @return number of clips
+     */
+    int size() {
+        return clips.size();
+    }
+
+    /**
+     * Returns the number of characters in the clips. Clips sharing nodes are counted once for each clip.
+     *
+     * @return number of characters in the clips
+     */
+    long chars() {
+        return chars;
+    }
+
+    /**
+     * Sets the max number of characters in the clips, forgetting the oldest clips which do not fit.
+     *
+     * @param budget max number of characters in the clips
+     */
+    void setBudget(long budget) {
+        this.budget = budget;
+        trim();
+    }
+
+    /**
+     * Forgets every clip.
+     */
+    void clear() {
+        clips.clear();
+        chars = 0;
+    }
+
+    /**
+     * Forgets the oldest clips till the clips fit in the budget or only the latest one is left.
+     */
+    private void trim() {
+        while (chars > budget && clips.size() > 1) {
+            chars -= clips.remove(clips.size() - 1).length();
+        }
+    }
+}
@@ -0,0 +1,138 @@
+/*
+ * Copyright 2020 <Copyright Vasu Gupta>
+ * Vasu Gupta
+ * Email: vasu99g@gmail.com
+ */
+
+package texteditor;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * <b>ContentHash</b> represents the polynomial hash of a text, modulo the prime 2^61 - 1, together with the power of
+ * the base for its length. The hash of two texts put together is computed from their hashes, so the hash of a
+ * document is built from the hashes of its nodes, however the text is split into nodes.
+ * <p>
+ * The base is chosen at random when the class is loaded, so the hashes are only comparable within a process, and
+ * two different texts of length n have the same hash with probability at most n / 2^61 whatever the texts are.
+ */
+final class ContentHash {
+    private static final long MODULUS = (1L << 61) - 1; // the Mersenne prime the hashes are reduced by
+    private static final long BASE = ThreadLocalRandom.current().nextLong(1L << 32, MODULUS); // base of the hashes
+    static final ContentHash EMPTY = new ContentHash(0, 1); // the hash of the empty text
+
+    private final long hash; // the hash of the text
+    private final long power; // BASE to the power of the length of the text
+
+    /**
+     * Constructs a hash.
+     *
+     * @param hash the hash of the text
+     * @param power BASE to the power of the length of the text
+     */
+    private ContentHash(long hash, long power) {
+        this.hash = hash;
+        this.power = power;
+    }
+
+    /**
+     * Computes the hash of the text from start to end (exclusive).
+     *
+     * @param text the text containing the characters
+     * @param start the index of the first character
+     * @param end the index after the last character
+     * @return the hash of the characters
+     */
+    static ContentHash of(CharSequence text, int start, int end) {
+        long hash = 0;
+        long power = 1;
+
+        for (int i = start; i < end; i++) {
+            hash = add(multiply(hash, BASE), text.charAt(i) + 1);
+            power = multiply(power, BASE);
+        }
+
+        return new ContentHash(hash, power);
+    }
+
+    /**
+     * Returns the hash of this text followed by the other text.
+     *
+     * @param next the hash of the text following this one
+     * @return the hash of both texts put together
+     */
+    ContentHash concat(ContentHash next) {
+        return new ContentHash(add(multiply(hash, next.power), next.hash), multiply(power, next.power));
+    }
+
+    /**
+     * Returns the hash of the text left once this text is removed from the start of the whole text.
+     *
+     * @param whole the hash of a text starting with this text
+     * @param length the length of the remaining text
+     * @return the hash of the rest of the whole text
+     */
+    ContentHash suffixOf(ContentHash whole, int length) {
+        long power = power(length);
+
+        return new ContentHash(add(whole.hash, MODULUS - multiply(hash, power)), power);
+    }
+
+    /**
+     * Returns the hash as a single number.
+     *
+     * @return the hash, between 0 and 2^61 - 2
+     */
+    long value() {
+        return hash;
+    }
+
+    /**
+     * Checks if both hashes are the same, and so are the lengths of their texts unless they collide.
+     *
+     * @param other the other hash
+     * @return true if the hashes are the same
+     */
+    boolean matches(ContentHash other) {
+        return hash == other.hash && power == other.power;
+    }
+
+    /**
+     * Returns BASE to the power of n.
+     *
+     * @param n the exponent
+     * @return BASE^n modulo MODULUS
+     */
+    private static long power(int n) {
+        long result = 1;
+
+        for (long base = BASE; n > 0; n >>= 1, base = multiply(base, base)) {
+            if ((n & 1) == 1) {
+                result = multiply(result, base);
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * Returns a + b modulo MODULUS.
+     */
+    private static long add(long a, long b) {
+        long sum = a + b;
+
+        return sum >= MODULUS ? sum - MODULUS : sum;
+    }
+
+    /**
+     * Returns a * b modulo MODULUS, splitting the 122 bit product at bit 61 since 2^61 is 1 modulo MODULUS.
+     */
+    private static long multiply(long a, long b) {
+        long low = a * b;
+        long high = Math.multiplyHigh(a, b);
+        long sum = (low & MODULUS) + ((low >>> 61) | (high << 3));
+        sum = (sum & MODULUS) + (sum >>> 61);
+
+        return sum >= MODULUS ? sum - MODULUS : sum;
+    }
+}
@@ -0,0 +1,74 @@
+/*
+ * Copyright 2020 <Copyright Vasu Gupta>
+ * Vasu Gupta
+ * Email: vasu99g@gmail.com
+ */
+
+package texteditor;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
+
+/**
+ * <b>Dictionary</b> represents a set of correctly spelled words, which can be checked against any slice of a
+ * CharSequence without building a String for the word.
+ */
+public interface Dictionary {
+    /**
+     * Checks if the text from start to end (exclusive) is a word in the dictionary.
+     *
+     * @param text the text containing the word
+     * @param start the index of the first character of the word
+     * @param end the index after the last character of the word
+     * @return true if the word is in the dictionary, false otherwise
+     */
+    boolean contains(CharSequence text, int start, int end);
+
+    /**
+     * Checks if the word is in the dictionary.
+     *
+     * @param word the word to be checked
+     * @return true if the word is in the dictionary, false otherwise
+     */
+    default boolean contains(CharSequence word) {
+        return contains(word, 0, word.length());
+    }
+
+    /**
+     * Returns the words of the dictionary within two edits of the word, where an edit inserts, deletes or substitutes
+     * a character or transposes two adjacent ones. The closest words come first, then the ones whose length is
+     * closest to the word, and then in alphabetical order. A word of the dictionary is its own first suggestion. The
+     * index of the suggestions is built the first time, and cached next to the compiled dictionary.
+     *
+     * @param word the misspelled word
+     * @param limit max number of suggestions
+     * @return the suggested words, the best first
+     * @throws IllegalArgumentException if word is null or limit is negative
+     */
+    List<String> suggest(CharSequence word, int limit);
+
+    /**
+     * Returns the dictionary of the system words, which is loaded once and shared by the whole process. If the
+     * words cannot be loaded, the shared dictionary is empty.
+     *
+     * @return the shared dictionary
+     */
+    static Dictionary shared() {
+        return PackedDictionary.shared();
+    }
+
+    /**
+     * Loads the dictionary from the file containing one word per line. The words are compiled into a compact binary
+     * file the first time, and later loads memory-map the compiled file as long as the source file is unchanged.
+     *
+     * @param source the path of the file containing the words
+     * @param compiled the path of the compiled dictionary
+     * @return the dictionary containing the words
+     * @throws IllegalArgumentException if source or compiled is null
+     * @throws IOException if the source file cannot be read
+     */
+    static Dictionary load(Path source, Path compiled) throws IOException {
+        return PackedDictionary.load(source, compiled);
+    }
+}
@@ -0,0 +1,47 @@
+/*
+ * Copyright 2020 <Copyright Vasu Gupta>
+ * Vasu Gupta
+ * Email: vasu99g@gmail.com
+ */
+
+package texteditor;
+
+/**
+ * <b>EditorMetrics</b> represents a receiver of the measurements of a {@link TextEditor}, set with
+ * {@link TextEditor#setMetrics(EditorMetrics)}.
+ * <p>
+ * The methods are called on the threads performing the operations, so an implementation has to be thread safe and
+ * cheap. No editor has metrics by default, and an editor without metrics neither reads the clock nor counts anything
+ * beyond a local variable. {@link EditorStats} is an implementation exposing the measurements through JMX.
+ */
+public interface EditorMetrics {
+    /**
+     * Operations of the editor which are measured.
+     */
+    enum Operation {
+        CUT, COPY, PASTE, MISSPELLINGS
+    }
+
+    /**
+     * Called for every lookup of the node containing a character of the document.
+     *
+     * @param nodes number of nodes visited by the lookup
+     */
+    void nodesTraversed(int nodes);
+
+    /**
+     * Called for every cut, copy and paste with the size of the text moved to or from the clipboard.
+     *
+     * @param operation the operation moving the text
+     * @param bytes number of bytes of the text
+     */
+    void bytesCopied(Operation operation, long bytes);
+
+    /**
+     * Called once an operation returns, with the time it took including the wait for the lock of the editor.
+     *
+     * @param operation the measured operation
+     * @param nanos duration of the operation in nanoseconds
+     */
+    void latency(Operation operation, long nanos);
+}
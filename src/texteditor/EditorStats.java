@@ -0,0 +1,305 @@
+/*
+ * Copyright 2020 <Copyright Vasu Gupta>
+ * Vasu Gupta
+ * Email: vasu99g@gmail.com
+ */
+
+package texteditor;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * <b>EditorStats</b> represents the counters and latency histograms of a {@link TextEditor}, which can be
+ * registered as an MBean. It starts counting once it is set as the metrics of the editor:
+ * <pre>
+ *     EditorStats stats = new EditorStats(editor);
+ *     editor.setMetrics(stats);
+ *     stats.register("document.txt");
+ * </pre>
+ * The counters are LongAdders, so the editing thread and the reading threads do not contend on them. A latency is
+ * recorded in the histogram bucket of its power of two, so the percentiles are exact up to a factor of two. The node
+ * count and fill are read from the editor when they are asked for.
+ */
+public final class EditorStats implements EditorMetrics, EditorStatsMBean {
+    private static final int BUCKETS = 64; // one bucket for every power of two of a latency in nanoseconds
+
+    private final TextEditor editor; // the measured editor
+    private final LongAdder nodeLookups = new LongAdder(); // number of node lookups
+    private final LongAdder nodesTraversed = new LongAdder(); // number of nodes visited by the lookups
+    private final LongAdder[] bytesCopied = new LongAdder[Operation.values().length]; // bytes of every operation
+    private final Histogram[] latencies = new Histogram[Operation.values().length]; // latencies of every operation
+
+    /**
+     * <b>Histogram</b> represents the distribution of the latencies of an operation, with a bucket for every power
+     * of two.
+     */
+    private static final class Histogram {
+        private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS); // number of latencies in every bucket
+        private final LongAdder count = new LongAdder(); // number of latencies
+        private final LongAdder sum = new LongAdder(); // sum of the latencies
+
+        /**
+         * Records a latency.
+         *
+         * @param nanos the latency in nanoseconds
+         */
+        private void record(long nanos) {
+            nanos = Math.max(nanos, 0);
+            buckets.incrementAndGet(Math.min(BUCKETS - Long.numberOfLeadingZeros(nanos), BUCKETS - 1));
+            count.increment();
+            sum.add(nanos);
+        }
+
+        /**
+         * Returns the average latency.
+         *
+         * @return mean latency in nanoseconds, 0 if nothing was recorded
+         */
+        private double mean() {
+            long n = count.sum();
+
+            return n == 0 ? 0 : (double) sum.sum() / n;
+        }
+
+        /**
+         * Returns the latency under which the given fraction of the latencies fall, rounded up to a power of two.
+         *
+         * @param fraction the fraction of the latencies, between 0 and 1
+         * @return the percentile in nanoseconds, 0 if nothing was recorded
+         */
+        private long percentile(double fraction) {
+            long total = 0;
+
+            for (int b = 0; b < BUCKETS; b++) {
+                total += buckets.get(b);
+            }
+
+            long rank = (long) Math.ceil(fraction * total);
+            long seen = 0;
+
+            for (int b = 0; b < BUCKETS; b++) {
+                seen += buckets.get(b);
+
+                if (seen >= rank && seen > 0) {
+                    return b == 0 ? 0 : b >= BUCKETS - 1 ? Long.MAX_VALUE : 1L << b;
+                }
+            }
+
+            return 0;
+        }
+
+        /**
+         * Sets the histogram back to zero.
+         */
+        private void reset() {
+            for (int b = 0; b < BUCKETS; b++) {
+                buckets.set(b, 0);
+            }
+
+            count.reset();
+            sum.reset();
+        }
+    }
+
+    /**
+     * Constructs empty statistics of the editor, which are updated once they are set as its metrics.
+     *
+     * @param editor the measured editor
+     * @throws IllegalArgumentException if editor is null
+     */
+    public EditorStats(TextEditor editor) {
+        if (editor == null) {
+            throw new IllegalArgumentException("Editor cannot be null");
+        }
+
+        this.editor = editor;
+
+        for (Operation operation : Operation.values()) {
+            bytesCopied[operation.ordinal()] = new LongAdder();
+            latencies[operation.ordinal()] = new Histogram();
+        }
+    }
+
+    /**
+     * Registers the statistics with the platform MBean server, under texteditor:type=EditorStats,name=[name].
+     *
+     * @param name the name identifying the editor
+     * @return the name of the registered MBean
+     * @throws IllegalArgumentException if name is null
+     * @throws JMException if the MBean cannot be registered, for example when the name is already taken
+     */
+    public ObjectName register(String name) throws JMException {
+        if (name == null) {
+            throw new IllegalArgumentException("Name cannot be null");
+        }
+
+        ObjectName objectName = new ObjectName("texteditor:type=EditorStats,name=" + ObjectName.quote(name));
+        ManagementFactory.getPlatformMBeanServer().registerMBean(this, objectName);
+
+        return objectName;
+    }
+
+    /**
+     * Returns the number of operations which were measured.
+     *
+     * @param operation the operation
+     * @return number of measured operations
+     */
+    public long count(Operation operation) {
+        return latencies[operation.ordinal()].count.sum();
+    }
+
+    /**
+     * Returns the latency under which the given fraction of the operations returned, rounded up to a power of two.
+     *
+     * @param operation the operation
+     * @param fraction the fraction of the operations, between 0 and 1
+     * @return the percentile in nanoseconds, 0 if the operation was not measured
+     * @throws IllegalArgumentException if fraction is not between 0 and 1
+     */
+    public long percentile(Operation operation, double fraction) {
+        if (!(fraction >= 0 && fraction <= 1)) {
+            throw new IllegalArgumentException("Fraction must be between 0 and 1");
+        }
+
+        return latencies[operation.ordinal()].percentile(fraction);
+    }
+
+    /**
+     * Returns the number of bytes moved to or from the clipboard by an operation.
+     *
+     * @param operation the operation
+     * @return number of bytes
+     */
+    public long bytesCopied(Operation operation) {
+        return bytesCopied[operation.ordinal()].sum();
+    }
+
+    @Override
+    public void nodesTraversed(int nodes) {
+        nodeLookups.increment();
+        nodesTraversed.add(nodes);
+    }
+
+    @Override
+    public void bytesCopied(Operation operation, long bytes) {
+        bytesCopied[operation.ordinal()].add(bytes);
+    }
+
+    @Override
+    public void latency(Operation operation, long nanos) {
+        latencies[operation.ordinal()].record(nanos);
+    }
+
+    @Override
+    public long getNodeLookups() {
+        return nodeLookups.sum();
+    }
+
+    @Override
+    public double getAverageNodesTraversed() {
+        long lookups = nodeLookups.sum();
+
+        return lookups == 0 ? 0 : (double) nodesTraversed.sum() / lookups;
+    }
+
+    @Override
+    public int getNodes() {
+        return editor.peekFragmentation().nodes();
+    }
+
+    @Override
+    public double getAverageFill() {
+        return editor.peekFragmentation().averageFill();
+    }
+
+    @Override
+    public long getCutBytes() {
+        return bytesCopied(Operation.CUT);
+    }
+
+    @Override
+    public long getCopiedBytes() {
+        return bytesCopied(Operation.COPY);
+    }
+
+    @Override
+    public long getPastedBytes() {
+        return bytesCopied(Operation.PASTE);
+    }
+
+    @Override
+    public long getCutCount() {
+        return count(Operation.CUT);
+    }
+
+    @Override
+    public double getCutMeanNanos() {
+        return latencies[Operation.CUT.ordinal()].mean();
+    }
+
+    @Override
+    public long getCutP99Nanos() {
+        return percentile(Operation.CUT, 0.99);
+    }
+
+    @Override
+    public long getCopyCount() {
+        return count(Operation.COPY);
+    }
+
+    @Override
+    public double getCopyMeanNanos() {
+        return latencies[Operation.COPY.ordinal()].mean();
+    }
+
+    @Override
+    public long getCopyP99Nanos() {
+        return percentile(Operation.COPY, 0.99);
+    }
+
+    @Override
+    public long getPasteCount() {
+        return count(Operation.PASTE);
+    }
+
+    @Override
+    public double getPasteMeanNanos() {
+        return latencies[Operation.PASTE.ordinal()].mean();
+    }
+
+    @Override
+    public long getPasteP99Nanos() {
+        return percentile(Operation.PASTE, 0.99);
+    }
+
+    @Override
+    public long getMisspellingsCount() {
+        return count(Operation.MISSPELLINGS);
+    }
+
+    @Override
+    public double getMisspellingsMeanNanos() {
+        return latencies[Operation.MISSPELLINGS.ordinal()].mean();
+    }
+
+    @Override
+    public long getMisspellingsP99Nanos() {
+        return percentile(Operation.MISSPELLINGS, 0.99);
+    }
+
+    @Override
+    public void reset() {
+        nodeLookups.reset();
+        nodesTraversed.reset();
+
+        for (Operation operation : Operation.values()) {
+            bytesCopied[operation.ordinal()].reset();
+            latencies[operation.ordinal()].reset();
+        }
+    }
+}
@@ -0,0 +1,153 @@
+/*
+ * Copyright 2020 <Copyright Vasu Gupta>
+ * Vasu Gupta
+ * Email: vasu99g@gmail.com
+ */
+
+package texteditor;
+
+/**
+ * <b>EditorStatsMBean</b> represents the JMX attributes of an {@link EditorStats}. The latencies are in nanoseconds,
+ * and the percentiles are rounded up to the next power of two.
+ */
+public interface EditorStatsMBean {
+    /**
+     * Returns the number of node lookups.
+     *
+     * @return number of lookups
+     */
+    long getNodeLookups();
+
+    /**
+     * Returns the average number of nodes visited by a node lookup.
+     *
+     * @return average number of nodes per lookup, 0 if there were no lookups
+     */
+    double getAverageNodesTraversed();
+
+    /**
+     * Returns the current number of nodes of the document. An evicted document is not read back: the number of nodes
+     * it had when it was evicted is returned.
+     *
+     * @return number of nodes
+     */
+    int getNodes();
+
+    /**
+     * Returns the fraction of the node capacity currently used on average, between 0 and 1. An evicted document is
+     * not read back: its fill when it was evicted is returned.
+     *
+     * @return average fill factor of the nodes
+     */
+    double getAverageFill();
+
+    /**
+     * Returns the number of bytes moved to the clipboard by the cuts.
+     *
+     * @return number of cut bytes
+     */
+    long getCutBytes();
+
+    /**
+     * Returns the number of bytes moved to the clipboard by the copies.
+     *
+     * @return number of copied bytes
+     */
+    long getCopiedBytes();
+
+    /**
+     * Returns the number of bytes inserted from the clipboard by the pastes.
+     *
+     * @return number of pasted bytes
+     */
+    long getPastedBytes();
+
+    /**
+     * Returns the number of cuts.
+     *
+     * @return number of cuts
+     */
+    long getCutCount();
+
+    /**
+     * Returns the average latency of a cut.
+     *
+     * @return mean latency in nanoseconds
+     */
+    double getCutMeanNanos();
+
+    /**
+     * Returns the 99th percentile of the latency of a cut.
+     *
+     * @return 99th percentile in nanoseconds
+     */
+    long getCutP99Nanos();
+
+    /**
+     * Returns the number of copies.
+     *
+     * @return number of copies
+     */
+    long getCopyCount();
+
+    /**
+     * Returns the average latency of a copy.
+     *
+     * @return mean latency in nanoseconds
+     */
+    double getCopyMeanNanos();
+
+    /**
+     * Returns the 99th percentile of the latency of a copy.
+     *
+     * @return 99th percentile in nanoseconds
+     */
+    long getCopyP99Nanos();
+
+    /**
+     * Returns the number of pastes.
+     *
+     * @return number of pastes
+     */
+    long getPasteCount();
+
+    /**
+     * Returns the average latency of a paste.
+     *
+     * @return mean latency in nanoseconds
+     */
+    double getPasteMeanNanos();
+
+    /**
+     * Returns the 99th percentile of the latency of a paste.
+     *
+     * @return 99th percentile in nanoseconds
+     */
+    long getPasteP99Nanos();
+
+    /**
+     * Returns the number of calls to misspellings().
+     *
+     * @return number of calls
+     */
+    long getMisspellingsCount();
+
+    /**
+     * Returns the average latency of misspellings().
+     *
+     * @return mean latency in nanoseconds
+     */
+    double getMisspellingsMeanNanos();
+
+    /**
+     * Returns the 99th percentile of the latency of misspellings().
+     *
+     * @return 99th percentile in nanoseconds
+     */
+    long getMisspellingsP99Nanos();
+
+    /**
+     * Sets every counter and latency back to zero.
+     */
+    void reset();
+}
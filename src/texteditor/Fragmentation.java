@@ -0,0 +1,100 @@
+/*
+ * Copyright 2020 <Copyright Vasu Gupta>
+ * Vasu Gupta
+ * Email: vasu99g@gmail.com
+ */
+
+package texteditor;
+
+/**
+ * <b>Fragmentation</b> represents the statistics of how the text of an {@link UnrolledTextList} is spread over its
+ * nodes at a point in time.
+ */
+public final class Fragmentation {
+    private final int length; // number of characters in the list
+    private final int nodeSize; // max number of characters per node
+    private final int nodes; // number of nodes in the list
+    private final int underfilledNodes; // number of nodes holding less than half of the node capacity
+    private final int smallestNode; // number of characters in the smallest node
+    private final int largestNode; // number of characters in the largest node
+
+    /**
+     * Constructs the statistics of a list.
+     *
+     * @param length number of characters in the list
+     * @param nodeSize max number of characters per node
+     * @param nodes number of nodes in the list
+     * @param underfilledNodes number of nodes holding less than half of the node capacity
+     * @param smallestNode number of characters in the smallest node
+     * @param largestNode number of characters in the largest node
+     */
+    Fragmentation(int length, int nodeSize, int nodes, int underfilledNodes, int smallestNode, int largestNode) {
+        this.length = length;
+        this.nodeSize = nodeSize;
+        this.nodes = nodes;
+        this.underfilledNodes = underfilledNodes;
+        this.smallestNode = smallestNode;
+        this.largestNode = largestNode;
+    }
+
+    /**
+     * Returns the number of characters in the list.
+     *
+     * @return number of characters
+     */
+    public int length() {
+        return length;
+    }
+
+    /**
+     * Returns the number of nodes in the list.
+     *
+     * @return number of nodes
+     */
+    public int nodes() {
+        return nodes;
+    }
+
+    /**
+     * Returns the number of nodes holding less than half of the node capacity.
+     *
+     * @return number of underfilled nodes
+     */
+    public int underfilledNodes() {
+        return underfilledNodes;
+    }
+
+    /**
+     * Returns the number of characters in the smallest node.
+     *
+     * @return length of the smallest node, 0 if the list has no nodes
+     */
+    public int smallestNode() {
+        return smallestNode;
+    }
+
+    /**
+     * Returns the number of characters in the largest node.
+     *
+     * @return length of the largest node, 0 if the list has no nodes
+     */
+    public int largestNode() {
+        return largestNode;
+    }
+
+    /**
+     * Returns the fraction of the node capacity used on average, between 0 and 1.
+     *
+     * @return average fill factor of the nodes, 0 if the list has no nodes
+     */
+    public double averageFill() {
+        return nodes == 0 || nodeSize == 0 ? 0 : (double) length / ((long) nodes * nodeSize);
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%d characters in %d nodes of size %d: %.1f%% full, %d underfilled, smallest %d, "
+                + "largest %d", length, nodes, nodeSize, averageFill() * 100, underfilledNodes, smallestNode,
+                largestNode);
+    }
+}
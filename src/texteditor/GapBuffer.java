@@ -0,0 +1,613 @@
+/*
+ * Copyright 2020 <Copyright Vasu Gupta>
+ * Vasu Gupta
+ * Email: vasu99g@gmail.com
+ */
+
+package texteditor;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+/**
+ * <b>GapBuffer</b> represents the mutable text stored in a node of an {@link UnrolledTextList}.
+ * <p>
+ * The characters are stored in a single array with a gap at the position of the last modification, so inserting or
+ * deleting at nearby positions only shifts the characters in between instead of the whole node. As long as every
+ * character fits into a single byte (Latin-1) the array is a byte[], and it is inflated to a char[] the first time
+ * any other character is inserted.
+ */
+final class GapBuffer implements CharSequence {
+    private byte[] latin1; // the characters while all of them are Latin-1, null otherwise
+    private char[] utf16; // the characters once any of them is not Latin-1, null otherwise
+    private boolean ascii = true; // false once a character which is not ASCII is stored, till the buffer is emptied
+    private int gapStart; // index of the first slot of the gap
+    private int gapEnd; // index of the first slot after the gap
+    private final int limit; // max capacity the array grows to, unless a longer text is inserted
+    private ContentHash hash; // hash of the text, null if the text was modified since it was computed
+
+    /**
+     * Constructs an empty buffer with the given capacity. The buffer doubles its capacity when it is full, but never
+     * beyond the limit, which is the capacity of the node holding it.
+     *
+     * @param capacity number of characters the buffer can hold before growing
+     * @param limit max number of characters the buffer grows to hold, unless a longer text is inserted
+     * @throws IllegalArgumentException if capacity is negative
+     */
+    GapBuffer(int capacity, int limit) {
+        if (capacity < 0) {
+            throw new IllegalArgumentException("Capacity cannot be negative");
+        }
+
+        latin1 = new byte[capacity];
+        gapEnd = capacity;
+        this.limit = limit;
+    }
+
+    /**
+     * Constructs a buffer containing the text from start to end (exclusive), with no room left.
+     *
+     * @param text the text to be copied into the buffer
+     * @param start the index of the first character to be copied
+     * @param end the index after the last character to be copied
+     * @param limit max number of characters the buffer grows to hold, unless a longer text is inserted
+     */
+    GapBuffer(CharSequence text, int start, int end, int limit) {
+        this(end - start, limit);
+        insert(0, text, start, end);
+    }
+
+    /**
+     * Returns the number of characters in the buffer.
+     *
+     * @return length of the text
+     */
+    @Override
+    public int length() {
+        return capacity() - (gapEnd - gapStart);
+    }
+
+    /**
+     * Returns the ith character in the buffer.
+     *
+     * @param i the index of the character
+     * @return the character at index i
+     */
+    @Override
+    public char charAt(int i) {
+        return get(i < gapStart ? i : i + gapEnd - gapStart);
+    }
+
+    /**
+     * Returns the text from start to end (exclusive) as a String.
+     *
+     * @param start the index of the first character
+     * @param end the index after the last character
+     * @return String containing the characters between start and end
+     */
+    @Override
+    public CharSequence subSequence(int start, int end) {
+        return substring(start, end);
+    }
+
+    /**
+     * Returns the text from start to end (exclusive) as a String.
+     *
+     * @param start the index of the first character
+     * @param end the index after the last character
+     * @return String containing the characters between start and end
+     * @throws IndexOutOfBoundsException if start < 0 or end > length or start > end
+     */
+    String substring(int start, int end) {
+        checkRange(start, end);
+
+        // the text is contiguous if it does not straddle the gap
+        if (end <= gapStart || start >= gapStart) {
+            int from = start < gapStart ? start : start + gapEnd - gapStart;
+
+            return utf16 != null ? new String(utf16, from, end - start)
+                    : new String(latin1, from, end - start, StandardCharsets.ISO_8859_1);
+        }
+
+        char[] chars = new char[end - start];
+        getChars(start, end, chars, 0);
+
+        return new String(chars);
+    }
+
+    /**
+     * Returns the text from start to the end of the buffer as a String.
+     *
+     * @param start the index of the first character
+     * @return String containing the characters after start
+     */
+    String substring(int start) {
+        return substring(start, length());
+    }
+
+    /**
+     * Copies the text from start to end (exclusive) into the destination array.
+     *
+     * @param start the index of the first character
+     * @param end the index after the last character
+     * @param dst the destination array
+     * @param dstBegin the index in the destination array to start copying to
+     */
+    void getChars(int start, int end, char[] dst, int dstBegin) {
+        checkRange(start, end);
+        int beforeGap = Math.min(end, gapStart);
+        int afterGap = Math.max(start, gapStart);
+
+        if (start < beforeGap) {
+            getSlots(start, beforeGap - start, dst, dstBegin);
+            dstBegin += beforeGap - start;
+        }
+
+        if (afterGap < end) {
+            getSlots(afterGap + gapEnd - gapStart, end - afterGap, dst, dstBegin);
+        }
+    }
+
+    /**
+     * Copies the text from start to end (exclusive) into the destination array, one byte per character. Must only
+     * be used if the buffer is Latin-1.
+     *
+     * @param start the index of the first character
+     * @param end the index after the last character
+     * @param dst the destination array
+     * @param dstBegin the index in the destination array to start copying to
+     * @throws IllegalStateException if the buffer is not Latin-1
+     */
+    void getBytes(int start, int end, byte[] dst, int dstBegin) {
+        checkRange(start, end);
+
+        if (!isLatin1()) {
+            throw new IllegalStateException("Text is not Latin-1");
+        }
+
+        int beforeGap = Math.min(end, gapStart);
+        int afterGap = Math.max(start, gapStart);
+
+        if (start < beforeGap) {
+            System.arraycopy(latin1, start, dst, dstBegin, beforeGap - start);
+            dstBegin += beforeGap - start;
+        }
+
+        if (afterGap < end) {
+            System.arraycopy(latin1, afterGap + gapEnd - gapStart, dst, dstBegin, end - afterGap);
+        }
+    }
+
+    /**
+     * Returns the hash of the text in the buffer, which is computed once and kept till the buffer is modified. A
+     * shared buffer is not modified, so the threads reading it may compute the hash at the same time, and all of them
+     * get the same value.
+     *
+     * @return the hash of the text
+     */
+    ContentHash hash() {
+        ContentHash computed = hash;
+
+        if (computed == null) {
+            computed = ContentHash.of(this, 0, length());
+            hash = computed;
+        }
+
+        return computed;
+    }
+
+    /**
+     * Checks if every character in the buffer is stored in a single byte.
+     *
+     * @return true if the buffer is Latin-1, false otherwise
+     */
+    boolean isLatin1() {
+        return utf16 == null;
+    }
+
+    /**
+     * Checks if every character in the buffer is ASCII, in which case the bytes of the buffer are also its UTF-8
+     * encoding. The check is O(1): the buffer remembers if a character which is not ASCII was stored, so it may
+     * return false for a buffer whose characters which are not ASCII were deleted.
+     *
+     * @return true if the buffer is ASCII, false if it may not be
+     */
+    boolean isAscii() {
+        return ascii;
+    }
+
+    /**
+     * Writes the text in the buffer to the writer.
+     *
+     * @param writer the writer to write the text to
+     * @param chars scratch buffer used to widen Latin-1 text
+     * @throws IOException if the writer fails
+     */
+    void writeTo(Writer writer, char[] chars) throws IOException {
+        if (utf16 != null) {
+            writer.write(utf16, 0, gapStart);
+            writer.write(utf16, gapEnd, utf16.length - gapEnd);
+            return;
+        }
+
+        for (int i = 0; i < length(); i += chars.length) {
+            int end = Math.min(length(), i + chars.length);
+            getChars(i, end, chars, 0);
+            writer.write(chars, 0, end - i);
+        }
+    }
+
+    /**
+     * Adds the bytes of the buffer to the list, as the buffers before and after the gap which wrap the array without
+     * copying it. Must only be used if the buffer is ASCII, and only until the buffer is modified.
+     *
+     * @param buffers the list the bytes are added to
+     * @throws IllegalStateException if the buffer is not Latin-1
+     */
+    void addBytes(List<ByteBuffer> buffers) {
+        if (!isLatin1()) {
+            throw new IllegalStateException("Text is not Latin-1");
+        }
+
+        buffers.add(ByteBuffer.wrap(latin1, 0, gapStart));
+        buffers.add(ByteBuffer.wrap(latin1, gapEnd, latin1.length - gapEnd));
+    }
+
+    /**
+     * Returns the index of the first occurrence of the character at or after the starting index.
+     *
+     * @param c the character to search for
+     * @param from the index to start searching from
+     * @return index of the first occurrence of c at or after from, -1 if there is no such occurrence
+     */
+    int indexOf(char c, int from) {
+        return indexOf(c, c, from);
+    }
+
+    /**
+     * Returns the index of the first occurrence of either character at or after the starting index.
+     *
+     * @param c the first character to search for
+     * @param d the second character to search for
+     * @param from the index to start searching from
+     * @return index of the first occurrence of c or d at or after from, -1 if there is no such occurrence
+     */
+    int indexOf(char c, char d, int from) {
+        for (int i = Math.max(from, 0); i < length(); i++) {
+            char ch = charAt(i);
+
+            if (ch == c || ch == d) {
+                return i;
+            }
+        }
+
+        return -1;
+    }
+
+    /**
+     * Returns the number of occurrences of the character from start to end (exclusive).
+     *
+     * @param c the character to count
+     * @param start the index of the first character
+     * @param end the index after the last character
+     * @return number of occurrences of c
+     */
+    int count(char c, int start, int end) {
+        int count = 0;
+
+        for (int i = start; i < end; i++) {
+            if (charAt(i) == c) {
+                count++;
+            }
+        }
+
+        return count;
+    }
+
+    /**
+     * Returns the index of the last occurrence of the character at or before the starting index.
+     *
+     * @param c the character to search for
+     * @param from the index to start searching backwards from
+     * @return index of the last occurrence of c at or before from, -1 if there is no such occurrence
+     */
+    int lastIndexOf(char c, int from) {
+        return lastIndexOf(c, c, from);
+    }
+
+    /**
+     * Returns the index of the last occurrence of either character at or before the starting index.
+     *
+     * @param c the first character to search for
+     * @param d the second character to search for
+     * @param from the index to start searching backwards from
+     * @return index of the last occurrence of c or d at or before from, -1 if there is no such occurrence
+     */
+    int lastIndexOf(char c, char d, int from) {
+        for (int i = Math.min(from, length() - 1); i >= 0; i--) {
+            char ch = charAt(i);
+
+            if (ch == c || ch == d) {
+                return i;
+            }
+        }
+
+        return -1;
+    }
+
+    /**
+     * Appends the text at the end of the buffer.
+     *
+     * @param text the text to be appended
+     */
+    void append(CharSequence text) {
+        insert(length(), text, 0, text.length());
+    }
+
+    /**
+     * Appends the text from start to end (exclusive) at the end of the buffer.
+     *
+     * @param text the text to be appended
+     * @param start the index of the first character to be appended
+     * @param end the index after the last character to be appended
+     */
+    void append(CharSequence text, int start, int end) {
+        insert(length(), text, start, end);
+    }
+
+    /**
+     * Inserts the text from start to end (exclusive) at the given index, growing the buffer if needed.
+     *
+     * @param index the index in the buffer to insert at
+     * @param text the text to be inserted
+     * @param start the index of the first character to be inserted
+     * @param end the index after the last character to be inserted
+     * @throws IndexOutOfBoundsException if index is out of bounds or start and end are not a range of text
+     */
+    void insert(int index, CharSequence text, int start, int end) {
+        checkRange(index, index);
+        hash = null;
+
+        if (start < 0 || end > text.length() || start > end) {
+            throw new IndexOutOfBoundsException("Invalid range of text to insert");
+        }
+
+        moveGap(index);
+        ensureGap(end - start);
+
+        if (text instanceof GapBuffer) {
+            // copying the parts before and after the gap of the other buffer in bulk
+            GapBuffer buffer = (GapBuffer) text;
+            int beforeGap = Math.min(end, buffer.gapStart);
+            int afterGap = Math.max(start, buffer.gapStart);
+
+            if (start < beforeGap) {
+                putSlots(buffer, start, beforeGap - start);
+            }
+
+            if (afterGap < end) {
+                putSlots(buffer, afterGap + buffer.gapEnd - buffer.gapStart, end - afterGap);
+            }
+        } else if (utf16 != null && text instanceof String) {
+            ((String) text).getChars(start, end, utf16, gapStart);
+            gapStart += end - start;
+        } else {
+            for (int i = start; i < end; i++) {
+                set(gapStart++, text.charAt(i));
+            }
+        }
+    }
+
+    /**
+     * Deletes the text from start to end (exclusive).
+     *
+     * @param start the index of the first character to be deleted
+     * @param end the index after the last character to be deleted
+     * @throws IndexOutOfBoundsException if start < 0 or end > length or start > end
+     */
+    void delete(int start, int end) {
+        checkRange(start, end);
+        hash = null;
+
+        // moving the gap to whichever end of the deleted text is closer
+        if (gapStart >= end) {
+            moveGap(end);
+            gapStart = start;
+        } else {
+            moveGap(start);
+            gapEnd += end - start;
+        }
+
+        if (length() == 0) {
+            ascii = utf16 == null;
+        }
+    }
+
+    /**
+     * Returns the text in the buffer.
+     *
+     * @return String representing the text in the buffer
+     */
+    @Override
+    public String toString() {
+        return substring(0, length());
+    }
+
+    ///////////////////////////////////////////////////////////////////////////////////////
+    ////  Util methods
+    ///////////////////////////////////////////////////////////////////////////////////////
+
+    /**
+     * Returns the number of slots in the array.
+     *
+     * @return capacity of the buffer
+     */
+    private int capacity() {
+        return utf16 != null ? utf16.length : latin1.length;
+    }
+
+    /**
+     * Returns the array storing the characters.
+     *
+     * @return the byte[] or char[] holding the text
+     */
+    private Object array() {
+        return utf16 != null ? utf16 : latin1;
+    }
+
+    /**
+     * Returns the character stored in the given slot of the array.
+     *
+     * @param slot the index in the array
+     * @return the character in the slot
+     */
+    private char get(int slot) {
+        return utf16 != null ? utf16[slot] : (char) (latin1[slot] & 0xFF);
+    }
+
+    /**
+     * Copies the characters stored in consecutive slots of the array into the destination array.
+     *
+     * @param slot the index of the first slot
+     * @param count number of characters to be copied
+     * @param dst the destination array
+     * @param dstBegin the index in the destination array to start copying to
+     */
+    private void getSlots(int slot, int count, char[] dst, int dstBegin) {
+        if (utf16 != null) {
+            System.arraycopy(utf16, slot, dst, dstBegin, count);
+        } else {
+            for (int i = 0; i < count; i++) {
+                dst[dstBegin + i] = (char) (latin1[slot + i] & 0xFF);
+            }
+        }
+    }
+
+    /**
+     * Copies the characters stored in consecutive slots of the other buffer into the gap, and shrinks the gap.
+     *
+     * @param buffer the buffer to copy from
+     * @param slot the index of the first slot in the other buffer
+     * @param count number of characters to be copied
+     */
+    private void putSlots(GapBuffer buffer, int slot, int count) {
+        if (buffer.utf16 != null && utf16 == null) {
+            inflate();
+        }
+
+        if (buffer.utf16 != null) {
+            System.arraycopy(buffer.utf16, slot, utf16, gapStart, count);
+        } else if (utf16 == null) {
+            System.arraycopy(buffer.latin1, slot, latin1, gapStart, count);
+
+            // only the copied bytes are checked, since the other buffer may be ASCII outside of them
+            for (int i = gapStart; ascii && !buffer.ascii && i < gapStart + count; i++) {
+                ascii = latin1[i] >= 0;
+            }
+        } else {
+            for (int i = 0; i < count; i++) {
+                utf16[gapStart + i] = (char) (buffer.latin1[slot + i] & 0xFF);
+            }
+        }
+
+        gapStart += count;
+    }
+
+    /**
+     * Stores the character in the given slot of the array, inflating the array if the character is not Latin-1.
+     *
+     * @param slot the index in the array
+     * @param c the character to be stored
+     */
+    private void set(int slot, char c) {
+        if (c >= 0x80) {
+            ascii = false;
+        }
+
+        if (utf16 != null) {
+            utf16[slot] = c;
+        } else if (c <= 0xFF) {
+            latin1[slot] = (byte) c;
+        } else {
+            inflate();
+            utf16[slot] = c;
+        }
+    }
+
+    /**
+     * Converts the byte[] storing Latin-1 characters to a char[] of the same capacity.
+     */
+    private void inflate() {
+        ascii = false;
+        utf16 = new char[latin1.length];
+
+        for (int i = 0; i < latin1.length; i++) {
+            utf16[i] = (char) (latin1[i] & 0xFF);
+        }
+
+        latin1 = null;
+    }
+
+    /**
+     * Moves the gap so that it starts right after the character at the given index.
+     *
+     * @param index the new starting index of the gap
+     */
+    private void moveGap(int index) {
+        if (index < gapStart) {
+            int count = gapStart - index;
+            System.arraycopy(array(), index, array(), gapEnd - count, count);
+            gapStart -= count;
+            gapEnd -= count;
+        } else if (index > gapStart) {
+            int count = index - gapStart;
+            System.arraycopy(array(), gapEnd, array(), gapStart, count);
+            gapStart += count;
+            gapEnd += count;
+        }
+    }
+
+    /**
+     * Grows the array if the gap cannot hold the given number of characters. The capacity doubles up to the limit,
+     * so a node filled by small insertions ends up with an array of the node capacity and not of twice as much. The
+     * gap keeps its position.
+     *
+     * @param count number of characters that need to fit into the gap
+     */
+    private void ensureGap(int count) {
+        if (gapEnd - gapStart >= count) {
+            return;
+        }
+
+        int capacity = capacity();
+        int newCapacity = Math.max(length() + count, (int) Math.min(2L * capacity, limit));
+        int afterGap = capacity - gapEnd;
+        Object array = utf16 != null ? new char[newCapacity] : new byte[newCapacity];
+        System.arraycopy(array(), 0, array, 0, gapStart);
+        System.arraycopy(array(), gapEnd, array, newCapacity - afterGap, afterGap);
+
+        if (utf16 != null) {
+            utf16 = (char[]) array;
+        } else {
+            latin1 = (byte[]) array;
+        }
+
+        gapEnd = newCapacity - afterGap;
+    }
+
+    /**
+     * Checks that start and end are a range of characters in the buffer.
+     *
+     * @param start the index of the first character
+     * @param end the index after the last character
+     * @throws IndexOutOfBoundsException if start < 0 or end > length or start > end
+     */
+    private void checkRange(int start, int end) {
+        if (start < 0 || end > length() || start > end) {
+            throw new IndexOutOfBoundsException("Range [" + start + ", " + end + ") is out of bounds");
+        }
+    }
+}
@@ -0,0 +1,96 @@
+/*
+ * Copyright 2020 <Copyright Vasu Gupta>
+ * Vasu Gupta
+ * Email: vasu99g@gmail.com
+ */
+
+package texteditor;
+
+import java.util.Arrays;
+
+/**
+ * <b>Horspool</b> represents the Boyer-Moore-Horspool search of a single pattern.
+ * <p>
+ * The pattern is compared with a window of the text from its last character, and when the window does not match, it
+ * is shifted by the distance from the last occurrence of the window's last character in the pattern to the end of the
+ * pattern. Long patterns skip most of the text, so the search reads O(n / m) characters on average. The shifts are
+ * stored by the low byte of the character, and characters sharing a byte keep the smallest shift, which is always safe.
+ */
+final class Horspool {
+    private static final int TABLE_SIZE = 256; // number of shifts, indexed by the low byte of the character
+
+    private final String pattern; // the searched pattern
+    private final int[] shifts = new int[TABLE_SIZE]; // shift of the window, by its last character
+
+    /**
+     * Prepares the search of the pattern.
+     *
+     * @param pattern the pattern to be searched
+     * @throws IllegalArgumentException if pattern is null or empty
+     */
+    Horspool(String pattern) {
+        if (pattern == null || pattern.isEmpty()) {
+            throw new IllegalArgumentException("Pattern cannot be empty");
+        }
+
+        this.pattern = pattern;
+        int m = pattern.length();
+        Arrays.fill(shifts, m);
+
+        // the later occurrences of a character override the earlier ones with a smaller shift
+        for (int k = 0; k < m - 1; k++) {
+            shifts[pattern.charAt(k) & (TABLE_SIZE - 1)] = m - 1 - k;
+        }
+    }
+
+    /**
+     * Returns the index of the first occurrence of the pattern in the text at or after the starting index.
+     *
+     * @param text the text to search in
+     * @param from the index to start searching from
+     * @return index of the first occurrence at or after from, -1 if there is no such occurrence
+     */
+    int find(CharSequence text, int from) {
+        int m = pattern.length();
+        int last = text.length() - m; // index of the last window
+        char lastChar = pattern.charAt(m - 1);
+
+        for (int i = Math.max(from, 0); i <= last; ) {
+            char c = text.charAt(i + m - 1);
+
+            if (c == lastChar && matches(text, i)) {
+                return i;
+            }
+
+            i += shifts[c & (TABLE_SIZE - 1)];
+        }
+
+        return -1;
+    }
+
+    /**
+     * Returns the number of characters in the pattern.
+     *
+     * @return length of the pattern
+     */
+    int length() {
+        return pattern.length();
+    }
+
+    /**
+     * Checks if the window starting at the index matches the pattern, except for its last character.
+     *
+     * @param text the text to search in
+     * @param i the index of the first character of the window
+     * @return true if the window matches
+     */
+    private boolean matches(CharSequence text, int i) {
+        for (int k = pattern.length() - 2; k >= 0; k--) {
+            if (text.charAt(i + k) != pattern.charAt(k)) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+}
@@ -0,0 +1,312 @@
+/*
+ * Copyright 2020 <Copyright Vasu Gupta>
+ * Vasu Gupta
+ * Email: vasu99g@gmail.com
+ */
+
+package texteditor;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.CRC32;
+
+/**
+ * <b>Journal</b> represents the persistence of a document as a full checkpoint plus an append-only journal of the
+ * edits saved since the checkpoint.
+ * <p>
+ * The checkpoint is the document file itself, written to a temporary file and moved over the original, so it is
+ * always either the old or the new version. The journal lives next to it, and starts with a header holding the size
+ * and the last modified time of the checkpoint it belongs to, so it is never replayed onto another version of the
+ * file. Every save appends a single record with the batch of edits since the previous save, followed by a checksum,
+ * so a record torn by a crash is detected and dropped as a whole, and the document is recovered as it was at the
+ * last complete save. A record which would make the journal too large to be read back is not appended, and the
+ * document is checkpointed instead.
+ */
+final class Journal {
+    private static final String SUFFIX = ".journal"; // appended to the file name of the document
+    private static final int MAGIC = 0x54454a4c; // marks a journal file
+    private static final int VERSION = 1; // version of the journal layout
+    private static final int HEADER_SIZE = 24; // magic, version, checkpoint size, checkpoint modified time
+    private static final int RECORD_HEADER_SIZE = 12; // payload size, checksum of the payload
+    private static final long MAX_JOURNAL_SIZE = Integer.MAX_VALUE - 8; // largest journal read back into one array
+
+    /**
+     * Utility class, not meant to be instantiated.
+     */
+    private Journal() {
+    }
+
+    /**
+     * Writes a full checkpoint of the document, and starts a new empty journal for it.
+     *
+     * @param path the path of the document file
+     * @param document the text of the document
+     * @return number of bytes in the new journal
+     * @throws IOException if the checkpoint or the journal cannot be written
+     */
+    static long checkpoint(Path path, UnrolledTextList document) throws IOException {
+        Path temp = tempSibling(path, "");
+
+        try {
+            try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.WRITE)) {
+                document.transferTo(channel);
+                channel.force(true);
+            }
+
+            Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+
+        // the journal of the previous checkpoint stays valid till it is replaced, since it does not match this one
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).putInt(MAGIC).putInt(VERSION)
+                .putLong(Files.size(path)).putLong(Files.getLastModifiedTime(path).toMillis()).flip();
+        Path journalTemp = tempSibling(path, SUFFIX);
+
+        try {
+            try (FileChannel channel = FileChannel.open(journalTemp, StandardOpenOption.WRITE)) {
+                write(channel, header);
+                channel.force(true);
+            }
+
+            Files.move(journalTemp, sibling(path, SUFFIX), StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(journalTemp);
+        }
+
+        return HEADER_SIZE;
+    }
+
+    /**
+     * Appends the batch of edits to the journal of the document, and forces it to the disk. Nothing is appended if
+     * the file was modified since its checkpoint, since the journal would not be replayed onto it, or if the record
+     * would make the journal too large to be read back, in which case the document needs a new checkpoint.
+     *
+     * @param path the path of the document file
+     * @param edits the edits saved since the previous save, in order
+     * @return number of bytes appended to the journal, -1 if the journal does not belong to the file or is full
+     * @throws IOException if the journal cannot be written
+     */
+    static long append(Path path, List<TextEdit> edits) throws IOException {
+        Path journal = sibling(path, SUFFIX);
+
+        if (!Files.exists(journal) || !belongsTo(readHeader(journal), path)) {
+            return -1;
+        }
+
+        long size = Integer.BYTES;
+
+        for (TextEdit edit : edits) {
+            size += 3 * Integer.BYTES + (long) edit.text().length() * Character.BYTES;
+        }
+
+        if (Files.size(journal) + RECORD_HEADER_SIZE + size > MAX_JOURNAL_SIZE) {
+            return -1;
+        }
+
+        ByteBuffer record = ByteBuffer.allocate(RECORD_HEADER_SIZE + (int) size);
+        record.position(RECORD_HEADER_SIZE).putInt(edits.size());
+
+        for (TextEdit edit : edits) {
+            record.putInt(edit.start()).putInt(edit.end()).putInt(edit.text().length());
+
+            for (int i = 0; i < edit.text().length(); i++) {
+                record.putChar(edit.text().charAt(i));
+            }
+        }
+
+        CRC32 checksum = new CRC32();
+        checksum.update(record.array(), RECORD_HEADER_SIZE, (int) size);
+        record.putInt(0, (int) size).putLong(Integer.BYTES, checksum.getValue()).flip();
+
+        try (FileChannel channel = FileChannel.open(journal, StandardOpenOption.WRITE, StandardOpenOption.APPEND)) {
+            write(channel, record);
+            channel.force(false);
+        }
+
+        return record.limit();
+    }
+
+    /**
+     * Replays the journal of the document onto the checkpoint loaded into the list. The journal is ignored if it
+     * belongs to another version of the file, and the records after the first incomplete or corrupted record are
+     * dropped from the journal, so the next save appends after the last complete one.
+     *
+     * @param path the path of the document file
+     * @param document the list containing the checkpoint
+     * @return number of bytes in the journal after recovery, -1 if there is no journal for the checkpoint
+     * @throws IOException if the journal cannot be read
+     */
+    static long replay(Path path, UnrolledTextList document) throws IOException {
+        Path journal = sibling(path, SUFFIX);
+
+        if (!Files.exists(journal)) {
+            return -1;
+        }
+
+        ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(journal));
+
+        if (!belongsTo(buffer, path)) {
+            return -1;
+        }
+
+        buffer.position(HEADER_SIZE);
+
+        while (buffer.remaining() >= RECORD_HEADER_SIZE) {
+            int start = buffer.position();
+            int size = buffer.getInt();
+            long expected = buffer.getLong();
+
+            if (size < Integer.BYTES || size > buffer.remaining()) {
+                buffer.position(start);
+                break;
+            }
+
+            CRC32 checksum = new CRC32();
+            checksum.update(buffer.array(), buffer.position(), size);
+            List<TextEdit> edits = checksum.getValue() == expected ? read(buffer.slice().limit(size)) : null;
+
+            if (edits == null) {
+                buffer.position(start);
+                break;
+            }
+
+            try {
+                document.applyBatch(edits);
+            } catch (IllegalArgumentException exception) {
+                buffer.position(start);
+                break;
+            }
+
+            buffer.position(buffer.position() + size);
+        }
+
+        if (buffer.position() < buffer.limit()) {
+            try (FileChannel channel = FileChannel.open(journal, StandardOpenOption.WRITE)) {
+                channel.truncate(buffer.position());
+                channel.force(true);
+            }
+        }
+
+        return buffer.position();
+    }
+
+    ///////////////////////////////////////////////////////////////////////////////////////
+    ////  Util methods
+    ///////////////////////////////////////////////////////////////////////////////////////
+
+    /**
+     * Reads the header at the start of the journal.
+     *
+     * @param journal the path of the journal
+     * @return the buffer containing the header, shorter if the journal is shorter than the header
+     * @throws IOException if the journal cannot be read
+     */
+    private static ByteBuffer readHeader(Path journal) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+
+        try (FileChannel channel = FileChannel.open(journal, StandardOpenOption.READ)) {
+            while (header.hasRemaining() && channel.read(header) != -1) {
+                // reading till the header is full or the journal ends
+            }
+        }
+
+        return header.flip();
+    }
+
+    /**
+     * Checks if the journal starting with the header was started for the current version of the document file.
+     *
+     * @param header the buffer starting with the header of the journal
+     * @param path the path of the document file
+     * @return true if the journal belongs to the file
+     * @throws IOException if the file cannot be read
+     */
+    private static boolean belongsTo(ByteBuffer header, Path path) throws IOException {
+        return header.limit() >= HEADER_SIZE && header.getInt(0) == MAGIC && header.getInt(4) == VERSION
+                && header.getLong(8) == Files.size(path)
+                && header.getLong(16) == Files.getLastModifiedTime(path).toMillis();
+    }
+
+    /**
+     * Reads the edits of a record.
+     *
+     * @param payload the buffer containing the payload of the record
+     * @return the edits of the record, null if the record is malformed
+     */
+    private static List<TextEdit> read(ByteBuffer payload) {
+        int count = payload.getInt();
+
+        if (count < 0) {
+            return null;
+        }
+
+        List<TextEdit> edits = new ArrayList<>();
+
+        for (int k = 0; k < count; k++) {
+            if (payload.remaining() < 3 * Integer.BYTES) {
+                return null;
+            }
+
+            int start = payload.getInt();
+            int end = payload.getInt();
+            int length = payload.getInt();
+
+            if (start < 0 || end < start || length < 0 || length > payload.remaining() / Character.BYTES) {
+                return null;
+            }
+
+            char[] text = new char[length];
+            payload.asCharBuffer().get(text);
+            payload.position(payload.position() + length * Character.BYTES);
+            edits.add(TextEdit.replace(start, end, new String(text)));
+        }
+
+        return edits;
+    }
+
+    /**
+     * Returns the path of a file next to the document file, whose name is the name of the document plus the suffix.
+     *
+     * @param path the path of the document file
+     * @param suffix the suffix of the file name
+     * @return the path of the file
+     */
+    private static Path sibling(Path path, String suffix) {
+        return path.resolveSibling(path.getFileName() + suffix);
+    }
+
+    /**
+     * Creates an empty temporary file next to the document file, with a unique name starting with the name of the
+     * document plus the suffix, so saves of the same file from several editors or processes never share it.
+     *
+     * @param path the path of the document file
+     * @param suffix the suffix of the file name
+     * @return the path of the temporary file
+     * @throws IOException if the file cannot be created
+     */
+    private static Path tempSibling(Path path, String suffix) throws IOException {
+        return Files.createTempFile(path.toAbsolutePath().getParent(), path.getFileName() + suffix, ".tmp");
+    }
+
+    /**
+     * Writes the whole buffer to the channel.
+     *
+     * @param channel the channel to write to
+     * @param buffer the buffer holding the bytes
+     * @throws IOException if the channel fails
+     */
+    private static void write(FileChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+}
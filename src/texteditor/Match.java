@@ -0,0 +1,61 @@
+/*
+ * Copyright 2020 <Copyright Vasu Gupta>
+ * Vasu Gupta
+ * Email: vasu99g@gmail.com
+ */
+
+package texteditor;
+
+/**
+ * <b>Match</b> represents an occurrence of one of the searched patterns in the text.
+ */
+public final class Match {
+    private final int start; // index of the first matched character
+    private final int end; // index after the last matched character
+    private final int pattern; // index of the matched pattern in the searched patterns
+
+    /**
+     * Constructs a match of the pattern.
+     *
+     * @param start index of the first matched character
+     * @param end index after the last matched character
+     * @param pattern index of the matched pattern in the searched patterns
+     */
+    Match(int start, int end, int pattern) {
+        this.start = start;
+        this.end = end;
+        this.pattern = pattern;
+    }
+
+    /**
+     * Returns the index of the first matched character.
+     *
+     * @return the starting index
+     */
+    public int start() {
+        return start;
+    }
+
+    /**
+     * Returns the index after the last matched character.
+     *
+     * @return the ending index
+     */
+    public int end() {
+        return end;
+    }
+
+    /**
+     * Returns the index of the matched pattern in the searched patterns.
+     *
+     * @return index of the pattern
+     */
+    public int pattern() {
+        return pattern;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("pattern %d at [%d, %d)", pattern, start, end);
+    }
+}
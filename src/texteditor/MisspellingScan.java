@@ -0,0 +1,347 @@
+/*
+ * Copyright 2020 <Copyright Vasu Gupta>
+ * Vasu Gupta
+ * Email: vasu99g@gmail.com
+ */
+
+package texteditor;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * <b>MisspellingScan</b> represents a task counting the misspelled words in a range of the nodes of a document.
+ * <p>
+ * Words are separated by single spaces or line breaks. Large ranges are split in half and scanned in parallel on the
+ * fork join pool. Every task finds the separators in its nodes and checks the words between them in place, and
+ * reports its first and last separator, so the word straddling two halves is checked when they are joined. No String
+ * is created for the words.
+ */
+final class MisspellingScan extends RecursiveTask<MisspellingScan.Words> {
+    private static final long serialVersionUID = 1L;
+    private static final int SEQUENTIAL_LENGTH = 1 << 15; // number of characters scanned by a single task
+    private static final char SPACE = ' '; // separator of the words of a line
+    private static final char LINE_BREAK = '\n'; // separator of the words of consecutive lines
+
+    private final GapBuffer[] texts; // buffers of the scanned nodes
+    private final int[] starts; // index of the first character of every buffer, followed by the total length
+    private final int begin; // index of the first character of the scanned text
+    private final int finish; // index after the last character of the scanned text
+    private final int from; // index of the first buffer of this task
+    private final int to; // index after the last buffer of this task
+    private final Dictionary dictionary; // dictionary the words are checked against
+    private NodesView view; // view of the buffers, for the words spanning several nodes
+
+    /**
+     * <b>Words</b> represents the result of a scan.
+     */
+    static final class Words {
+        private final int firstSeparator; // index of the first separator, -1 if there are no separators
+        private final int lastSeparator; // index of the last separator, -1 if there are no separators
+        private final int misspelled; // number of misspelled words between the first and the last separator
+
+        /**
+         * Constructs the result of a scan.
+         *
+         * @param firstSeparator index of the first separator, -1 if there are no separators
+         * @param lastSeparator index of the last separator, -1 if there are no separators
+         * @param misspelled number of misspelled words between the first and the last separator
+         */
+        private Words(int firstSeparator, int lastSeparator, int misspelled) {
+            this.firstSeparator = firstSeparator;
+            this.lastSeparator = lastSeparator;
+            this.misspelled = misspelled;
+        }
+    }
+
+    /**
+     * Constructs a task scanning the buffers from the fromth buffer to the toth buffer (exclusive).
+     *
+     * @param texts buffers of the scanned nodes
+     * @param starts index of the first character of every buffer, followed by the total length
+     * @param begin index of the first character of the scanned text
+     * @param finish index after the last character of the scanned text
+     * @param from index of the first buffer of this task
+     * @param to index after the last buffer of this task
+     * @param dictionary dictionary the words are checked against
+     */
+    private MisspellingScan(GapBuffer[] texts, int[] starts, int begin, int finish, int from, int to,
+                            Dictionary dictionary) {
+        this.texts = texts;
+        this.starts = starts;
+        this.begin = begin;
+        this.finish = finish;
+        this.from = from;
+        this.to = to;
+        this.dictionary = dictionary;
+    }
+
+    /**
+     * Returns the index of the first character of the word containing the ith character, the character after the
+     * last separator before i.
+     *
+     * @param document the document to search
+     * @param i the index of the character
+     * @return index of the first character of the word
+     */
+    static int wordStart(UnrolledTextList document, int i) {
+        return document.lastIndexOf(SPACE, LINE_BREAK, i - 1) + 1;
+    }
+
+    /**
+     * Returns the index after the last character of the word containing the ith character, the index of the first
+     * separator at or after i, or the length of the document if there is none.
+     *
+     * @param document the document to search
+     * @param i the index of the character
+     * @return index after the last character of the word
+     */
+    static int wordEnd(UnrolledTextList document, int i) {
+        int end = document.indexOf(SPACE, LINE_BREAK, i);
+
+        return end == -1 ? document.length() : end;
+    }
+
+    /**
+     * Counts the misspelled words in the document from start to end (exclusive). Words are separated by single
+     * spaces or line breaks, so consecutive separators form empty words, and a range without separators is a single
+     * word.
+     *
+     * @param document the document to scan
+     * @param dictionary dictionary the words are checked against
+     * @param start the index of the first character of the first word
+     * @param end the index after the last character of the last word
+     * @return number of misspelled words in the range
+     */
+    static int count(UnrolledTextList document, Dictionary dictionary, int start, int end) {
+        if (start == end) {
+            return dictionary.contains("") ? 0 : 1;
+        }
+
+        List<GapBuffer> nodes = new ArrayList<>();
+        int offset = document.nodeTexts(start, end, nodes);
+        GapBuffer[] texts = nodes.toArray(new GapBuffer[0]);
+        int[] starts = new int[texts.length + 1];
+
+        for (int k = 0; k < texts.length; k++) {
+            starts[k + 1] = starts[k] + texts[k].length();
+        }
+
+        MisspellingScan scan = new MisspellingScan(texts, starts, start - offset, end - offset, 0, texts.length,
+                dictionary);
+        Words words = scan.invoke();
+
+        if (words.firstSeparator == -1) {
+            return scan.misspelled(scan.begin, scan.finish);
+        }
+
+        return words.misspelled + scan.misspelled(scan.begin, words.firstSeparator)
+                + scan.misspelled(words.lastSeparator + 1, scan.finish);
+    }
+
+    /**
+     * Counts the misspelled words in the whole document, like {@link TextEditor#misspellings()}: the empty words
+     * between consecutive separators are misspelled, but like String.split, the empty words at the end of a
+     * non-empty document are not counted.
+     *
+     * @param document the document to scan
+     * @param dictionary dictionary the words are checked against
+     * @return number of misspelled words in the document
+     */
+    static int count(UnrolledTextList document, Dictionary dictionary) {
+        return misspellings(count(document, dictionary, 0, document.length()), trailingSeparators(document),
+                document.length(), dictionary);
+    }
+
+    /**
+     * Counts the misspelled words in a whole document from the misspelled words of all of its text, which include
+     * the empty words ending with its trailing separators. Like String.split, the empty words at the end of a
+     * non-empty document are not counted, so a document made only of separators has no misspelled words.
+     *
+     * @param misspelledWords number of misspelled words of the whole text, including the empty words at its end
+     * @param trailingSeparators number of spaces and line breaks at the end of the document
+     * @param length number of characters in the document
+     * @param dictionary dictionary the words are checked against
+     * @return number of misspelled words in the document
+     */
+    static int misspellings(int misspelledWords, int trailingSeparators, int length, Dictionary dictionary) {
+        if (length == 0 || dictionary.contains("")) {
+            return misspelledWords;
+        }
+
+        return trailingSeparators == length ? 0 : misspelledWords - trailingSeparators;
+    }
+
+    /**
+     * Counts the separators at the end of the document, which end the empty words at its end.
+     *
+     * @param document the document to scan
+     * @return number of trailing spaces and line breaks
+     */
+    static int trailingSeparators(UnrolledTextList document) {
+        int i = document.length();
+
+        while (i > 0 && (document.charAt(i - 1) == SPACE || document.charAt(i - 1) == LINE_BREAK)) {
+            i--;
+        }
+
+        return document.length() - i;
+    }
+
+    @Override
+    protected Words compute() {
+        int length = Math.min(starts[to], finish) - Math.max(starts[from], begin);
+
+        if (to - from < 2 || length <= SEQUENTIAL_LENGTH) {
+            return scan();
+        }
+
+        int middle = (from + to) >>> 1;
+        MisspellingScan left = new MisspellingScan(texts, starts, begin, finish, from, middle, dictionary);
+        MisspellingScan right = new MisspellingScan(texts, starts, begin, finish, middle, to, dictionary);
+
+        left.fork();
+        Words rightWords = right.compute();
+        Words leftWords = left.join();
+
+        return join(leftWords, rightWords);
+    }
+
+    ///////////////////////////////////////////////////////////////////////////////////////
+    ////  Util methods
+    ///////////////////////////////////////////////////////////////////////////////////////
+
+    /**
+     * Scans the buffers of this task one after another.
+     *
+     * @return the separators and the misspelled words found
+     */
+    private Words scan() {
+        int firstSeparator = -1;
+        int lastSeparator = -1;
+        int misspelled = 0;
+
+        for (int k = from; k < to; k++) {
+            int start = Math.max(starts[k], begin) - starts[k];
+            int end = Math.min(starts[k + 1], finish) - starts[k];
+
+            for (int separator = texts[k].indexOf(SPACE, LINE_BREAK, start); separator != -1 && separator < end;
+                 separator = texts[k].indexOf(SPACE, LINE_BREAK, separator + 1)) {
+                int index = starts[k] + separator;
+
+                if (firstSeparator == -1) {
+                    firstSeparator = index;
+                } else {
+                    misspelled += misspelled(lastSeparator + 1, index);
+                }
+
+                lastSeparator = index;
+            }
+        }
+
+        return new Words(firstSeparator, lastSeparator, misspelled);
+    }
+
+    /**
+     * Joins the results of two adjacent scans, checking the word between the last separator of the left scan and
+     * the first separator of the right scan.
+     *
+     * @param left the result of the scan on the left
+     * @param right the result of the scan on the right
+     * @return the result of the scan of both
+     */
+    private Words join(Words left, Words right) {
+        if (left.firstSeparator == -1) {
+            return right;
+        }
+
+        if (right.firstSeparator == -1) {
+            return left;
+        }
+
+        return new Words(left.firstSeparator, right.lastSeparator, left.misspelled + right.misspelled
+                + misspelled(left.lastSeparator + 1, right.firstSeparator));
+    }
+
+    /**
+     * Checks the word from start to end (exclusive) against the dictionary.
+     *
+     * @param start the index of the first character of the word
+     * @param end the index after the last character of the word
+     * @return 1 if the word is misspelled, 0 otherwise
+     */
+    private int misspelled(int start, int end) {
+        if (start == end) {
+            return dictionary.contains("") ? 0 : 1;
+        }
+
+        int k = node(start);
+
+        if (end <= starts[k + 1]) {
+            return dictionary.contains(texts[k], start - starts[k], end - starts[k]) ? 0 : 1;
+        }
+
+        if (view == null) {
+            view = new NodesView();
+        }
+
+        return dictionary.contains(view, start, end) ? 0 : 1;
+    }
+
+    /**
+     * Finds the buffer containing the ith character.
+     *
+     * @param i the index of the character
+     * @return index of the buffer containing the character
+     */
+    private int node(int i) {
+        int k = Arrays.binarySearch(starts, i);
+        k = k < 0 ? -k - 2 : k;
+
+        while (starts[k + 1] <= i) { // skipping the empty buffers
+            k++;
+        }
+
+        return k;
+    }
+
+    /**
+     * <b>NodesView</b> represents a read only view of the buffers of the scan, which remembers the last buffer read
+     * so reading the characters of a word one after another does not search the buffers again.
+     */
+    private final class NodesView implements CharSequence {
+        private int node; // index of the last buffer read
+
+        @Override
+        public int length() {
+            return starts[texts.length];
+        }
+
+        @Override
+        public char charAt(int i) {
+            if (i < starts[node] || i >= starts[node + 1]) {
+                node = node(i);
+            }
+
+            return texts[node].charAt(i - starts[node]);
+        }
+
+        @Override
+        public CharSequence subSequence(int start, int end) {
+            return toString().subSequence(start, end);
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder builder = new StringBuilder(length());
+
+            for (GapBuffer text : texts) {
+                builder.append(text);
+            }
+
+            return builder.toString();
+        }
+    }
+}
@@ -0,0 +1,891 @@
+/*
+ * Copyright 2020 <Copyright Vasu Gupta>
+ * Vasu Gupta
+ * Email: vasu99g@gmail.com
+ */
+
+package texteditor;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.GatheringByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+
+/**
+ * <b>OffHeapTextList</b> represents a text addressed by long indexes, whose characters are stored outside the heap,
+ * for documents which do not fit into an {@link UnrolledTextList}.
+ * <p>
+ * The text is split into segments, each stored in a fixed size block of a direct ByteBuffer arena. Like the buffer
+ * of a node, a segment takes a single byte per character as long as every character is Latin-1, and two bytes
+ * otherwise. The blocks of the removed segments are reused by the next segments, so editing does not allocate new
+ * arenas once the text stops growing, and the heap only holds a small object for every segment besides the index.
+ * <p>
+ * Segments are immutable: an edit writes the text of the segments it touches, with the inserted text, into new
+ * segments and frees the old blocks. The lengths and line breaks of the segments are indexed by Fenwick trees, so a
+ * character or a line is found in O(log s) for s segments. Editing inside a segment costs a copy of the segment,
+ * while changing the number of segments also rebuilds the trees in O(s), which is cheap as long as the segments are
+ * large. A text of 4G characters with the default segment size has 32768 segments.
+ * <p>
+ * The arenas are allocated as direct memory, which is limited to the max heap size unless -XX:MaxDirectMemorySize is
+ * raised, so a small heap holding a large text needs that flag set above the size of the text. The list is only the
+ * storage of a large text: {@link TextEditor} does not use it, so its clipboard, history, misspellings, listeners and
+ * journaled saves are not available for texts held by this list.
+ */
+public final class OffHeapTextList implements Closeable {
+    public static final int DEFAULT_SEGMENT_SIZE = 1 << 17; // default number of bytes per segment
+    public static final int MAX_SEGMENT_SIZE = 1 << 26; // max number of bytes per segment
+    private static final int ARENA_SIZE = 1 << 26; // number of bytes allocated at once
+    private static final int READ_BUFFER_SIZE = 1 << 16; // number of bytes read from a file at once
+    private static final int WRITE_BUFFER_SIZE = 1 << 16; // number of bytes written to a channel at once
+    private static final int GATHER_SIZE = 128; // max number of buffers written by a single gathering write
+
+    private final int segmentSize; // number of bytes per segment
+    private final int blocksPerArena; // number of segment blocks allocated at once
+    private final char[] scratchChars; // text of the segment being written
+    private final byte[] scratchBytes; // scratch buffer used to copy Latin-1 text
+    private final List<ByteBuffer> arenas = new ArrayList<>(); // direct buffers holding the blocks
+    private final Deque<ByteBuffer> freeBlocks = new ArrayDeque<>(); // blocks not used by any segment
+    private final List<Segment> segments = new ArrayList<>(); // segments of the text, in order
+    private long[] lengths = new long[1]; // Fenwick tree of the lengths of the segments, 1-based
+    private long[] breaks = new long[1]; // Fenwick tree of the line breaks of the segments, 1-based
+    private long length; // number of characters in the list
+    private long newlines; // number of line breaks in the list
+
+    /**
+     * <b>Segment</b> represents an immutable piece of the text stored in a block of an arena.
+     */
+    private static final class Segment {
+        private final ByteBuffer block; // the block holding the characters
+        private final boolean latin1; // true if a character takes one byte, false if it takes two
+        private final boolean ascii; // true if the bytes of the block are also the UTF-8 of the text
+        private final int length; // number of characters
+        private final int newlines; // number of line breaks
+
+        private Segment(ByteBuffer block, boolean latin1, boolean ascii, int length, int newlines) {
+            this.block = block;
+            this.latin1 = latin1;
+            this.ascii = ascii;
+            this.length = length;
+            this.newlines = newlines;
+        }
+
+        /**
+         * Returns the character at the given index.
+         *
+         * @param i the index of the character
+         * @return the character
+         */
+        private char charAt(int i) {
+            return latin1 ? (char) (block.get(i) & 0xff) : block.getChar(i * Character.BYTES);
+        }
+
+        /**
+         * Copies the characters from start to end (exclusive) into the array.
+         *
+         * @param start the index of the first character to be copied
+         * @param end the index after the last character to be copied
+         * @param dst the destination array
+         * @param dstStart the index in dst of the first copied character
+         * @param bytes scratch buffer used to widen Latin-1 text, with room for end - start bytes
+         */
+        private void getChars(int start, int end, char[] dst, int dstStart, byte[] bytes) {
+            if (latin1) {
+                block.duplicate().position(start).get(bytes, 0, end - start);
+
+                for (int i = 0; i < end - start; i++) {
+                    dst[dstStart + i] = (char) (bytes[i] & 0xff);
+                }
+            } else {
+                block.duplicate().position(start * Character.BYTES).limit(end * Character.BYTES).asCharBuffer()
+                        .get(dst, dstStart, end - start);
+            }
+        }
+
+        /**
+         * Returns the index of the first occurrence of the character at or after the starting index.
+         *
+         * @param c the character to search for
+         * @param from the index to start searching from
+         * @return index of the first occurrence, -1 if there is no such occurrence
+         */
+        private int indexOf(char c, int from) {
+            if (latin1 && c > 0xff) {
+                return -1;
+            }
+
+            for (int i = from; i < length; i++) {
+                if (charAt(i) == c) {
+                    return i;
+                }
+            }
+
+            return -1;
+        }
+    }
+
+    /**
+     * <b>SegmentWriter</b> represents new segments being filled with text, spreading the text evenly over the
+     * segments when its length is known in advance.
+     */
+    private final class SegmentWriter {
+        private final List<Segment> written = new ArrayList<>(); // the filled segments
+        private final char[] chars = scratchChars; // text of the segment being filled
+        private final byte[] bytes = scratchBytes; // scratch buffer used to copy Latin-1 text
+        private final int fill; // number of characters after which a segment is written
+        private int filled; // number of characters in chars
+
+        /**
+         * Constructs a writer for the given number of characters. The writer uses the scratch buffers of the list,
+         * so there is a single writer at a time.
+         *
+         * @param total number of characters which are going to be appended, -1 if not known
+         */
+        private SegmentWriter(long total) {
+            if (total <= 0) {
+                fill = segmentSize;
+            } else {
+                long count = (total + segmentSize - 1) / segmentSize;
+                fill = (int) ((total + count - 1) / count);
+            }
+        }
+
+        /**
+         * Appends the characters of the array from start to end (exclusive).
+         */
+        private void append(char[] text, int start, int end) {
+            while (start < end) {
+                int n = Math.min(end - start, fill - filled);
+                System.arraycopy(text, start, chars, filled, n);
+                filled += n;
+                start += n;
+
+                if (filled == fill) {
+                    flush(false);
+                }
+            }
+        }
+
+        /**
+         * Appends the characters of the text.
+         */
+        private void append(CharSequence text) {
+            for (int start = 0; start < text.length(); ) {
+                int n = Math.min(text.length() - start, fill - filled);
+
+                for (int k = 0; k < n; k++) {
+                    chars[filled + k] = text.charAt(start + k);
+                }
+
+                filled += n;
+                start += n;
+
+                if (filled == fill) {
+                    flush(false);
+                }
+            }
+        }
+
+        /**
+         * Appends the characters of the segment from start to end (exclusive).
+         */
+        private void append(Segment segment, int start, int end) {
+            while (start < end) {
+                int n = Math.min(end - start, fill - filled);
+                segment.getChars(start, start + n, chars, filled, bytes);
+                filled += n;
+                start += n;
+
+                if (filled == fill) {
+                    flush(false);
+                }
+            }
+        }
+
+        /**
+         * Writes the pending characters into new segments. A high surrogate at the end is kept for the next segment
+         * unless it is the last character, so the writer never splits a surrogate pair.
+         *
+         * @param last true if no more characters are going to be appended
+         */
+        private void flush(boolean last) {
+            int end = filled;
+
+            if (!last && end > 1 && Character.isHighSurrogate(chars[end - 1])) {
+                end--;
+            }
+
+            boolean latin1 = true;
+
+            for (int i = 0; i < end && latin1; i++) {
+                latin1 = chars[i] <= 0xff;
+            }
+
+            int capacity = latin1 ? segmentSize : segmentSize / Character.BYTES;
+
+            for (int start = 0; start < end; ) {
+                int stop = Math.min(end, start + capacity);
+
+                if (stop < end && Character.isHighSurrogate(chars[stop - 1])) {
+                    stop--;
+                }
+
+                written.add(newSegment(chars, start, stop, latin1, bytes));
+                start = stop;
+            }
+
+            System.arraycopy(chars, end, chars, 0, filled - end);
+            filled -= end;
+        }
+
+        /**
+         * Writes the pending characters and returns every segment which was filled.
+         *
+         * @return the new segments, in order
+         */
+        private List<Segment> finish() {
+            flush(true);
+
+            return written;
+        }
+    }
+
+    /**
+     * Constructs an empty list with the default segment size.
+     */
+    public OffHeapTextList() {
+        this(DEFAULT_SEGMENT_SIZE);
+    }
+
+    /**
+     * Constructs an empty list with the given segment size. A segment holds segmentSize Latin-1 characters, or half
+     * as many other characters.
+     *
+     * @param segmentSize number of bytes per segment
+     * @throws IllegalArgumentException if segmentSize is less than 4 or greater than MAX_SEGMENT_SIZE
+     */
+    public OffHeapTextList(int segmentSize) {
+        if (segmentSize < 4 || segmentSize > MAX_SEGMENT_SIZE) {
+            throw new IllegalArgumentException("Segment size must be between 4 and " + MAX_SEGMENT_SIZE);
+        }
+
+        this.segmentSize = segmentSize;
+        blocksPerArena = Math.max(1, ARENA_SIZE / segmentSize);
+        scratchChars = new char[segmentSize];
+        scratchBytes = new byte[segmentSize];
+    }
+
+    /**
+     * Loads the UTF-8 encoded file into a new list. The file is read in chunks and decoded straight into the
+     * segments, so the heap only holds a chunk of the text at a time. Line terminators are kept as they are.
+     *
+     * @param path the path of the file to be loaded
+     * @param segmentSize number of bytes per segment
+     * @return an OffHeapTextList containing the text of the file
+     * @throws IllegalArgumentException if path is null or segmentSize is less than 4 or greater than MAX_SEGMENT_SIZE
+     * @throws IOException if the file cannot be read
+     */
+    public static OffHeapTextList load(Path path, int segmentSize) throws IOException {
+        if (path == null) {
+            throw new IllegalArgumentException("Path cannot be null");
+        }
+
+        OffHeapTextList list = new OffHeapTextList(segmentSize);
+        CharsetDecoder decoder = StandardCharsets.UTF_8.newDecoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        ByteBuffer bytes = ByteBuffer.allocateDirect(READ_BUFFER_SIZE);
+        CharBuffer chars = CharBuffer.allocate(READ_BUFFER_SIZE);
+        SegmentWriter writer = list.new SegmentWriter(-1);
+
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            boolean endOfInput = false;
+
+            while (!endOfInput) {
+                endOfInput = channel.read(bytes) == -1;
+                bytes.flip();
+
+                while (decoder.decode(bytes, chars, endOfInput).isOverflow()) {
+                    writer.append(chars.array(), 0, chars.position());
+                    chars.clear();
+                }
+
+                bytes.compact();
+            }
+
+            while (decoder.flush(chars) == CoderResult.OVERFLOW) {
+                writer.append(chars.array(), 0, chars.position());
+                chars.clear();
+            }
+        } catch (IOException | RuntimeException exception) {
+            list.close();
+            throw exception;
+        }
+
+        writer.append(chars.array(), 0, chars.position());
+        list.replace(0, 0, writer.finish());
+
+        return list;
+    }
+
+    /**
+     * Returns the number of characters in the list.
+     *
+     * @return length of the list
+     */
+    public long length() {
+        return length;
+    }
+
+    /**
+     * Returns the ith character of the list.
+     *
+     * @param i the index of the character
+     * @return the ith character
+     * @throws IndexOutOfBoundsException if i < 0 or i >= length of the list
+     */
+    public char charAt(long i) {
+        if (i < 0 || i >= length) {
+            throw new IndexOutOfBoundsException("Index is out of bounds");
+        }
+
+        int k = find(lengths, i);
+
+        return segments.get(k).charAt((int) (i - sum(lengths, k)));
+    }
+
+    /**
+     * Returns the text from start to end (exclusive).
+     *
+     * @param start the index of the first character
+     * @param end the index after the last character
+     * @return String containing the text
+     * @throws IllegalArgumentException if start < 0, end > length of the list, start > end, or the text is too long
+     *                                  for a String
+     */
+    public String substring(long start, long end) {
+        if (start < 0 || end > length || start > end) {
+            throw new IllegalArgumentException("Invalid range");
+        }
+
+        if (end - start > Integer.MAX_VALUE - 8) {
+            throw new IllegalArgumentException("Text is too long for a String");
+        }
+
+        char[] chars = new char[(int) (end - start)];
+
+        if (chars.length == 0) {
+            return "";
+        }
+
+        int k = find(lengths, start);
+        int offset = (int) (start - sum(lengths, k));
+
+        for (int filled = 0; filled < chars.length; k++, offset = 0) {
+            Segment segment = segments.get(k);
+            int n = Math.min(segment.length - offset, chars.length - filled);
+            segment.getChars(offset, offset + n, chars, filled, scratchBytes);
+            filled += n;
+        }
+
+        return new String(chars);
+    }
+
+    /**
+     * Returns the index of the first occurrence of the character at or after the starting index.
+     *
+     * @param c the character to search for
+     * @param from the index to start searching from
+     * @return index of the first occurrence of c at or after from, -1 if there is no such occurrence
+     */
+    public long indexOf(char c, long from) {
+        from = Math.max(from, 0);
+
+        if (from >= length) {
+            return -1;
+        }
+
+        int k = find(lengths, from);
+        long index = sum(lengths, k);
+        int offset = (int) (from - index);
+
+        for (; k < segments.size(); k++, offset = 0) {
+            Segment segment = segments.get(k);
+            int i = segment.indexOf(c, offset);
+
+            if (i != -1) {
+                return index + i;
+            }
+
+            index += segment.length;
+        }
+
+        return -1;
+    }
+
+    /**
+     * Inserts the text before the ith character, or at the end if i is the length of the list.
+     *
+     * @param i the index the text is inserted at
+     * @param text the text to be inserted
+     * @throws IllegalArgumentException if text is null, or i < 0 or i > length of the list
+     */
+    public void insert(long i, CharSequence text) {
+        if (text == null) {
+            throw new IllegalArgumentException("Text cannot be null");
+        }
+
+        if (i < 0 || i > length) {
+            throw new IllegalArgumentException("Index is out of bounds");
+        }
+
+        if (text.length() == 0) {
+            return;
+        }
+
+        if (segments.isEmpty()) {
+            SegmentWriter writer = new SegmentWriter(text.length());
+            writer.append(text);
+            replace(0, 0, writer.finish());
+            return;
+        }
+
+        int k = i == length ? segments.size() - 1 : find(lengths, i);
+        Segment segment = segments.get(k);
+        int offset = (int) (i - sum(lengths, k));
+        SegmentWriter writer = new SegmentWriter((long) segment.length + text.length());
+        writer.append(segment, 0, offset);
+        writer.append(text);
+        writer.append(segment, offset, segment.length);
+        replace(k, k + 1, writer.finish());
+    }
+
+    /**
+     * Deletes the text from start to end (exclusive). If end is greater than the length, deletes to the end.
+     *
+     * @param start the index of the first character to be deleted
+     * @param end the index after the last character to be deleted
+     * @throws IllegalArgumentException if start < 0, start > length of the list or start > end
+     */
+    public void delete(long start, long end) {
+        if (start < 0 || start > length || start > end) {
+            throw new IllegalArgumentException("Invalid range");
+        }
+
+        end = Math.min(end, length);
+
+        if (start == end) {
+            return;
+        }
+
+        int first = find(lengths, start);
+        int last = find(lengths, end - 1);
+        Segment head = segments.get(first);
+        Segment tail = segments.get(last);
+        int headLength = (int) (start - sum(lengths, first));
+        int tailStart = (int) (end - sum(lengths, last));
+        int to = last + 1;
+        long total = headLength + (tail.length - tailStart);
+
+        // merging a small remainder with the next segment, so deletes do not leave many small segments behind
+        Segment next = null;
+
+        if (total < segmentSize / 4 && to < segments.size()) {
+            next = segments.get(to++);
+            total += next.length;
+        }
+
+        SegmentWriter writer = new SegmentWriter(total);
+        writer.append(head, 0, headLength);
+        writer.append(tail, tailStart, tail.length);
+
+        if (next != null) {
+            writer.append(next, 0, next.length);
+        }
+
+        replace(first, to, writer.finish());
+    }
+
+    /**
+     * Returns the number of lines in the list. Lines are separated by '\n', so a list ending with a line break ends
+     * with an empty line, and an empty list has a single empty line.
+     *
+     * @return number of lines
+     */
+    public long lineCount() {
+        return newlines + 1;
+    }
+
+    /**
+     * Returns the index of the first character of the line.
+     *
+     * @param line the index of the line, starting from 0
+     * @return index of the first character of the line
+     * @throws IllegalArgumentException if line < 0 or line >= number of lines
+     */
+    public long lineToOffset(long line) {
+        if (line < 0 || line >= lineCount()) {
+            throw new IllegalArgumentException("Line is out of bounds");
+        }
+
+        if (line == 0) {
+            return 0;
+        }
+
+        // the segment holding the line break before the line
+        int k = find(breaks, line - 1);
+        Segment segment = segments.get(k);
+        int i = -1;
+
+        for (long b = line - sum(breaks, k); b > 0; b--) {
+            i = segment.indexOf('\n', i + 1);
+        }
+
+        return sum(lengths, k) + i + 1;
+    }
+
+    /**
+     * Returns the index of the line containing the ith character.
+     *
+     * @param i the index of the character, at most the length of the list
+     * @return index of the line, starting from 0
+     * @throws IllegalArgumentException if i < 0 or i > length of the list
+     */
+    public long offsetToLine(long i) {
+        if (i < 0 || i > length) {
+            throw new IllegalArgumentException("Index is out of bounds");
+        }
+
+        if (i == length) {
+            return newlines;
+        }
+
+        int k = find(lengths, i);
+        Segment segment = segments.get(k);
+        long line = sum(breaks, k);
+
+        for (int end = (int) (i - sum(lengths, k)), j = segment.indexOf('\n', 0); j != -1 && j < end;
+             j = segment.indexOf('\n', j + 1)) {
+            line++;
+        }
+
+        return line;
+    }
+
+    /**
+     * Writes the text in the list to the channel encoded in UTF-8, segment by segment. The segments which only
+     * contain ASCII characters are written straight from their blocks with gathering writes.
+     *
+     * @param channel the channel to write the text to
+     * @return number of bytes written
+     * @throws IllegalArgumentException if channel is null
+     * @throws IOException if the channel fails
+     */
+    public long transferTo(WritableByteChannel channel) throws IOException {
+        if (channel == null) {
+            throw new IllegalArgumentException("Channel cannot be null");
+        }
+
+        CharsetEncoder encoder = StandardCharsets.UTF_8.newEncoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        ByteBuffer bytes = ByteBuffer.allocateDirect(WRITE_BUFFER_SIZE);
+        CharBuffer chars = CharBuffer.allocate(segmentSize + 1); // room for a surrogate left from the previous segment
+        List<ByteBuffer> gathered = new ArrayList<>(); // bytes of the ASCII segments waiting to be written
+        long written = 0;
+
+        for (Segment segment : segments) {
+            if (segment.ascii && chars.position() == 0) {
+                if (gathered.isEmpty()) {
+                    written += drain(channel, bytes);
+                }
+
+                gathered.add(segment.block.duplicate().limit(segment.length));
+
+                if (gathered.size() >= GATHER_SIZE) {
+                    written += gather(channel, gathered);
+                }
+
+                continue;
+            }
+
+            written += gather(channel, gathered);
+            segment.getChars(0, segment.length, chars.array(), chars.position(), scratchBytes);
+            chars.position(chars.position() + segment.length).flip();
+
+            while (encoder.encode(chars, bytes, false).isOverflow()) {
+                written += drain(channel, bytes);
+            }
+
+            chars.compact();
+        }
+
+        written += gather(channel, gathered);
+        chars.flip();
+
+        while (encoder.encode(chars, bytes, true).isOverflow()) {
+            written += drain(channel, bytes);
+        }
+
+        while (encoder.flush(bytes).isOverflow()) {
+            written += drain(channel, bytes);
+        }
+
+        return written + drain(channel, bytes);
+    }
+
+    /**
+     * Returns the number of segments of the list.
+     *
+     * @return number of segments
+     */
+    public int segments() {
+        return segments.size();
+    }
+
+    /**
+     * Returns the number of bytes allocated outside the heap, including the free blocks.
+     *
+     * @return size of the arenas in bytes
+     */
+    public long offHeapBytes() {
+        return (long) arenas.size() * blocksPerArena * segmentSize;
+    }
+
+    /**
+     * Empties the list and drops its arenas, whose memory is released once they are garbage collected. The list can
+     * still be used afterwards, allocating new arenas.
+     */
+    @Override
+    public void close() {
+        segments.clear();
+        freeBlocks.clear();
+        arenas.clear();
+        lengths = new long[1];
+        breaks = new long[1];
+        length = 0;
+        newlines = 0;
+    }
+
+    /**
+     * Writes the characters of the array from start to end (exclusive) into a new segment.
+     *
+     * @param chars the array holding the characters
+     * @param start the index of the first character
+     * @param end the index after the last character
+     * @param latin1 true if every character is Latin-1
+     * @param bytes scratch buffer used to narrow Latin-1 text, with room for end - start bytes
+     * @return the new segment
+     */
+    private Segment newSegment(char[] chars, int start, int end, boolean latin1, byte[] bytes) {
+        ByteBuffer block = allocate();
+        boolean ascii = latin1;
+        int lineBreaks = 0;
+
+        for (int i = start; i < end; i++) {
+            char c = chars[i];
+            ascii &= c < 0x80;
+            lineBreaks += c == '\n' ? 1 : 0;
+            bytes[i - start] = (byte) c;
+        }
+
+        if (latin1) {
+            block.duplicate().put(bytes, 0, end - start);
+        } else {
+            block.asCharBuffer().put(chars, start, end - start);
+        }
+
+        return new Segment(block, latin1, ascii, end - start, lineBreaks);
+    }
+
+    /**
+     * Takes a free block, allocating a new arena if there is none.
+     *
+     * @return a block of segmentSize bytes
+     */
+    private ByteBuffer allocate() {
+        if (freeBlocks.isEmpty()) {
+            ByteBuffer arena = ByteBuffer.allocateDirect(blocksPerArena * segmentSize);
+            arenas.add(arena);
+
+            for (int b = 0; b < blocksPerArena; b++) {
+                freeBlocks.add(arena.duplicate().position(b * segmentSize).limit((b + 1) * segmentSize).slice());
+            }
+        }
+
+        return freeBlocks.pop();
+    }
+
+    /**
+     * Replaces the segments from start to end (exclusive) with the given segments, freeing the blocks of the
+     * replaced ones, and updates the indexes.
+     *
+     * @param start the index of the first replaced segment
+     * @param end the index after the last replaced segment
+     * @param replacement the new segments, in order
+     */
+    private void replace(int start, int end, List<Segment> replacement) {
+        List<Segment> replaced = segments.subList(start, end);
+
+        for (Segment segment : replaced) {
+            freeBlocks.push(segment.block);
+            length -= segment.length;
+            newlines -= segment.newlines;
+        }
+
+        for (Segment segment : replacement) {
+            length += segment.length;
+            newlines += segment.newlines;
+        }
+
+        if (replaced.size() == replacement.size()) {
+            for (int k = 0; k < replacement.size(); k++) {
+                Segment previous = replaced.get(k);
+                Segment segment = replacement.get(k);
+                add(lengths, start + k, segment.length - previous.length);
+                add(breaks, start + k, segment.newlines - previous.newlines);
+                replaced.set(k, segment);
+            }
+
+            return;
+        }
+
+        replaced.clear();
+        segments.addAll(start, replacement);
+        lengths = new long[segments.size() + 1];
+        breaks = new long[segments.size() + 1];
+
+        // building the trees in O(s), every node adds itself to its parent
+        for (int k = 1; k <= segments.size(); k++) {
+            lengths[k] += segments.get(k - 1).length;
+            breaks[k] += segments.get(k - 1).newlines;
+            int parent = k + (k & -k);
+
+            if (parent <= segments.size()) {
+                lengths[parent] += lengths[k];
+                breaks[parent] += breaks[k];
+            }
+        }
+    }
+
+    /**
+     * Adds the delta to the value of the kth segment in the Fenwick tree.
+     *
+     * @param tree the Fenwick tree
+     * @param k the index of the segment
+     * @param delta the value to be added
+     */
+    private static void add(long[] tree, int k, long delta) {
+        for (int i = k + 1; i < tree.length; i += i & -i) {
+            tree[i] += delta;
+        }
+    }
+
+    /**
+     * Returns the sum of the values of the segments before the kth one in the Fenwick tree.
+     *
+     * @param tree the Fenwick tree
+     * @param k the index of the segment
+     * @return sum of the values of the first k segments
+     */
+    private static long sum(long[] tree, int k) {
+        long sum = 0;
+
+        for (int i = k; i > 0; i -= i & -i) {
+            sum += tree[i];
+        }
+
+        return sum;
+    }
+
+    /**
+     * Returns the index of the segment containing the ith unit counted by the Fenwick tree, that is the first segment
+     * whose values up to and including itself add up to more than i.
+     *
+     * @param tree the Fenwick tree
+     * @param i the index of the unit, less than the sum of the tree
+     * @return index of the segment
+     */
+    private static int find(long[] tree, long i) {
+        int k = 0;
+
+        for (int step = Integer.highestOneBit(tree.length - 1); step > 0; step >>= 1) {
+            if (k + step < tree.length && tree[k + step] <= i) {
+                k += step;
+                i -= tree[k];
+            }
+        }
+
+        return k;
+    }
+
+    /**
+     * Writes the bytes in the buffer to the channel, and clears the buffer.
+     *
+     * @param channel the channel to write to
+     * @param bytes the buffer holding the bytes
+     * @return number of bytes written
+     * @throws IOException if the channel fails
+     */
+    private static int drain(WritableByteChannel channel, ByteBuffer bytes) throws IOException {
+        bytes.flip();
+        int written = bytes.remaining();
+
+        while (bytes.hasRemaining()) {
+            channel.write(bytes);
+        }
+
+        bytes.clear();
+
+        return written;
+    }
+
+    /**
+     * Writes the buffers to the channel, with gathering writes if the channel supports them, and clears the list.
+     *
+     * @param channel the channel to write to
+     * @param buffers the buffers holding the bytes, in order
+     * @return number of bytes written
+     * @throws IOException if the channel fails
+     */
+    private static long gather(WritableByteChannel channel, List<ByteBuffer> buffers) throws IOException {
+        ByteBuffer[] array = buffers.toArray(new ByteBuffer[0]);
+        long written = 0;
+
+        if (channel instanceof GatheringByteChannel) {
+            GatheringByteChannel gathering = (GatheringByteChannel) channel;
+            int first = 0; // index of the first buffer which has not been written completely
+
+            while (first < array.length) {
+                written += gathering.write(array, first, array.length - first);
+
+                while (first < array.length && !array[first].hasRemaining()) {
+                    first++;
+                }
+            }
+        } else {
+            for (ByteBuffer buffer : array) {
+                while (buffer.hasRemaining()) {
+                    written += channel.write(buffer);
+                }
+            }
+        }
+
+        buffers.clear();
+
+        return written;
+    }
+}
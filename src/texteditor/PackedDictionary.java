@@ -0,0 +1,385 @@
+/*
+ * Copyright 2020 <Copyright Vasu Gupta>
+ * Vasu Gupta
+ * Email: vasu99g@gmail.com
+ */
+
+package texteditor;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.TreeSet;
+
+/**
+ * <b>PackedDictionary</b> represents a {@link Dictionary} whose words are sorted and packed into a single buffer.
+ * <p>
+ * The buffer starts with a header, followed by the starting index of every word and then the characters of all
+ * the words. The same layout is written to disk, so a compiled dictionary is simply memory-mapped, and words are
+ * found by binary search without creating any objects.
+ */
+final class PackedDictionary implements Dictionary {
+    // On windows, the dictionary can often be found at:
+    //  C:/Users/{username}/AppData/Roaming/Microsoft/Spelling/en-US/default.dic
+    private static final String FILE_PATH = "/usr/share/dict/words";
+    private static final String COMPILED_FILE_NAME = "texteditor-words.dict";
+    private static final String INDEX_SUFFIX = ".suggest"; // appended to the compiled file name for the index
+    private static final int MAGIC = 0x54454443; // marks a compiled dictionary file
+    private static final int VERSION = 1; // version of the compiled layout
+    private static final int HEADER_SIZE = 28; // magic, version, source size, source modified time, word count
+
+    private final IntBuffer offsets; // starting index of every word in chars, followed by the total length
+    private final CharBuffer chars; // the characters of all the words, in sorted order
+    private final Path indexPath; // the path of the suggestion index, null to keep the index on the heap
+    private volatile SuggestionIndex index; // the suggestion index, null till the first suggestion
+    private final ByteBuffer buffer; // the compiled dictionary
+
+    /**
+     * Holder of the shared dictionary, which loads it the first time it is used.
+     */
+    private static final class Holder {
+        static final Dictionary SHARED = loadShared();
+    }
+
+    /**
+     * Constructs a dictionary reading the compiled layout from the buffer.
+     *
+     * @param buffer the buffer containing a compiled dictionary
+     * @param indexPath the path of the suggestion index, null to keep the index on the heap
+     */
+    private PackedDictionary(ByteBuffer buffer, Path indexPath) {
+        int count = buffer.getInt(HEADER_SIZE - Integer.BYTES);
+        int charsStart = HEADER_SIZE + (count + 1) * Integer.BYTES;
+
+        offsets = buffer.duplicate().position(HEADER_SIZE).limit(charsStart).slice().asIntBuffer();
+        chars = buffer.duplicate().position(charsStart).slice().asCharBuffer();
+        this.indexPath = indexPath;
+        this.buffer = buffer;
+    }
+
+    @Override
+    public boolean contains(CharSequence text, int start, int end) {
+        if (start < 0 || end > text.length() || start > end) {
+            throw new IndexOutOfBoundsException("Range [" + start + ", " + end + ") is out of bounds");
+        }
+
+        int low = 0;
+        int high = offsets.limit() - 2;
+
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            int comparison = compare(middle, text, start, end);
+
+            if (comparison < 0) {
+                low = middle + 1;
+            } else if (comparison > 0) {
+                high = middle - 1;
+            } else {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    @Override
+    public List<String> suggest(CharSequence word, int limit) {
+        if (word == null) {
+            throw new IllegalArgumentException("Word cannot be null");
+        }
+
+        if (limit < 0) {
+            throw new IllegalArgumentException("Limit cannot be negative");
+        }
+
+        SuggestionIndex index = this.index;
+
+        if (index == null) {
+            synchronized (this) {
+                if (this.index == null) {
+                    this.index = SuggestionIndex.load(this, indexPath, buffer.getLong(8), buffer.getLong(16));
+                }
+
+                index = this.index;
+            }
+        }
+
+        return index.suggest(word, limit);
+    }
+
+    /**
+     * Returns the number of words in the dictionary.
+     *
+     * @return number of words
+     */
+    int size() {
+        return offsets.limit() - 1;
+    }
+
+    /**
+     * Returns the number of characters of the word at the given index.
+     *
+     * @param word the index of the word
+     * @return length of the word
+     */
+    int length(int word) {
+        return offsets.get(word + 1) - offsets.get(word);
+    }
+
+    /**
+     * Copies the characters of the word at the given index to the start of the array.
+     *
+     * @param word the index of the word
+     * @param dst the array, at least as long as the word
+     */
+    void getChars(int word, char[] dst) {
+        int from = offsets.get(word);
+
+        for (int i = 0; i < length(word); i++) {
+            dst[i] = chars.get(from + i);
+        }
+    }
+
+    /**
+     * Returns the word at the given index, in sorted order.
+     *
+     * @param word the index of the word
+     * @return the word
+     */
+    String word(int word) {
+        int from = offsets.get(word);
+        char[] text = new char[offsets.get(word + 1) - from];
+        chars.duplicate().position(from).get(text);
+
+        return new String(text);
+    }
+
+    /**
+     * Returns the dictionary of the system words, loading it the first time.
+     *
+     * @return the shared dictionary
+     */
+    static Dictionary shared() {
+        return Holder.SHARED;
+    }
+
+    /**
+     * Loads the dictionary from the file containing one word per line, in UTF-8 or ISO-8859-1, compiling it if the
+     * compiled file is missing or out of date. If the compiled file cannot be written, the dictionary is kept on the
+     * heap.
+     *
+     * @param source the path of the file containing the words
+     * @param compiled the path of the compiled dictionary
+     * @return the dictionary containing the words
+     * @throws IllegalArgumentException if source or compiled is null
+     * @throws IOException if the source file cannot be read
+     */
+    static Dictionary load(Path source, Path compiled) throws IOException {
+        if (source == null || compiled == null) {
+            throw new IllegalArgumentException("Path cannot be null");
+        }
+
+        long size = Files.size(source);
+        long modified = Files.getLastModifiedTime(source).toMillis();
+
+        if (Files.exists(compiled)) {
+            ByteBuffer buffer = map(compiled);
+
+            if (isCompiledFrom(buffer, size, modified)) {
+                return new PackedDictionary(buffer, indexPath(compiled));
+            }
+        }
+
+        ByteBuffer buffer = compile(readWords(source), size, modified);
+
+        try {
+            // writing to a temporary file first, so other processes never map a partially written file
+            Path temp = Files.createTempFile(compiled.toAbsolutePath().getParent(), COMPILED_FILE_NAME, ".tmp");
+            Files.write(temp, buffer.array());
+            Files.move(temp, compiled, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+            return new PackedDictionary(map(compiled), indexPath(compiled));
+        } catch (IOException exception) {
+            return new PackedDictionary(buffer, null);
+        }
+    }
+
+    ///////////////////////////////////////////////////////////////////////////////////////
+    ////  Util methods
+    ///////////////////////////////////////////////////////////////////////////////////////
+
+    /**
+     * Loads the dictionary of the system words, compiled into the temporary directory.
+     *
+     * @return the dictionary of the system words, empty if it cannot be loaded
+     */
+    private static Dictionary loadShared() {
+        try {
+            return load(Paths.get(FILE_PATH), Paths.get(System.getProperty("java.io.tmpdir"), COMPILED_FILE_NAME));
+        } catch (NoSuchFileException exception) {
+            System.out.println(FILE_PATH + " does not exist");
+        } catch (IOException exception) {
+            exception.printStackTrace();
+        } catch (Exception exception) {
+            System.out.println(exception.getMessage());
+        }
+
+        return new PackedDictionary(compile(List.of(), 0, 0), null);
+    }
+
+    /**
+     * Reads the words of the source file, one per line. The file is decoded as UTF-8, or as ISO-8859-1 if it is not
+     * valid UTF-8, since word lists are often shipped in Latin-1.
+     *
+     * @param source the path of the file containing the words
+     * @return the words of the file
+     * @throws IOException if the source file cannot be read
+     */
+    private static List<String> readWords(Path source) throws IOException {
+        try {
+            return Files.readAllLines(source, StandardCharsets.UTF_8);
+        } catch (CharacterCodingException exception) {
+            return Files.readAllLines(source, StandardCharsets.ISO_8859_1);
+        }
+    }
+
+    /**
+     * Returns the path of the suggestion index of the compiled dictionary, next to it.
+     *
+     * @param compiled the path of the compiled dictionary
+     * @return the path of the index
+     */
+    private static Path indexPath(Path compiled) {
+        return compiled.resolveSibling(compiled.getFileName() + INDEX_SUFFIX);
+    }
+
+    /**
+     * Builds the compiled layout of the words.
+     *
+     * @param words the words of the dictionary, in any order and possibly repeated
+     * @param size size of the source file in bytes
+     * @param modified last modified time of the source file
+     * @return the buffer containing the compiled dictionary
+     */
+    private static ByteBuffer compile(List<String> words, long size, long modified) {
+        TreeSet<String> sorted = new TreeSet<>(words);
+        int length = 0;
+
+        for (String word : sorted) {
+            length += word.length();
+        }
+
+        ByteBuffer buffer = ByteBuffer.allocate(HEADER_SIZE + (sorted.size() + 1) * Integer.BYTES
+                + length * Character.BYTES);
+        buffer.putInt(MAGIC).putInt(VERSION).putLong(size).putLong(modified).putInt(sorted.size());
+
+        int offset = 0;
+
+        for (String word : sorted) {
+            buffer.putInt(offset);
+            offset += word.length();
+        }
+
+        buffer.putInt(offset);
+
+        for (String word : sorted) {
+            for (int i = 0; i < word.length(); i++) {
+                buffer.putChar(word.charAt(i));
+            }
+        }
+
+        return buffer.clear();
+    }
+
+    /**
+     * Memory-maps the compiled dictionary.
+     *
+     * @param compiled the path of the compiled dictionary
+     * @return the mapped buffer
+     * @throws IOException if the file cannot be mapped
+     */
+    private static ByteBuffer map(Path compiled) throws IOException {
+        try (FileChannel channel = FileChannel.open(compiled, StandardOpenOption.READ)) {
+            return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+    }
+
+    /**
+     * Checks if the buffer contains a dictionary compiled from the source file with the given size and modified time.
+     * The compiled file lives in a shared directory, so besides the header the offset table is checked to start at 0
+     * and never decrease, which keeps every word inside the characters however the file was written.
+     *
+     * @param buffer the buffer to be checked
+     * @param size size of the source file in bytes
+     * @param modified last modified time of the source file
+     * @return true if the buffer is up to date, false otherwise
+     */
+    private static boolean isCompiledFrom(ByteBuffer buffer, long size, long modified) {
+        if (buffer.limit() < HEADER_SIZE || buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION
+                || buffer.getLong(8) != size || buffer.getLong(16) != modified) {
+            return false;
+        }
+
+        long count = buffer.getInt(24);
+        long charsStart = HEADER_SIZE + (count + 1) * Integer.BYTES;
+
+        if (count < 0 || charsStart > buffer.limit()
+                || charsStart + (long) buffer.getInt((int) charsStart - Integer.BYTES) * Character.BYTES
+                != buffer.limit()) {
+            return false;
+        }
+
+        int previous = 0;
+
+        for (int i = HEADER_SIZE; i < charsStart; i += Integer.BYTES) {
+            int offset = buffer.getInt(i);
+
+            // the first word starts at 0, and the last offset is the total length checked above
+            if (offset < previous || (i == HEADER_SIZE && offset != 0)) {
+                return false;
+            }
+
+            previous = offset;
+        }
+
+        return true;
+    }
+
+    /**
+     * Compares the word in the dictionary with the text from start to end (exclusive), in the order of
+     * {@link String#compareTo(String)}.
+     *
+     * @param word the index of the word in the dictionary
+     * @param text the text containing the other word
+     * @param start the index of the first character of the other word
+     * @param end the index after the last character of the other word
+     * @return negative if the word comes first, positive if the other word comes first, 0 if they are equal
+     */
+    private int compare(int word, CharSequence text, int start, int end) {
+        int from = offsets.get(word);
+        int length = offsets.get(word + 1) - from;
+        int common = Math.min(length, end - start);
+
+        for (int i = 0; i < common; i++) {
+            char c = chars.get(from + i);
+            char other = text.charAt(start + i);
+
+            if (c != other) {
+                return c - other;
+            }
+        }
+
+        return length - (end - start);
+    }
+}
@@ -0,0 +1,105 @@
+/*
+ * Copyright 2020 <Copyright Vasu Gupta>
+ * Vasu Gupta
+ * Email: vasu99g@gmail.com
+ */
+
+package texteditor;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.channels.WritableByteChannel;
+
+/**
+ * <b>Snapshot</b> represents a read only version of the document of a {@link TextEditor}, which does not change
+ * when the document is edited. The snapshot can be read by any thread; the threads reading the same snapshot take
+ * turns, but they never block the edits of the document.
+ */
+public final class Snapshot {
+    private final UnrolledTextList document; // the text of the document, sharing its nodes with the editor
+    private final long version; // version of the document
+    private final int misspellings; // number of misspelled words in the document
+
+    /**
+     * Constructs a snapshot of a version of the document.
+     *
+     * @param document the list sharing the text of the document
+     * @param version version of the document
+     * @param misspellings number of misspelled words in the document
+     */
+    Snapshot(UnrolledTextList document, long version, int misspellings) {
+        this.document = document;
+        this.version = version;
+        this.misspellings = misspellings;
+    }
+
+    /**
+     * Returns the version of the document, which is increased every time the document is modified.
+     *
+     * @return version of the document
+     */
+    public long version() {
+        return version;
+    }
+
+    /**
+     * Returns the number of characters in the document.
+     *
+     * @return length of the document
+     */
+    public synchronized int length() {
+        return document.length();
+    }
+
+    /**
+     * Returns the number of misspelled words in the document.
+     *
+     * @return number of misspelled words
+     */
+    public int misspellings() {
+        return misspellings;
+    }
+
+    /**
+     * Returns the string representation of the document. The String is cached.
+     *
+     * @return String representation of the document
+     */
+    public synchronized String getText() {
+        return document.toString();
+    }
+
+    /**
+     * Writes the document to the writer without building its String representation.
+     *
+     * @param writer the writer to write the document to
+     * @throws IllegalArgumentException if writer is null
+     * @throws IOException if the writer fails
+     */
+    public synchronized void writeTo(Writer writer) throws IOException {
+        document.writeTo(writer);
+    }
+
+    /**
+     * Writes the document to the channel encoded in UTF-8 without building its String representation.
+     *
+     * @param channel the channel to write the document to
+     * @return number of bytes written
+     * @throws IllegalArgumentException if channel is null
+     * @throws IOException if the channel fails
+     */
+    public synchronized long transferTo(WritableByteChannel channel) throws IOException {
+        return document.transferTo(channel);
+    }
+
+    /**
+     * Returns the edit turning this version of the document into the other one. The caller must hold the lock of the
+     * editor owning the other document.
+     *
+     * @param other the text of a later version of the document
+     * @return the edit replacing the changed region, null if both versions contain the same text
+     */
+    synchronized TextEdit diff(UnrolledTextList other) {
+        return document.diff(other);
+    }
+}
@@ -0,0 +1,202 @@
+/*
+ * Copyright 2020 <Copyright Vasu Gupta>
+ * Vasu Gupta
+ * Email: vasu99g@gmail.com
+ */
+
+package texteditor;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+/**
+ * <b>SpellCheckPipeline</b> represents a batch spell check of every file in a directory tree, for jobs checking many
+ * files without an editor for each of them.
+ * <p>
+ * The files are found by walking the directory on the calling thread, and checked by a pool of worker threads, each
+ * streaming a file into an {@link UnrolledTextList} and counting its misspelled words in place against a single
+ * dictionary. The reports are handed to the consumer on the calling thread, in the order the checks finish. At most
+ * queueCapacity files are in flight, checked or waiting for the consumer, so the walk waits for a slow consumer, and
+ * memory holds at most one document per worker besides the reports waiting to be consumed.
+ */
+public final class SpellCheckPipeline {
+    private static final int NODE_SIZE = 1500; // number of characters per node of the checked documents
+    private static final int WORDS_PER_REPORT = 10; // default max number of misspelled words listed by a report
+
+    private final Dictionary dictionary; // dictionary the words are checked against
+    private final int threads; // number of worker threads
+    private final int queueCapacity; // max number of files in flight
+    private final int wordsPerReport; // max number of misspelled words listed by a report
+
+    /**
+     * Constructs a pipeline checking the files against the shared dictionary, with a worker thread for every
+     * available processor.
+     */
+    public SpellCheckPipeline() {
+        this(Dictionary.shared(), Runtime.getRuntime().availableProcessors(),
+                4 * Runtime.getRuntime().availableProcessors(), WORDS_PER_REPORT);
+    }
+
+    /**
+     * Constructs a pipeline checking the files against the dictionary. Files stored on slow disks or network file
+     * systems are checked faster with more threads than processors, since the threads mostly wait for the reads.
+     *
+     * @param dictionary dictionary the words are checked against
+     * @param threads number of worker threads
+     * @param queueCapacity max number of files checked or waiting for the consumer at once, at least threads
+     * @param wordsPerReport max number of misspelled words listed by a report
+     * @throws IllegalArgumentException if dictionary is null, threads is not positive, queueCapacity is less than
+     *                                  threads or wordsPerReport is negative
+     */
+    public SpellCheckPipeline(Dictionary dictionary, int threads, int queueCapacity, int wordsPerReport) {
+        if (dictionary == null) {
+            throw new IllegalArgumentException("Dictionary cannot be null");
+        }
+
+        if (threads <= 0) {
+            throw new IllegalArgumentException("Number of threads must be positive");
+        }
+
+        if (queueCapacity < threads) {
+            throw new IllegalArgumentException("Queue capacity cannot be less than the number of threads");
+        }
+
+        if (wordsPerReport < 0) {
+            throw new IllegalArgumentException("Words per report cannot be negative");
+        }
+
+        this.dictionary = dictionary;
+        this.threads = threads;
+        this.queueCapacity = queueCapacity;
+        this.wordsPerReport = wordsPerReport;
+    }
+
+    /**
+     * Checks every regular file in the directory and its subdirectories, decoded as UTF-8, and hands the report of
+     * every file to the consumer on the calling thread. A file which cannot be read or checked is reported with its
+     * error.
+     *
+     * @param directory the directory to be checked
+     * @param consumer the consumer of the reports
+     * @return number of reported files
+     * @throws IllegalArgumentException if directory or consumer is null
+     * @throws IOException if the directory cannot be walked
+     * @throws InterruptedException if the calling thread is interrupted, in which case the checks are cancelled
+     */
+    public int run(Path directory, Consumer<SpellCheckReport> consumer) throws IOException, InterruptedException {
+        if (directory == null || consumer == null) {
+            throw new IllegalArgumentException("Directory and consumer cannot be null");
+        }
+
+        ExecutorService workers = Executors.newFixedThreadPool(threads, workerFactory());
+        BlockingQueue<SpellCheckReport> reports = new LinkedBlockingQueue<>();
+        int submitted = 0;
+        int reported = 0;
+
+        try (Stream<Path> files = Files.walk(directory)) {
+            for (Iterator<Path> iterator = files.filter(Files::isRegularFile).iterator(); iterator.hasNext(); ) {
+                Path file = iterator.next();
+
+                // waiting for the consumer while the pipeline is full
+                for (; submitted - reported >= queueCapacity; reported++) {
+                    consumer.accept(reports.take());
+                }
+
+                workers.execute(() -> reports.add(check(file)));
+                submitted++;
+            }
+
+            for (; reported < submitted; reported++) {
+                consumer.accept(reports.take());
+            }
+        } catch (UncheckedIOException exception) {
+            throw exception.getCause();
+        } finally {
+            workers.shutdownNow();
+        }
+
+        return reported;
+    }
+
+    /**
+     * Checks the file on a worker thread. Every file is reported, even if its check fails, since the calling thread
+     * waits for a report of every submitted file.
+     *
+     * @param file the file to be checked
+     * @return the report of the file
+     */
+    private SpellCheckReport check(Path file) {
+        try {
+            return spellCheck(file);
+        } catch (Exception exception) {
+            return new SpellCheckReport(file, exception);
+        } catch (Error error) {
+            // such as running out of memory on a huge file, whose document is unreachable by now
+            return new SpellCheckReport(file, new ExecutionException(error));
+        }
+    }
+
+    /**
+     * Checks the file, streaming it into a document.
+     *
+     * @param file the file to be checked
+     * @return the report of the file
+     * @throws IOException if the file cannot be read
+     */
+    private SpellCheckReport spellCheck(Path file) throws IOException {
+        UnrolledTextList document = UnrolledTextList.load(file, NODE_SIZE);
+        int misspellings = MisspellingScan.count(document, dictionary);
+        List<String> words = List.of();
+
+        if (misspellings > 0 && wordsPerReport > 0) {
+            CharSequence text = document.asCharSequence();
+            Set<String> misspelled = new LinkedHashSet<>();
+
+            for (int start = 0; start < text.length() && misspelled.size() < wordsPerReport; ) {
+                int end = MisspellingScan.wordEnd(document, start);
+
+                if (end > start && !dictionary.contains(text, start, end)) {
+                    misspelled.add(text.subSequence(start, end).toString());
+                }
+
+                start = end + 1;
+            }
+
+            words = List.copyOf(misspelled);
+        }
+
+        return new SpellCheckReport(file, document.length(), misspellings, words);
+    }
+
+    /**
+     * Returns the factory of the worker threads, which are daemon threads so an abandoned pipeline does not keep the
+     * JVM alive.
+     *
+     * @return the thread factory
+     */
+    private static ThreadFactory workerFactory() {
+        AtomicInteger count = new AtomicInteger();
+
+        return task -> {
+            Thread thread = new Thread(task, "spell-check-" + count.incrementAndGet());
+            thread.setDaemon(true);
+
+            return thread;
+        };
+    }
+}
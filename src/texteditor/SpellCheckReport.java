@@ -0,0 +1,104 @@
+/*
+ * Copyright 2020 <Copyright Vasu Gupta>
+ * Vasu Gupta
+ * Email: vasu99g@gmail.com
+ */
+
+package texteditor;
+
+import java.nio.file.Path;
+import java.util.List;
+
+/**
+ * <b>SpellCheckReport</b> represents the result of spell checking a file with a {@link SpellCheckPipeline}.
+ */
+public final class SpellCheckReport {
+    private final Path path; // the checked file
+    private final int length; // number of characters in the file
+    private final int misspellings; // number of misspelled words
+    private final List<String> misspelledWords; // the first distinct misspelled words, in order
+    private final Exception error; // the error which stopped the check, null if the file was checked
+
+    /**
+     * Constructs the report of a checked file.
+     *
+     * @param path the checked file
+     * @param length number of characters in the file
+     * @param misspellings number of misspelled words
+     * @param misspelledWords the first distinct misspelled words, in order
+     */
+    SpellCheckReport(Path path, int length, int misspellings, List<String> misspelledWords) {
+        this.path = path;
+        this.length = length;
+        this.misspellings = misspellings;
+        this.misspelledWords = misspelledWords;
+        error = null;
+    }
+
+    /**
+     * Constructs the report of a file which could not be checked.
+     *
+     * @param path the file
+     * @param error the error which stopped the check
+     */
+    SpellCheckReport(Path path, Exception error) {
+        this.path = path;
+        length = 0;
+        misspellings = 0;
+        misspelledWords = List.of();
+        this.error = error;
+    }
+
+    /**
+     * Returns the checked file.
+     *
+     * @return the path of the file
+     */
+    public Path path() {
+        return path;
+    }
+
+    /**
+     * Returns the number of characters in the file.
+     *
+     * @return length of the file in characters, 0 if the file could not be checked
+     */
+    public int length() {
+        return length;
+    }
+
+    /**
+     * Returns the number of misspelled words in the file, counted like {@link TextEditor#misspellings()}.
+     *
+     * @return number of misspelled words, 0 if the file could not be checked
+     */
+    public int misspellings() {
+        return misspellings;
+    }
+
+    /**
+     * Returns the first distinct misspelled words of the file, up to the limit of the pipeline. The empty words
+     * between consecutive separators are counted as misspellings, but not listed.
+     *
+     * @return unmodifiable list of misspelled words, in the order they first appear
+     */
+    public List<String> misspelledWords() {
+        return misspelledWords;
+    }
+
+    /**
+     * Returns the error which stopped the check of the file: an IOException if the file could not be read, or the
+     * failure of the check, an Error being wrapped in an ExecutionException.
+     *
+     * @return the error, null if the file was checked
+     */
+    public Exception error() {
+        return error;
+    }
+
+    @Override
+    public String toString() {
+        return error != null ? String.format("%s: %s", path, error)
+                : String.format("%s: %d misspellings %s", path, misspellings, misspelledWords);
+    }
+}
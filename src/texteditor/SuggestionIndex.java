@@ -0,0 +1,407 @@
+/*
+ * Copyright 2020 <Copyright Vasu Gupta>
+ * Vasu Gupta
+ * Email: vasu99g@gmail.com
+ */
+
+package texteditor;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.Set;
+
+/**
+ * <b>SuggestionIndex</b> represents a symmetric delete index of the words of a {@link PackedDictionary}, which finds
+ * the words within two edits of a misspelled word.
+ * <p>
+ * Every string obtained by deleting up to two characters from the prefix of a word is indexed, so the words within
+ * two insertions, deletions, substitutions or transpositions of the misspelled word share one of its own deletes.
+ * A lookup generates the deletes of the misspelled word and only measures the distance to the words found under
+ * them, instead of scanning the whole dictionary. Only the first characters of every word are deleted, which keeps
+ * the index small without losing any word, since the deletes of both prefixes still meet.
+ * <p>
+ * The index is a hash table stored in flat arrays: the deletes are grouped by the bucket of their hash, and every
+ * bucket points to the hashes and words of its deletes, so a delete is looked up with a few memory accesses. The same
+ * layout is written to disk, so a built index is simply memory-mapped. Hash collisions only add candidates, which are
+ * rejected by the distance check.
+ */
+final class SuggestionIndex {
+    static final int MAX_DISTANCE = 2; // max number of edits between a word and its suggestions
+    private static final int PREFIX_LENGTH = 7; // number of leading characters of a word which are deleted
+    private static final int MAGIC = 0x54455349; // marks a suggestion index file
+    private static final int VERSION = 1; // version of the index layout
+    private static final int HEADER_SIZE = 32; // magic, version, source size, source modified time, buckets, deletes
+
+    private final PackedDictionary dictionary; // the indexed dictionary
+    private final IntBuffer starts; // index of the first delete of every bucket, followed by the number of deletes
+    private final IntBuffer hashes; // hash of every delete, grouped by bucket
+    private final IntBuffer words; // index of the word of every delete, in the order of the hashes
+    private final int mask; // number of buckets minus one, the buckets being a power of two
+
+    /**
+     * Constructs an index reading the layout from the buffer.
+     *
+     * @param dictionary the indexed dictionary
+     * @param buffer the buffer containing a built index
+     */
+    private SuggestionIndex(PackedDictionary dictionary, ByteBuffer buffer) {
+        int buckets = buffer.getInt(HEADER_SIZE - 2 * Integer.BYTES);
+        int count = buffer.getInt(HEADER_SIZE - Integer.BYTES);
+        int hashesStart = HEADER_SIZE + (buckets + 1) * Integer.BYTES;
+        int wordsStart = hashesStart + count * Integer.BYTES;
+
+        this.dictionary = dictionary;
+        starts = buffer.duplicate().position(HEADER_SIZE).limit(hashesStart).slice().asIntBuffer();
+        hashes = buffer.duplicate().position(hashesStart).limit(wordsStart).slice().asIntBuffer();
+        words = buffer.duplicate().position(wordsStart).slice().asIntBuffer();
+        mask = buckets - 1;
+    }
+
+    /**
+     * Loads the index of the dictionary from the file, building it if the file is missing or was built from another
+     * version of the source file. If the file cannot be written, the index is kept on the heap.
+     *
+     * @param dictionary the dictionary to be indexed
+     * @param path the path of the index file, null to keep the index on the heap
+     * @param size size of the source file of the dictionary in bytes
+     * @param modified last modified time of the source file of the dictionary
+     * @return the index of the dictionary
+     */
+    static SuggestionIndex load(PackedDictionary dictionary, Path path, long size, long modified) {
+        try {
+            if (path != null && Files.exists(path)) {
+                ByteBuffer buffer = map(path);
+
+                if (isBuiltFrom(buffer, dictionary, size, modified)) {
+                    return new SuggestionIndex(dictionary, buffer);
+                }
+            }
+        } catch (IOException exception) {
+            // rebuilding the index
+        }
+
+        ByteBuffer buffer = build(dictionary, size, modified);
+
+        if (path == null) {
+            return new SuggestionIndex(dictionary, buffer);
+        }
+
+        try {
+            // writing to a temporary file first, so other processes never map a partially written file
+            Path temp = Files.createTempFile(path.toAbsolutePath().getParent(), path.getFileName().toString(), ".tmp");
+            Files.write(temp, buffer.array());
+            Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+            return new SuggestionIndex(dictionary, map(path));
+        } catch (IOException exception) {
+            return new SuggestionIndex(dictionary, buffer);
+        }
+    }
+
+    /**
+     * Returns the words within two edits of the word, the closest first. Words at the same distance are ordered by
+     * how much their length differs from the word, and then alphabetically.
+     *
+     * @param word the misspelled word
+     * @param limit max number of suggestions
+     * @return the suggested words
+     */
+    List<String> suggest(CharSequence word, int limit) {
+        String misspelled = word.toString();
+        int[] candidates = new int[64];
+        int count = 0;
+
+        for (String delete : deletes(misspelled)) {
+            int hash = delete.hashCode();
+
+            int bucket = hash & mask;
+
+            for (int k = starts.get(bucket); k < starts.get(bucket + 1); k++) {
+                if (hashes.get(k) != hash) {
+                    continue;
+                }
+
+                if (count == candidates.length) {
+                    candidates = Arrays.copyOf(candidates, count * 2);
+                }
+
+                candidates[count++] = words.get(k);
+            }
+        }
+
+        Arrays.sort(candidates, 0, count);
+        char[] misspelledChars = misspelled.toCharArray();
+        char[] chars = new char[misspelled.length() + MAX_DISTANCE]; // characters of the candidate
+        int[][] rows = new int[3][chars.length + 2];
+        // the best suggestions so far, the worst on top; a key orders by distance, length difference and word, since
+        // the words of the dictionary are sorted
+        PriorityQueue<Long> best = new PriorityQueue<>(Comparator.reverseOrder());
+        int bound = MAX_DISTANCE; // max distance of a suggestion which can still make it into the best ones
+
+        for (int k = 0; k < count && limit > 0; k++) {
+            int candidate = candidates[k];
+            int lengthDifference = Math.abs(dictionary.length(candidate) - misspelled.length());
+
+            if ((k > 0 && candidate == candidates[k - 1]) || lengthDifference > bound) {
+                continue;
+            }
+
+            dictionary.getChars(candidate, chars);
+            int distance = distance(misspelledChars, chars, dictionary.length(candidate), bound, rows);
+            long key = (long) distance << 40 | (long) lengthDifference << 32 | candidate;
+
+            if (distance > bound || (best.size() == limit && key > best.peek())) {
+                continue;
+            }
+
+            best.add(key);
+
+            if (best.size() > limit) {
+                best.poll();
+                bound = (int) (best.peek() >>> 40);
+            }
+        }
+
+        String[] suggestions = new String[best.size()];
+
+        for (int k = suggestions.length - 1; k >= 0; k--) {
+            suggestions[k] = dictionary.word((int) (long) best.poll());
+        }
+
+        return Arrays.asList(suggestions);
+    }
+
+    /**
+     * Returns the optimal string alignment distance between the words: the number of insertions, deletions,
+     * substitutions and transpositions of adjacent characters turning one into the other, where no character is
+     * edited twice. Only the cells of the table within the bound of its diagonal are computed, so the distance is only
+     * exact up to the bound.
+     *
+     * @param a the characters of the first word
+     * @param b the characters of the second word, followed by unused characters
+     * @param length number of characters of the second word
+     * @param bound the largest distance which is needed exactly
+     * @param rows three rows of the table, of at least length + 2 cells
+     * @return the distance, or more than the bound if the words are further apart
+     */
+    private static int distance(char[] a, char[] b, int length, int bound, int[][] rows) {
+        if (Math.abs(a.length - length) > bound) {
+            return bound + 1;
+        }
+
+        int far = bound + 1; // stands for every distance larger than the bound
+        int[] previous2 = rows[0]; // row i - 2
+        int[] previous = rows[1]; // row i - 1
+        int[] current = rows[2]; // row i
+
+        for (int j = 0; j <= length + 1; j++) {
+            previous[j] = Math.min(j, far);
+        }
+
+        int previousMin = 0; // smallest distance in row i - 1
+
+        for (int i = 1; i <= a.length; i++) {
+            int low = Math.max(1, i - bound);
+            int high = Math.min(length, i + bound);
+            current[0] = Math.min(i, far);
+            current[low - 1] = low == 1 ? current[0] : far;
+            current[high + 1] = far;
+            int rowMin = current[low - 1];
+
+            for (int j = low; j <= high; j++) {
+                int cost = a[i - 1] == b[j - 1] ? 0 : 1;
+                int distance = Math.min(Math.min(previous[j] + 1, current[j - 1] + 1), previous[j - 1] + cost);
+
+                if (i > 1 && j > 1 && a[i - 1] == b[j - 2] && a[i - 2] == b[j - 1]) {
+                    distance = Math.min(distance, previous2[j - 2] + 1);
+                }
+
+                current[j] = Math.min(distance, far);
+                rowMin = Math.min(rowMin, current[j]);
+            }
+
+            // a row only grows from the smallest distance of the previous row, or of the row before plus one
+            if (rowMin > bound && previousMin >= bound) {
+                return far;
+            }
+
+            previousMin = rowMin;
+            int[] recycled = previous2;
+            previous2 = previous;
+            previous = current;
+            current = recycled;
+        }
+
+        return previous[length];
+    }
+
+    ///////////////////////////////////////////////////////////////////////////////////////
+    ////  Util methods
+    ///////////////////////////////////////////////////////////////////////////////////////
+
+    /**
+     * Returns the strings obtained by deleting up to two characters from the prefix of the word, including the
+     * prefix itself.
+     *
+     * @param word the word
+     * @return the deletes of the prefix of the word
+     */
+    private static Set<String> deletes(String word) {
+        Set<String> deletes = new HashSet<>();
+        String prefix = word.substring(0, Math.min(word.length(), PREFIX_LENGTH));
+        deletes.add(prefix);
+        addDeletes(prefix, 1, deletes);
+
+        return deletes;
+    }
+
+    /**
+     * Adds the strings obtained by deleting a character from the text to the set, and then their own deletes till
+     * MAX_DISTANCE characters are deleted.
+     *
+     * @param text the text to delete characters from
+     * @param distance number of characters deleted by the next delete
+     * @param deletes the set the deletes are added to
+     */
+    private static void addDeletes(String text, int distance, Set<String> deletes) {
+        for (int i = 0; i < text.length(); i++) {
+            String delete = text.substring(0, i) + text.substring(i + 1);
+
+            if (deletes.add(delete) && distance < MAX_DISTANCE) {
+                addDeletes(delete, distance + 1, deletes);
+            }
+        }
+    }
+
+    /**
+     * Builds the layout of the index of the dictionary.
+     *
+     * @param dictionary the dictionary to be indexed
+     * @param size size of the source file of the dictionary in bytes
+     * @param modified last modified time of the source file of the dictionary
+     * @return the buffer containing the index
+     */
+    private static ByteBuffer build(PackedDictionary dictionary, long size, long modified) {
+        long[] entries = new long[16]; // hash and word of every delete
+        int count = 0;
+
+        for (int word = 0; word < dictionary.size(); word++) {
+            for (String delete : deletes(dictionary.word(word))) {
+                if (count == entries.length) {
+                    entries = Arrays.copyOf(entries, count * 2);
+                }
+
+                entries[count++] = (long) delete.hashCode() << Integer.SIZE | word;
+            }
+        }
+
+        // about two deletes per bucket, grouped by bucket with a counting sort
+        int buckets = Integer.highestOneBit(Math.max(count / 2, 1));
+        int[] starts = new int[buckets + 1];
+
+        for (int k = 0; k < count; k++) {
+            starts[((int) (entries[k] >> Integer.SIZE) & (buckets - 1)) + 1]++;
+        }
+
+        for (int b = 0; b < buckets; b++) {
+            starts[b + 1] += starts[b];
+        }
+
+        int hashesStart = HEADER_SIZE + (buckets + 1) * Integer.BYTES;
+        int wordsStart = hashesStart + count * Integer.BYTES;
+        ByteBuffer buffer = ByteBuffer.allocate(wordsStart + count * Integer.BYTES);
+        buffer.putInt(MAGIC).putInt(VERSION).putLong(size).putLong(modified).putInt(buckets).putInt(count);
+
+        for (int start : starts) {
+            buffer.putInt(start);
+        }
+
+        int[] next = Arrays.copyOf(starts, buckets); // index of the next delete of every bucket
+
+        for (int k = 0; k < count; k++) {
+            int hash = (int) (entries[k] >> Integer.SIZE);
+            int position = next[hash & (buckets - 1)]++;
+            buffer.putInt(hashesStart + position * Integer.BYTES, hash);
+            buffer.putInt(wordsStart + position * Integer.BYTES, (int) entries[k]);
+        }
+
+        return buffer.clear();
+    }
+
+    /**
+     * Memory-maps the index file.
+     *
+     * @param path the path of the index file
+     * @return the mapped buffer
+     * @throws IOException if the file cannot be mapped
+     */
+    private static ByteBuffer map(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+    }
+
+    /**
+     * Checks if the buffer contains an index built from the source file with the given size and modified time. Like
+     * the compiled dictionary, the index lives in a shared directory, so the starts of the buckets are checked to
+     * increase from 0 to the number of deletes, and every delete to point to a word of the dictionary.
+     *
+     * @param buffer the buffer to be checked
+     * @param dictionary the indexed dictionary
+     * @param size size of the source file in bytes
+     * @param modified last modified time of the source file
+     * @return true if the buffer is up to date, false otherwise
+     */
+    private static boolean isBuiltFrom(ByteBuffer buffer, PackedDictionary dictionary, long size, long modified) {
+        if (buffer.limit() < HEADER_SIZE || buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION
+                || buffer.getLong(8) != size || buffer.getLong(16) != modified) {
+            return false;
+        }
+
+        long buckets = buffer.getInt(24);
+        long count = buffer.getInt(28);
+
+        if (Integer.bitCount((int) buckets) != 1 || count < 0
+                || HEADER_SIZE + (buckets + 1 + 2 * count) * Integer.BYTES != buffer.limit()) {
+            return false;
+        }
+
+        int hashesStart = HEADER_SIZE + ((int) buckets + 1) * Integer.BYTES;
+        int previous = 0;
+
+        for (int i = HEADER_SIZE; i < hashesStart; i += Integer.BYTES) {
+            int start = buffer.getInt(i);
+
+            if (start < previous || (i == HEADER_SIZE && start != 0)) {
+                return false;
+            }
+
+            previous = start;
+        }
+
+        if (previous != count) {
+            return false;
+        }
+
+        for (int i = hashesStart + (int) count * Integer.BYTES; i < buffer.limit(); i += Integer.BYTES) {
+            int word = buffer.getInt(i);
+
+            if (word < 0 || word >= dictionary.size()) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+}
@@ -0,0 +1,87 @@
+/*
+ * Copyright 2020 <Copyright Vasu Gupta>
+ * Vasu Gupta
+ * Email: vasu99g@gmail.com
+ */
+
+package texteditor;
+
+/**
+ * <b>TextChange</b> represents a change of a document delivered to a {@link ChangeListener}: the characters from
+ * offset to offset + removed (exclusive) were replaced with inserted characters. Like the edits of a batch, the offset
+ * of a change refers to the document after all the previous changes of its batch were applied.
+ */
+public final class TextChange {
+    private final int offset; // index of the first replaced character
+    private final int removed; // number of removed characters
+    private final int inserted; // number of inserted characters
+
+    /**
+     * Constructs a change replacing removed characters with inserted characters at the offset.
+     *
+     * @param offset the index of the first replaced character
+     * @param removed number of removed characters
+     * @param inserted number of inserted characters
+     * @throws IllegalArgumentException if offset, removed or inserted is negative
+     */
+    public TextChange(int offset, int removed, int inserted) {
+        if (offset < 0 || removed < 0 || inserted < 0) {
+            throw new IllegalArgumentException("Offset and lengths cannot be negative");
+        }
+
+        this.offset = offset;
+        this.removed = removed;
+        this.inserted = inserted;
+    }
+
+    /**
+     * Returns the index of the first replaced character.
+     *
+     * @return the offset
+     */
+    public int offset() {
+        return offset;
+    }
+
+    /**
+     * Returns the number of removed characters.
+     *
+     * @return the removed length
+     */
+    public int removed() {
+        return removed;
+    }
+
+    /**
+     * Returns the number of inserted characters.
+     *
+     * @return the inserted length
+     */
+    public int inserted() {
+        return inserted;
+    }
+
+    /**
+     * Merges the change with the next change if the characters replaced by the next one touch or overlap the
+     * characters inserted by this one, like typing, deleting backwards, or deleting what was just typed.
+     *
+     * @param next the change applied right after this one
+     * @return the change with the same result as both changes, null if they do not touch
+     */
+    TextChange merge(TextChange next) {
+        if (next.offset > offset + inserted || next.offset + next.removed < offset) {
+            return null;
+        }
+
+        // the span of the document touched by both changes, after the next one
+        int start = Math.min(offset, next.offset);
+        int end = Math.max(offset + inserted, next.offset + next.removed);
+
+        return new TextChange(start, end - inserted + removed - start, end - start - next.removed + next.inserted);
+    }
+
+    @Override
+    public String toString() {
+        return String.format("[%d, %d) replaced with %d characters", offset, offset + removed, inserted);
+    }
+}
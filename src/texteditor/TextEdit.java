@@ -0,0 +1,103 @@
+/*
+ * Copyright 2020 <Copyright Vasu Gupta>
+ * Vasu Gupta
+ * Email: vasu99g@gmail.com
+ */
+
+package texteditor;
+
+/**
+ * <b>TextEdit</b> represents an edit of a batch, which replaces the characters from start to end (exclusive) with
+ * the given text. The positions of an edit refer to the text after all the previous edits of its batch were applied.
+ */
+public final class TextEdit {
+    private final int start; // index of the first replaced character
+    private final int end; // index after the last replaced character
+    private final String text; // the text replacing the characters
+
+    /**
+     * Constructs an edit replacing the characters from start to end (exclusive) with the text.
+     *
+     * @param start the index of the first replaced character
+     * @param end the index after the last replaced character
+     * @param text the text replacing the characters
+     * @throws IllegalArgumentException if start < 0 or end < start or text is null
+     */
+    private TextEdit(int start, int end, String text) {
+        if (start < 0 || end < start) {
+            throw new IllegalArgumentException("Ending index cannot be smaller than starting index");
+        }
+
+        if (text == null) {
+            throw new IllegalArgumentException("Text cannot be null");
+        }
+
+        this.start = start;
+        this.end = end;
+        this.text = text;
+    }
+
+    /**
+     * Creates an edit inserting the text before the ith character.
+     *
+     * @param i the index of the first inserted character
+     * @param text the text to be inserted
+     * @return the edit
+     * @throws IllegalArgumentException if i < 0 or text is null
+     */
+    public static TextEdit insert(int i, String text) {
+        return new TextEdit(i, i, text);
+    }
+
+    /**
+     * Creates an edit deleting the characters from ith character to jth character (exclusive).
+     *
+     * @param i the index of the first deleted character
+     * @param j the index after the last deleted character
+     * @return the edit
+     * @throws IllegalArgumentException if i < 0 or j < i
+     */
+    public static TextEdit delete(int i, int j) {
+        return new TextEdit(i, j, "");
+    }
+
+    /**
+     * Creates an edit replacing the characters from ith character to jth character (exclusive) with the text.
+     *
+     * @param i the index of the first replaced character
+     * @param j the index after the last replaced character
+     * @param text the text replacing the characters
+     * @return the edit
+     * @throws IllegalArgumentException if i < 0 or j < i or text is null
+     */
+    public static TextEdit replace(int i, int j, String text) {
+        return new TextEdit(i, j, text);
+    }
+
+    /**
+     * Returns the index of the first replaced character.
+     *
+     * @return the starting index
+     */
+    public int start() {
+        return start;
+    }
+
+    /**
+     * Returns the index after the last replaced character.
+     *
+     * @return the ending index
+     */
+    public int end() {
+        return end;
+    }
+
+    /**
+     * Returns the text replacing the characters.
+     *
+     * @return the text
+     */
+    public String text() {
+        return text;
+    }
+}
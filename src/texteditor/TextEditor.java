@@ -6,24 +6,263 @@
 
 package texteditor;
 
-import java.io.BufferedReader;
-import java.io.FileNotFoundException;
-import java.io.FileReader;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
 import java.io.IOException;
-import java.util.HashSet;
-import java.util.Set;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.locks.StampedLock;
 
 /**
  * <b>TextEditor</b> represents a class that can be used to process, manipulate, and analyze text.
+ * <p>
+ * Every cut, copy and paste is recorded in a history so it can be undone and redone. A recorded edit only holds its
+ * position and the cut, copied or pasted text, whose nodes are shared with the document and the clipboard rather than
+ * copied. A batch of edits is recorded as the edits undoing it. The history is kept within a byte budget, forgetting
+ * the oldest edits first.
+ * <p>
+ * The cut and copied texts are also kept in a clipboard history within a character budget, without copying them, and
+ * {@link #paste(int, int)} pastes any of them. A text cut or copied again replaces its earlier clip in the history.
+ * <p>
+ * The editor can be read by other threads while it is being edited. The edits hold a write lock, and
+ * {@link #misspellings()} and a cached {@link #getText()} are read optimistically without locking. Other readers take
+ * a {@link Snapshot}, which shares the nodes of the document copy-on-write, so the snapshot is taken in
+ * O(n / node_size) and then read without blocking the edits.
+ * <p>
+ * Once the document is saved to a file, the editor keeps the edits made since the last save, and the next save only
+ * appends them to the journal of the file in O(edit_size). The file is rewritten as a whole only when the journal
+ * grows larger than the document, so in between it holds the last checkpoint, and only {@link #open(Path)} recovers
+ * the saved document by replaying the journal onto it.
+ * <p>
+ * The editor can be measured by setting its {@link EditorMetrics}, such as {@link EditorStats} which exposes the
+ * measurements through JMX. Without metrics, the operations do not read the clock.
+ * <p>
+ * Anything derived from the document can follow it incrementally through a {@link ChangeListener}, which receives
+ * the offset, removed length and inserted length of every change, coalesced into batches delivered on an executor.
+ * <p>
+ * An editor added to a {@link Workspace} shares the memory budget of the workspace with the other editors. Its
+ * document can then be evicted to a spill file while it is not used, together with its clips and its history, and is
+ * read back by the next operation which needs it. {@link #misspellings()} does not need the document, so it never
+ * reads an evicted document back.
  */
 public final class TextEditor {
-    private UnrolledTextList document; // the document to manipulate
+    private final UnrolledTextList document; // the document to manipulate
     private UnrolledTextList clipboard; // String representation of the copied text
-    private final Set<String> dictionary; // Set of all words in the dictionary
-    // On windows, the dictionary can often be found at:
-    //  C:/Users/{username}/AppData/Roaming/Microsoft/Spelling/en-US/default.dic
-    private static final String FILE_PATH = "/usr/share/dict/words";
-    private static final int NODE_SIZE = 1500; // number of characters per node
+    private final ClipboardRing clipboards = new ClipboardRing(CLIPBOARD_BUDGET); // the clipboard and earlier clips
+    private final Dictionary dictionary; // dictionary of words shared by all the editors
+    private int misspelledWords; // number of misspelled words, including the empty words at the end of the document
+    private int trailingSeparators; // number of spaces and line breaks at the end of the document
+    private int misspellings; // number of misspelled words, as returned by misspellings()
+    private long version; // number of times the document was modified
+    private final StampedLock lock = new StampedLock(); // write lock of the edits, read lock of the snapshots
+    private final Deque<Edit> undoHistory = new ArrayDeque<>(); // edits which can be undone, the latest first
+    private final Deque<Edit> redoHistory = new ArrayDeque<>(); // undone edits which can be redone, the latest first
+    private long historyBytes; // estimated number of bytes held by the history
+    private long historyBudget = HISTORY_BUDGET; // max number of bytes held by the history
+    private final Object saveLock = new Object(); // held by the saves, so they write the files one at a time
+    private Path savedPath; // the file the document was last saved to, null if it was never saved
+    private List<TextEdit> unsaved = new ArrayList<>(); // edits since the last save, in order
+    private long unsavedChars; // number of characters inserted by the unsaved edits
+    private boolean checkpointNeeded = true; // true if the next save has to rewrite the whole file
+    private long journalBytes; // number of bytes in the journal of the saved file
+    private volatile EditorMetrics metrics; // receiver of the measurements, null if the editor is not measured
+    private Workspace workspace; // the workspace sharing its memory budget with the editor, null if none
+    private Path spill; // the file holding the evicted document, null if the document is in memory
+    private Path historySpill; // the file holding the clips, history and unsaved edits of the evicted document
+    private Fragmentation spilledFragmentation; // fragmentation of the evicted document when it was evicted
+    private final List<Subscription> subscriptions = new CopyOnWriteArrayList<>(); // the change listeners
+    private static final int NODE_SIZE = 1500; // default number of characters per node
+    private static final long HISTORY_BUDGET = 64L << 20; // default max number of bytes held by the history
+    private static final long CLIPBOARD_BUDGET = 16L << 20; // default max number of characters in the clips
+    private static final long EDIT_OVERHEAD = 64; // estimated number of bytes of an edit besides its text
+    private static final long JOURNAL_BUDGET = 1 << 20; // number of journal bytes which never trigger a checkpoint
+
+    /**
+     * Operations which are recorded in the history.
+     */
+    private enum Operation {
+        CUT, COPY, PASTE, BATCH
+    }
+
+    /**
+     * <b>Edit</b> represents an operation recorded in the history, with the text needed to undo and redo it.
+     */
+    private static final class Edit {
+        private final Operation operation; // the recorded operation
+        private final int position; // index of the first cut, copied or pasted character
+        private UnrolledTextList text; // the cut, copied or pasted text
+        private List<TextEdit> batch; // the sorted replacements undoing a batch, or redoing it once it is undone
+        private final UnrolledTextList previousClipboard; // the clipboard before the operation
+        private final long bytes; // estimated number of bytes held by the edit
+
+        /**
+         * Constructs an edit. Only the text is counted towards the size of the edit, since the previous clipboard
+         * is the text of an earlier edit.
+         *
+         * @param operation the recorded operation
+         * @param position index of the first cut, copied or pasted character
+         * @param text the cut, copied or pasted text
+         * @param previousClipboard the clipboard before the operation
+         */
+        private Edit(Operation operation, int position, UnrolledTextList text, UnrolledTextList previousClipboard) {
+            this.operation = operation;
+            this.position = position;
+            this.text = text;
+            this.previousClipboard = previousClipboard;
+            bytes = EDIT_OVERHEAD + (long) text.length() * Character.BYTES;
+        }
+
+        /**
+         * Constructs an edit recording a batch of edits. The texts of both the batch and the edits undoing it are
+         * counted towards the size of the edit.
+         *
+         * @param batch the sorted replacements of the edited document undoing the batch
+         * @param replacements the replacements applied by the batch
+         * @param clipboard the clipboard, which is not modified by the batch
+         */
+        private Edit(List<TextEdit> batch, List<TextEdit> replacements, UnrolledTextList clipboard) {
+            operation = Operation.BATCH;
+            position = batch.get(0).start();
+            this.batch = batch;
+            previousClipboard = clipboard;
+            long bytes = EDIT_OVERHEAD;
+
+            for (int k = 0; k < batch.size(); k++) {
+                bytes += EDIT_OVERHEAD + (long) (batch.get(k).text().length()
+                        + replacements.get(k).text().length()) * Character.BYTES;
+            }
+
+            this.bytes = bytes;
+        }
+
+        /**
+         * Constructs an edit read back from a spill file, with the size it was counted with.
+         *
+         * @param operation the recorded operation
+         * @param position index of the first cut, copied or pasted character
+         * @param text the cut, copied or pasted text, null for a batch
+         * @param batch the sorted replacements undoing or redoing a batch, null for other operations
+         * @param previousClipboard the clipboard before the operation
+         * @param bytes estimated number of bytes held by the edit
+         */
+        private Edit(Operation operation, int position, UnrolledTextList text, List<TextEdit> batch,
+                     UnrolledTextList previousClipboard, long bytes) {
+            this.operation = operation;
+            this.position = position;
+            this.text = text;
+            this.batch = batch;
+            this.previousClipboard = previousClipboard;
+            this.bytes = bytes;
+        }
+    }
+
+    /**
+     * <b>Subscription</b> represents a change listener with the changes waiting to be delivered to it.
+     */
+    private static final class Subscription {
+        private final ChangeListener listener; // the listener receiving the changes
+        private final Executor executor; // the executor delivering the changes
+        private List<TextChange> pending = new ArrayList<>(); // changes which were not delivered yet, in order
+        private boolean scheduled; // true if a delivery is scheduled or running
+        private volatile boolean removed; // true once the listener is removed
+
+        private Subscription(ChangeListener listener, Executor executor) {
+            this.listener = listener;
+            this.executor = executor;
+        }
+
+        /**
+         * Adds the change to the pending changes, merging it with the previous one if they touch.
+         *
+         * @param change the change applied to the document
+         */
+        private synchronized void add(TextChange change) {
+            TextChange merged = pending.isEmpty() ? null : pending.get(pending.size() - 1).merge(change);
+
+            if (merged != null) {
+                pending.set(pending.size() - 1, merged);
+            } else {
+                pending.add(change);
+            }
+        }
+
+        /**
+         * Schedules the delivery of the pending changes, unless there are none or a delivery is already scheduled.
+         *
+         * @return false if the executor rejected the delivery, true otherwise
+         */
+        private boolean schedule() {
+            synchronized (this) {
+                if (scheduled || pending.isEmpty()) {
+                    return true;
+                }
+
+                scheduled = true;
+            }
+
+            try {
+                executor.execute(this::deliver);
+            } catch (RejectedExecutionException exception) {
+                return false;
+            }
+
+            return true;
+        }
+
+        /**
+         * Delivers the pending changes in batches till there are none left, including the changes made while the
+         * listener runs, so the batches are delivered one at a time and in order.
+         */
+        private void deliver() {
+            try {
+                while (!removed) {
+                    List<TextChange> changes;
+
+                    synchronized (this) {
+                        if (pending.isEmpty()) {
+                            scheduled = false;
+                            return;
+                        }
+
+                        changes = pending;
+                        pending = new ArrayList<>();
+                    }
+
+                    try {
+                        listener.changed(Collections.unmodifiableList(changes));
+                    } catch (RuntimeException exception) {
+                        // a failing listener neither fails the edit which delivered the changes nor the next batches
+                        Thread thread = Thread.currentThread();
+                        thread.getUncaughtExceptionHandler().uncaughtException(thread, exception);
+                    }
+                }
+            } catch (Error error) {
+                // the next edit schedules the changes made since the failed batch
+                synchronized (this) {
+                    scheduled = false;
+                }
+
+                throw error;
+            }
+        }
+    }
 
     /**
      * Constructs an instance of a TextEditor object initializing it with the provided document, and
@@ -33,34 +272,107 @@ public final class TextEditor {
      * @throws IllegalArgumentException if document is null
      */
     public TextEditor(String document) {
-        if (document == null) {
-            throw new IllegalArgumentException("Document cannot be null");
+        this(document, NODE_SIZE);
+    }
+
+    /**
+     * Constructs an instance of a TextEditor object initializing it with the provided document stored in nodes of
+     * the given size, and initializes the dictionary of words.
+     *
+     * @param document the text file that needs to be loaded into the editor
+     * @param nodeSize number of characters per node
+     * @throws IllegalArgumentException if document is null or nodeSize is not positive
+     */
+    public TextEditor(String document, int nodeSize) {
+        this(newDocument(document, nodeSize));
+    }
+
+    /**
+     * Constructs an instance of a TextEditor object initializing it with the UTF-8 encoded file, and
+     * initializes the dictionary of words. The file is streamed into the editor, so it does not need
+     * to fit into memory as a String.
+     *
+     * @param path the path of the text file that needs to be loaded into the editor
+     * @throws IllegalArgumentException if path is null
+     * @throws IOException if the file cannot be read
+     */
+    public TextEditor(Path path) throws IOException {
+        this(path, NODE_SIZE);
+    }
+
+    /**
+     * Constructs an instance of a TextEditor object initializing it with the UTF-8 encoded file stored in nodes
+     * of the given size, and initializes the dictionary of words.
+     *
+     * @param path the path of the text file that needs to be loaded into the editor
+     * @param nodeSize number of characters per node
+     * @throws IllegalArgumentException if path is null or nodeSize is not positive
+     * @throws IOException if the file cannot be read
+     */
+    public TextEditor(Path path, int nodeSize) throws IOException {
+        this(UnrolledTextList.load(path, nodeSize));
+    }
+
+    /**
+     * Opens the document saved with {@link #save(Path)}, recovering the saves which were only written to its journal.
+     * A journal left by a crash is replayed up to the last complete save. Files which were not saved by an editor are
+     * simply loaded.
+     *
+     * @param path the path of the document file
+     * @return the editor containing the document
+     * @throws IllegalArgumentException if path is null
+     * @throws IOException if the document or its journal cannot be read
+     */
+    public static TextEditor open(Path path) throws IOException {
+        UnrolledTextList document = UnrolledTextList.load(path, NODE_SIZE);
+        long journalBytes = Journal.replay(path, document);
+        TextEditor editor = new TextEditor(document);
+
+        // the following saves append to the journal
+        if (journalBytes >= 0) {
+            editor.savedPath = path;
+            editor.journalBytes = journalBytes;
+            editor.checkpointNeeded = false;
         }
 
-        this.document = new UnrolledTextList(NODE_SIZE);
-        this.document.insertText(document);
-        dictionary = new HashSet<>();
+        return editor;
+    }
 
-        populateDictionary();
+    /**
+     * Constructs an instance of a TextEditor object with the given document, and initializes the dictionary
+     * of words.
+     *
+     * @param document the list containing the text of the document
+     */
+    private TextEditor(UnrolledTextList document) {
+        this.document = document;
+        dictionary = Dictionary.shared();
+        misspelledWords = misspelledWords(0, this.document.length());
+        trailingSeparators = MisspellingScan.trailingSeparators(document);
+        misspellings = countMisspellings();
     }
 
     /**
-     * Populates the dictionary of words.
+     * Creates a new document containing the given text.
+     *
+     * @param document the text of the document
+     * @param nodeSize number of characters per node
+     * @return the list containing the text
+     * @throws IllegalArgumentException if document is null or nodeSize is not positive
      */
-    private void populateDictionary() {
-        try (BufferedReader reader = new BufferedReader(new FileReader(FILE_PATH))) {
-            String word;
+    private static UnrolledTextList newDocument(String document, int nodeSize) {
+        if (document == null) {
+            throw new IllegalArgumentException("Document cannot be null");
+        }
 
-            while ((word = reader.readLine()) != null) {
-                dictionary.add(word);
-            }
-        } catch (FileNotFoundException exception) {
-            System.out.println(FILE_PATH + " does not exist");
-        } catch (IOException exception) {
-            exception.printStackTrace();
-        } catch (Exception exception) {
-            System.out.println(exception.getMessage());
+        if (nodeSize <= 0) {
+            throw new IllegalArgumentException("Node capacity must be positive");
         }
+
+        UnrolledTextList list = new UnrolledTextList(nodeSize);
+        list.insertText(document);
+
+        return list;
     }
 
     /**
@@ -73,7 +385,22 @@ public final class TextEditor {
      * @throws IllegalArgumentException if j < i or i < 0 or i > document length (in characters)
      */
     public void cut(int i, int j) {
-        clipboard = document.cutText(i, j);
+        EditorMetrics metrics = this.metrics;
+        long start = metrics == null ? 0 : System.nanoTime();
+        long stamp = residentWriteLock();
+        int cut;
+
+        try {
+            UnrolledTextList previousClipboard = clipboard;
+            setClipboard(remove(i, j));
+            cut = clipboard.length();
+            record(new Edit(Operation.CUT, i, clipboard, previousClipboard));
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+
+        dispatch();
+        measured(metrics, EditorMetrics.Operation.CUT, start, cut);
     }
 
     /**
@@ -86,7 +413,21 @@ public final class TextEditor {
      * @throws IllegalArgumentException if j < i or i < 0 or i > document length (in characters)
      */
     public void copy(int i, int j) {
-        clipboard = document.copyText(i, j);
+        EditorMetrics metrics = this.metrics;
+        long start = metrics == null ? 0 : System.nanoTime();
+        long stamp = residentWriteLock();
+        int copied;
+
+        try {
+            UnrolledTextList previousClipboard = clipboard;
+            setClipboard(document.copyText(i, j));
+            copied = clipboard.length();
+            record(new Edit(Operation.COPY, i, clipboard, previousClipboard));
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+
+        measured(metrics, EditorMetrics.Operation.COPY, start, copied);
     }
 
     /**
@@ -96,34 +437,1398 @@ public final class TextEditor {
      * @throws IllegalArgumentException if i > document length or clipboard is null
      */
     public void paste(int i) {
-        document.pasteText(i, clipboard);
+        pasteClip(i, -1);
     }
 
     /**
-     * Returns the string representation of the entire document.
+     * Pastes an earlier clip from the clipboard history into the document starting from the ith character, and
+     * makes it the clipboard. The history keeps the lists returned by the cuts and copies, so the clip is spliced
+     * into the document in O(clip_size / node_size) like the clipboard, without copying its text.
      *
-     * @return String representation of the text file
+     * @param i the index of the starting character in the document
+     * @param slot the index of the clip in the history, 0 for the latest one
+     * @throws IllegalArgumentException if i > document length or slot < 0 or slot >= number of clips
      */
-    public String getText() {
-        return document.toString();
+    public void paste(int i, int slot) {
+        if (slot < 0) {
+            throw new IllegalArgumentException("Clipboard slot " + slot + " is out of bounds");
+        }
+
+        pasteClip(i, slot);
     }
 
     /**
-     * Counts and returns the number of misspelled words in the entire document.
+     * Pastes a clip into the document starting from the ith character, and makes it the clipboard.
      *
-     * @return number of misspelled words in the text file
+     * @param i the index of the starting character in the document
+     * @param slot the index of the clip in the history, -1 for the clipboard
+     * @throws IllegalArgumentException if i > document length or the clip is null or slot >= number of clips
      */
-    public int misspellings() {
-        int misspelledWords = 0;
+    private void pasteClip(int i, int slot) {
+        EditorMetrics metrics = this.metrics;
+        long start = metrics == null ? 0 : System.nanoTime();
+        long stamp = residentWriteLock();
+        int pasted;
+
+        try {
+            UnrolledTextList previousClipboard = clipboard;
+            UnrolledTextList clip = slot == -1 ? clipboard : clipboards.get(slot);
+            int insertionPoint = document.insertionPoint(i);
+            int misspelledSplit = misspelledWords(insertionPoint, insertionPoint);
+            document.pasteText(i, clip);
+            edited(misspelledWords(insertionPoint, insertionPoint + clip.length()) - misspelledSplit);
+
+            if (journaling()) {
+                journal(TextEdit.insert(insertionPoint, clip.toString()));
+            }
+            changed(insertionPoint, 0, clip.length());
+            setClipboard(clip);
+            record(new Edit(Operation.PASTE, insertionPoint, clip, previousClipboard));
+            pasted = clip.length();
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+
+        dispatch();
+        measured(metrics, EditorMetrics.Operation.PASTE, start, pasted);
+    }
+
+    /**
+     * Returns the number of clips in the clipboard history, the clipboard included.
+     *
+     * @return number of clips which can be pasted
+     */
+    public int clipboardSlots() {
+        long stamp = residentReadLock();
+
+        try {
+            return clipboards.size();
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * Applies the batch of edits with the same result as applying them one after another, in a single pass over the
+     * document. The positions of every edit refer to the document after the previous edits of the batch, so an edit
+     * can be built from the result of the previous ones. The batch is undone and redone as a single edit, and does
+     * not modify the clipboard.
+     *
+     * @param edits the edits to be applied, in order
+     * @throws IllegalArgumentException if edits is null or contains null, or an edit is out of bounds
+     */
+    public void applyBatch(List<TextEdit> edits) {
+        long stamp = residentWriteLock();
+
+        try {
+            List<TextEdit> replacements = document.normalize(edits);
+
+            if (!replacements.isEmpty()) {
+                record(new Edit(replace(replacements), replacements, clipboard));
+            }
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+
+        dispatch();
+    }
+
+    /**
+     * Replaces every occurrence of the target with the replacement, from left to right, without building the String
+     * representation of the document. The replacements are applied as a single batch, which is undone and redone as a
+     * single edit.
+     *
+     * @param target the text to be replaced
+     * @param replacement the text replacing every occurrence
+     * @return number of replaced occurrences
+     * @throws IllegalArgumentException if target is null or empty or replacement is null
+     */
+    public int replaceAll(String target, String replacement) {
+        long stamp = residentWriteLock();
+        int replaced;
+
+        try {
+            List<TextEdit> replacements = document.occurrences(target, replacement);
+
+            if (!replacements.isEmpty()) {
+                record(new Edit(replace(replacements), replacements, clipboard));
+            }
+
+            replaced = replacements.size();
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+
+        dispatch();
+
+        return replaced;
+    }
+
+    /**
+     * Returns the corrections of the word containing the ith character, or ending right before it, if the word is
+     * misspelled. The corrections are the words of the dictionary within two edits of the word, the closest first,
+     * found with a symmetric delete index which is built once and cached next to the compiled dictionary.
+     *
+     * @param i the index of a character of the word
+     * @param limit max number of corrections
+     * @return the corrections, empty if the word is spelled correctly or is the empty word between two separators
+     * @throws IllegalArgumentException if i < 0 or i > document length or limit is negative
+     */
+    public List<String> suggest(int i, int limit) {
+        if (limit < 0) {
+            throw new IllegalArgumentException("Limit cannot be negative");
+        }
+
+        String word;
+        long stamp = residentReadLock();
+
+        // only the word is read under the read lock, the lookup in the dictionary runs without holding the lock
+        try {
+            if (i < 0 || i > document.length()) {
+                throw new IllegalArgumentException("Index is out of bounds");
+            }
+
+            word = document.substring(MisspellingScan.wordStart(document, i), MisspellingScan.wordEnd(document, i));
+        } finally {
+            lock.unlockRead(stamp);
+        }
+
+        return word.isEmpty() || dictionary.contains(word) ? List.of() : dictionary.suggest(word, limit);
+    }
+
+    /**
+     * Returns the index of the first occurrence of the pattern at or after the starting index. The search reads a
+     * snapshot of the document, which is taken under the read lock in O(n / node_size), so the edits and the other
+     * readers are not blocked while the text is scanned.
+     *
+     * @param pattern the pattern to search for
+     * @param from the index to start searching from
+     * @return index of the first occurrence of pattern at or after from, -1 if there is no such occurrence
+     * @throws IllegalArgumentException if pattern is null or empty
+     */
+    public int indexOf(String pattern, int from) {
+        return sharedDocument().indexOf(pattern, from);
+    }
+
+    /**
+     * Returns every occurrence of the patterns in the document, including the overlapping ones, ordered by their
+     * starting index and then by their ending index. The document is read once, however many patterns are searched,
+     * from a snapshot like {@link #indexOf(String, int)}, so the edits are not blocked while the text is scanned.
+     *
+     * @param patterns the patterns to search for
+     * @return the matches of the patterns
+     * @throws IllegalArgumentException if patterns is null, or a pattern is null or empty
+     */
+    public List<Match> findAll(List<String> patterns) {
+        return sharedDocument().findAll(patterns);
+    }
+
+    /**
+     * Undoes the latest cut, copy, paste or batch which has not been undone, restoring both the document and the
+     * clipboard.
+     *
+     * @return true if an edit was undone, false if the history is empty
+     */
+    public boolean undo() {
+        long stamp = residentWriteLock();
+
+        try {
+            Edit edit = undoHistory.peek();
+
+            if (edit == null) {
+                return false;
+            }
+
+            // an empty cut or paste did not modify the document; the edit only leaves the history once it is undone
+            if (edit.operation == Operation.CUT && edit.text.length() > 0) {
+                insert(edit.position, edit.text);
+            } else if (edit.operation == Operation.PASTE && edit.text.length() > 0) {
+                remove(edit.position, edit.position + edit.text.length());
+            } else if (edit.operation == Operation.BATCH) {
+                edit.batch = replace(edit.batch);
+            }
+
+            undoHistory.poll();
+            setClipboard(edit.previousClipboard);
+            redoHistory.push(edit);
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+
+        dispatch();
+
+        return true;
+    }
+
+    /**
+     * Redoes the latest undone edit. Any cut, copy or paste after an undo discards the edits which can be redone.
+     *
+     * @return true if an edit was redone, false if there is nothing to redo
+     */
+    public boolean redo() {
+        long stamp = residentWriteLock();
+
+        try {
+            Edit edit = redoHistory.peek();
+
+            if (edit == null) {
+                return false;
+            }
+
+            if (edit.operation == Operation.CUT && edit.text.length() > 0) {
+                edit.text = remove(edit.position, edit.position + edit.text.length());
+            } else if (edit.operation == Operation.PASTE && edit.text.length() > 0) {
+                insert(edit.position, edit.text);
+            } else if (edit.operation == Operation.BATCH) {
+                edit.batch = replace(edit.batch);
+            }
+
+            redoHistory.poll();
+            setClipboard(edit.operation == Operation.BATCH ? edit.previousClipboard : edit.text);
+            undoHistory.push(edit);
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+
+        dispatch();
+
+        return true;
+    }
+
+    /**
+     * Sets the max number of characters held by the clipboard history, forgetting the oldest clips which do not fit.
+     * The clipboard is kept even if it is longer than the budget. Clips with the same text are only kept once.
+     *
+     * @param chars max number of characters held by the clipboard history
+     * @throws IllegalArgumentException if chars is negative
+     */
+    public void setClipboardBudget(long chars) {
+        long stamp = lock.writeLock();
+
+        try {
+            if (chars < 0) {
+                throw new IllegalArgumentException("Clipboard budget cannot be negative");
+            }
+
+            clipboards.setBudget(chars);
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Sets the max number of bytes held by the history, forgetting the oldest edits which do not fit.
+     *
+     * @param bytes max number of bytes held by the history, 0 to keep no history
+     * @throws IllegalArgumentException if bytes is negative
+     */
+    public void setHistoryBudget(long bytes) {
+        long stamp = lock.writeLock();
+
+        try {
+            if (bytes < 0) {
+                throw new IllegalArgumentException("History budget cannot be negative");
+            }
+
+            historyBudget = bytes;
+            trimHistory();
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Sets the receiver of the measurements of the editor: the latencies of cut, copy, paste and misspellings, the
+     * bytes moved to and from the clipboard, and the nodes visited by every lookup in the document.
+     *
+     * @param metrics the receiver of the measurements, null to stop measuring
+     */
+    public void setMetrics(EditorMetrics metrics) {
+        long stamp = lock.writeLock();
+
+        try {
+            this.metrics = metrics;
+            document.setMetrics(metrics);
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Adds a listener receiving every change of the document made after this call, as the offset, removed length and
+     * inserted length of the change. The changes are delivered in batches on the executor, one batch at a time, and
+     * the changes made while a batch waits for the executor join it, so fast edits reach the listener in few calls.
+     * Runnable::run delivers the changes on the editing thread, right after every edit. A listener whose executor
+     * rejects a delivery, for example because it was shut down, is removed. An exception thrown by the listener is
+     * passed to the uncaught exception handler of the delivering thread, and the listener keeps receiving changes.
+     *
+     * @param listener the listener receiving the changes
+     * @param executor the executor the changes are delivered on
+     * @throws IllegalArgumentException if listener or executor is null
+     */
+    public void addChangeListener(ChangeListener listener, Executor executor) {
+        if (listener == null || executor == null) {
+            throw new IllegalArgumentException("Listener and executor cannot be null");
+        }
+
+        long stamp = lock.writeLock();
+
+        try {
+            subscriptions.add(new Subscription(listener, executor));
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Removes the listener, which receives no more changes, including those waiting to be delivered. If the listener
+     * was added more than once, only the first one is removed.
+     *
+     * @param listener the listener to be removed
+     * @return true if the listener was removed, false if it was not added
+     */
+    public boolean removeChangeListener(ChangeListener listener) {
+        long stamp = lock.writeLock();
+
+        try {
+            for (Subscription subscription : subscriptions) {
+                if (subscription.listener == listener) {
+                    subscription.removed = true;
+                    subscriptions.remove(subscription);
+
+                    return true;
+                }
+            }
+
+            return false;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Saves the document to the file encoded in UTF-8. The first save to a file writes the whole document, with
+     * gathering writes of the node buffers, and the following saves only append the edits since the previous save to
+     * the journal of the file, {@code path.journal}, so small edits are saved in O(edit_size). The whole file is
+     * rewritten again once the journal is larger than the document.
+     * <p>
+     * Between two checkpoints the file at {@code path} is left as it was at the last checkpoint, so it is stale: only
+     * {@link #open(Path)}, which replays the journal onto it, reads the saved document back, and other programs
+     * reading the file directly do not see the later saves. The document can be edited by other threads while it is
+     * saved.
+     *
+     * @param path the path of the document file
+     * @throws IllegalArgumentException if path is null
+     * @throws IOException if the file or its journal cannot be written
+     */
+    public void save(Path path) throws IOException {
+        if (path == null) {
+            throw new IllegalArgumentException("Path cannot be null");
+        }
 
-        String[] words = document.toString().split(" ");
+        synchronized (saveLock) {
+            UnrolledTextList checkpoint = null;
+            List<TextEdit> edits;
+            long stamp = residentWriteLock();
 
-        for (String word : words) {
-            if (!dictionary.contains(word)) {
-                misspelledWords++;
+            try {
+                if (checkpointNeeded || !path.equals(savedPath)
+                        || journalBytes > Math.max(JOURNAL_BUDGET, (long) document.length() * Character.BYTES)) {
+                    checkpoint = document.snapshot();
+                }
+
+                edits = unsaved;
+                unsaved = new ArrayList<>();
+                unsavedChars = 0;
+                savedPath = path;
+                checkpointNeeded = false;
+            } finally {
+                lock.unlockWrite(stamp);
+            }
+
+            try {
+                if (checkpoint != null) {
+                    journalBytes = Journal.checkpoint(path, checkpoint);
+                    return;
+                }
+
+                long appended = edits.isEmpty() ? 0 : Journal.append(path, edits);
+
+                if (appended >= 0) {
+                    journalBytes += appended;
+                    return;
+                }
+            } catch (IOException | RuntimeException exception) {
+                // the edits were not saved, so the next save rewrites the whole file
+                needCheckpoint();
+                throw exception;
+            }
+
+            // the file was modified by someone else, or the journal is full, so the file is rewritten as a whole
+            needCheckpoint();
+            save(path);
+        }
+    }
+
+    /**
+     * Returns the string representation of the entire document. The String is cached until the document is modified.
+     * It can be called while another thread edits the document: a cached String is read without locking, otherwise
+     * the String is built from a snapshot.
+     *
+     * @return String representation of the text file
+     */
+    public String getText() {
+        long stamp = lock.tryOptimisticRead();
+        String text = document.cachedText();
+
+        if (text != null && lock.validate(stamp)) {
+            return text;
+        }
+
+        Snapshot snapshot = snapshot();
+        text = snapshot.getText();
+        stamp = lock.writeLock();
+
+        try {
+            // caching the String, unless the document was modified or evicted while it was built
+            if (version == snapshot.version() && spill == null) {
+                document.cacheText(text);
             }
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+
+        return text;
+    }
+
+    /**
+     * Returns a read only view of the entire document, which reads the characters without copying the document.
+     * The view reads the live document, so it must not be used while another thread edits the document, nor once the
+     * document may have been evicted by its workspace.
+     *
+     * @return CharSequence representing the text file
+     */
+    public CharSequence getTextView() {
+        long stamp = residentWriteLock();
+
+        try {
+            return document.asCharSequence();
+        } finally {
+            lock.unlockWrite(stamp);
         }
+    }
+
+    /**
+     * Returns the number of lines in the document, which are separated by '\n'.
+     *
+     * @return number of lines
+     */
+    public int lineCount() {
+        long stamp = residentReadLock();
 
-        return misspelledWords;
+        try {
+            return document.lineCount();
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * Returns the index of the first character of the line in O(log(n / node_size) + node_size).
+     *
+     * @param line the index of the line, starting from 0
+     * @return index of the first character of the line
+     * @throws IllegalArgumentException if line < 0 or line >= number of lines
+     */
+    public int lineToOffset(int line) {
+        long stamp = residentReadLock();
+
+        try {
+            return document.lineToOffset(line);
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * Returns the index of the line containing the ith character in O(log(n / node_size) + node_size).
+     *
+     * @param i the index of the character, at most the length of the document
+     * @return index of the line, starting from 0
+     * @throws IllegalArgumentException if i < 0 or i > document length
+     */
+    public int offsetToLine(int i) {
+        long stamp = residentReadLock();
+
+        try {
+            return document.offsetToLine(i);
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * Returns the text of the line, without its line break. The line is read under the read lock, like the other
+     * line queries, so it does not block the other readers.
+     *
+     * @param line the index of the line, starting from 0
+     * @return String containing the text of the line
+     * @throws IllegalArgumentException if line < 0 or line >= number of lines
+     */
+    public String getLine(int line) {
+        long stamp = residentReadLock();
+
+        try {
+            return document.getLine(line);
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * Returns a consistent read only version of the document, which can be read by any thread while the document is
+     * being edited. The snapshot shares the text of the nodes with the document, so taking it only costs
+     * O(n / node_size), and the document copies a node before modifying it.
+     *
+     * @return the snapshot of the current version of the document
+     */
+    public Snapshot snapshot() {
+        long stamp = residentReadLock();
+
+        try {
+            return new Snapshot(document.snapshot(), version, misspellings);
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * Returns the edit turning the snapshot into the current document, so a snapshot taken when the document is saved
+     * tells whether and where it was changed since. The document is compared with the snapshot through the hashes of
+     * their nodes, and the nodes shared with the snapshot are not read, so the comparison is O(changed region).
+     *
+     * @param snapshot a snapshot of the document
+     * @return the edit replacing the changed region, null if the document contains the same text as the snapshot
+     * @throws IllegalArgumentException if snapshot is null
+     */
+    public TextEdit changesSince(Snapshot snapshot) {
+        if (snapshot == null) {
+            throw new IllegalArgumentException("Snapshot cannot be null");
+        }
+
+        long stamp = residentWriteLock();
+
+        try {
+            return snapshot.diff(document);
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Writes the entire document to the writer without building its String representation. The document is
+     * written from a snapshot, so it can be edited by another thread in the meantime.
+     *
+     * @param writer the writer to write the document to
+     * @throws IllegalArgumentException if writer is null
+     * @throws IOException if the writer fails
+     */
+    public void writeTo(Writer writer) throws IOException {
+        snapshot().writeTo(writer);
+    }
+
+    /**
+     * Writes the entire document to the channel encoded in UTF-8 without building its String representation. The
+     * document is written from a snapshot, so it can be edited by another thread in the meantime.
+     *
+     * @param channel the channel to write the document to
+     * @return number of bytes written
+     * @throws IllegalArgumentException if channel is null
+     * @throws IOException if the channel fails
+     */
+    public long transferTo(WritableByteChannel channel) throws IOException {
+        return snapshot().transferTo(channel);
+    }
+
+    /**
+     * Compacts the nodes of the entire document, so every node is at least half full.
+     */
+    public void compact() {
+        long stamp = lock.writeLock();
+
+        try {
+            document.compact();
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Turns the automatic compaction of the nodes around every cut and paste on or off. It is on by default.
+     *
+     * @param autoCompact true if the nodes around every edit need to be compacted
+     */
+    public void setAutoCompact(boolean autoCompact) {
+        long stamp = lock.writeLock();
+
+        try {
+            document.setAutoCompact(autoCompact);
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Returns the statistics of how the document is spread over the nodes.
+     *
+     * @return the fragmentation statistics of the document
+     */
+    public Fragmentation fragmentation() {
+        long stamp = residentReadLock();
+
+        try {
+            return document.fragmentation();
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * Returns the fragmentation of the document without reading an evicted document back or marking it as used, so
+     * polling the statistics does not page documents in. An evicted document reports its fragmentation when it was
+     * evicted.
+     *
+     * @return the fragmentation of the document, or of the evicted document when it was evicted
+     */
+    Fragmentation peekFragmentation() {
+        long stamp = lock.readLock();
+
+        try {
+            return spill != null ? spilledFragmentation : document.fragmentation();
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * Counts and returns the number of misspelled words in the entire document. It can be called while another thread
+     * edits the document, without locking.
+     *
+     * @return number of misspelled words in the text file
+     */
+    public int misspellings() {
+        EditorMetrics metrics = this.metrics;
+
+        if (metrics == null) {
+            return readMisspellings();
+        }
+
+        long start = System.nanoTime();
+        int misspelled = readMisspellings();
+        metrics.latency(EditorMetrics.Operation.MISSPELLINGS, System.nanoTime() - start);
+
+        return misspelled;
+    }
+
+    /**
+     * Reads the number of misspelled words, optimistically if no edit is in progress.
+     *
+     * @return number of misspelled words in the text file
+     */
+    private int readMisspellings() {
+        long stamp = lock.tryOptimisticRead();
+        int misspelled = misspellings;
+
+        if (lock.validate(stamp)) {
+            return misspelled;
+        }
+
+        stamp = lock.readLock();
+
+        try {
+            return misspellings;
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * Counts the number of misspelled words in the entire document from the number of misspelled words and trailing
+     * separators, with the rules of {@link MisspellingScan}.
+     *
+     * @return number of misspelled words in the text file
+     */
+    private int countMisspellings() {
+        return MisspellingScan.misspellings(misspelledWords, trailingSeparators, document.length(), dictionary);
+    }
+
+    /**
+     * Cuts the text from ith character to jth character in the document (exclusive), and updates the misspelled
+     * words.
+     *
+     * @param i the index of the starting character that needs to be cut
+     * @param j the index of the ending character that needs to be cut
+     * @return the cut text
+     * @throws IllegalArgumentException if j < i or i < 0 or i > document length (in characters)
+     */
+    private UnrolledTextList remove(int i, int j) {
+        int misspelledCut = misspelledWords(i, Math.min(j, document.length()));
+        UnrolledTextList removed = document.cutText(i, j);
+        edited(misspelledWords(i, i) - misspelledCut);
+
+        if (journaling()) {
+            journal(TextEdit.delete(i, i + removed.length()));
+        }
+
+        changed(i, removed.length(), 0);
+
+        return removed;
+    }
+
+    /**
+     * Inserts the text into the document so that it starts at the given index, and updates the misspelled words.
+     *
+     * @param index the index of the first inserted character
+     * @param text the text to be inserted
+     */
+    private void insert(int index, UnrolledTextList text) {
+        int misspelledSplit = misspelledWords(index, index);
+        document.insertAt(index, text);
+        edited(misspelledWords(index, index + text.length()) - misspelledSplit);
+
+        if (journaling()) {
+            journal(TextEdit.insert(index, text.toString()));
+        }
+
+        changed(index, 0, text.length());
+    }
+
+    /**
+     * Applies the sorted replacements of the document in a single pass, and updates the misspelled words.
+     *
+     * @param replacements the replacements returned by {@link UnrolledTextList#normalize(List)}, or by an earlier
+     *                     replace undoing them
+     * @return the sorted replacements of the edited document undoing the replacements
+     */
+    private List<TextEdit> replace(List<TextEdit> replacements) {
+        // replacements separated by a space or a line break do not touch the same words, so the misspelled words are
+        // counted around every group of replacements instead of over the whole span of the batch
+        List<int[]> groups = new ArrayList<>(); // starting index, ending index and length change of every group
+        int[] group = null;
+
+        for (TextEdit replacement : replacements) {
+            int lengthChange = replacement.text().length() - (replacement.end() - replacement.start());
+            int wordEnd = group == null ? 0 : MisspellingScan.wordEnd(document, group[1]);
+
+            if (group != null && wordEnd >= replacement.start()) {
+                group[1] = replacement.end();
+                group[2] += lengthChange;
+            } else {
+                group = new int[]{replacement.start(), replacement.end(), lengthChange};
+                groups.add(group);
+            }
+        }
+
+        int misspelledReplaced = 0;
+
+        for (int[] replaced : groups) {
+            misspelledReplaced += misspelledWords(replaced[0], replaced[1]);
+        }
+
+        List<TextEdit> undo = document.replace(replacements, true);
+        int misspelledInserted = 0;
+        int shift = 0; // change in the length of the document before the group
+
+        for (int[] inserted : groups) {
+            misspelledInserted += misspelledWords(inserted[0] + shift, inserted[1] + shift + inserted[2]);
+            shift += inserted[2];
+        }
+
+        edited(misspelledInserted - misspelledReplaced);
+        shift = 0;
+
+        // the journal and the listeners apply the replacements one after another, so every one is shifted by the
+        // previous ones
+        for (TextEdit replacement : replacements) {
+            if (journaling()) {
+                journal(TextEdit.replace(replacement.start() + shift, replacement.end() + shift, replacement.text()));
+            }
+
+            changed(replacement.start() + shift, replacement.end() - replacement.start(), replacement.text().length());
+            shift += replacement.text().length() - (replacement.end() - replacement.start());
+        }
+
+        return undo;
+    }
+
+    /**
+     * Records that the document was modified, updating the number of misspelled words.
+     *
+     * @param misspelledChange change in the number of misspelled words, including the empty words at the end
+     */
+    private void edited(int misspelledChange) {
+        misspelledWords += misspelledChange;
+        trailingSeparators = MisspellingScan.trailingSeparators(document);
+        misspellings = countMisspellings();
+        version++;
+    }
+
+    /**
+     * Returns a list sharing the nodes of the document copy-on-write, which the calling thread can read without
+     * holding the lock while the document is edited.
+     *
+     * @return a list containing the text of the document
+     * @throws UncheckedIOException if the evicted document cannot be read back
+     */
+    private UnrolledTextList sharedDocument() {
+        long stamp = residentReadLock();
+
+        try {
+            return document.snapshot();
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * Acquires the write lock, and reads the document back if it was evicted by its workspace.
+     *
+     * @return the stamp of the write lock
+     * @throws UncheckedIOException if the evicted document cannot be read back
+     */
+    private long residentWriteLock() {
+        long stamp = lock.writeLock();
+
+        try {
+            resident();
+        } catch (RuntimeException exception) {
+            lock.unlockWrite(stamp);
+            throw exception;
+        }
+
+        return stamp;
+    }
+
+    /**
+     * Acquires the read lock, and reads the document back if it was evicted by its workspace, which needs the write
+     * lock for a while.
+     *
+     * @return the stamp of the read lock
+     * @throws UncheckedIOException if the evicted document cannot be read back
+     */
+    private long residentReadLock() {
+        long stamp = lock.readLock();
+
+        if (spill == null) {
+            if (workspace != null) {
+                workspace.accessed(this, footprint());
+            }
+
+            return stamp;
+        }
+
+        lock.unlockRead(stamp);
+
+        return lock.tryConvertToReadLock(residentWriteLock());
+    }
+
+    /**
+     * Reads the document back if it was evicted, and tells the workspace the document was used. Must be called with
+     * the write lock held.
+     *
+     * @throws UncheckedIOException if the evicted document cannot be read back
+     */
+    private void resident() {
+        if (spill != null) {
+            try {
+                document.unspill(spill);
+
+                try {
+                    unspillHistory(historySpill);
+                } catch (IOException exception) {
+                    // the next access reads the document back again
+                    document.clear();
+                    throw exception;
+                }
+            } catch (IOException exception) {
+                throw new UncheckedIOException(exception);
+            }
+
+            try {
+                Files.deleteIfExists(spill);
+                Files.deleteIfExists(historySpill);
+            } catch (IOException exception) {
+                // the files are deleted together with the directory of the workspace
+            }
+
+            spill = null;
+            historySpill = null;
+        }
+
+        if (workspace != null) {
+            workspace.accessed(this, footprint());
+        }
+    }
+
+    /**
+     * Returns the estimated number of bytes held by the editor when its document is in memory: the document, the
+     * history, the clips and the edits kept for the next save. The clips and the history may share nodes with the
+     * document, so the estimate errs on the high side.
+     *
+     * @return estimated size of the editor in bytes
+     */
+    private long footprint() {
+        return ((long) document.length() + clipboards.chars() + unsavedChars) * Character.BYTES + historyBytes;
+    }
+
+    /**
+     * Adds the editor to the workspace.
+     *
+     * @param workspace the workspace
+     * @throws IllegalArgumentException if the editor already belongs to a workspace
+     */
+    void join(Workspace workspace) {
+        long stamp = lock.writeLock();
+
+        try {
+            if (this.workspace != null) {
+                throw new IllegalArgumentException("Editor already belongs to a workspace");
+            }
+
+            this.workspace = workspace;
+            resident();
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Removes the editor from its workspace, reading the document back if it was evicted.
+     *
+     * @throws UncheckedIOException if the evicted document cannot be read back
+     */
+    void leave() {
+        long stamp = lock.writeLock();
+
+        try {
+            workspace = null;
+            resident();
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Evicts the document to the spill file, unless the editor is in use, in which case nothing is done, so the
+     * workspace never waits for an editor. The clips, the history and the edits kept for the next save may share the
+     * nodes of the document, so they are spilled together to a file next to the spill file, and are read back with
+     * the document: undo, redo, the clipboard history and the next save work as if the document was never evicted.
+     *
+     * @param file the spill file
+     * @return true if the document was evicted
+     * @throws IOException if a spill file cannot be written, in which case the document stays in memory
+     */
+    boolean evict(Path file) throws IOException {
+        long stamp = lock.tryWriteLock();
+
+        if (stamp == 0) {
+            return false;
+        }
+
+        try {
+            if (spill != null || workspace == null) {
+                return false;
+            }
+
+            Path historyFile = file.resolveSibling(file.getFileName() + ".history");
+
+            Fragmentation fragmentation = document.fragmentation();
+
+            try {
+                spillHistory(historyFile);
+                document.spill(file);
+            } catch (IOException exception) {
+                Files.deleteIfExists(historyFile);
+                throw exception;
+            }
+
+            spill = file;
+            historySpill = historyFile;
+            spilledFragmentation = fragmentation;
+            clipboard = null;
+            clipboards.clear();
+            undoHistory.clear();
+            redoHistory.clear();
+            historyBytes = 0;
+            unsaved = new ArrayList<>();
+            unsavedChars = 0;
+            workspace.evicted(this);
+
+            return true;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Writes the clipboard, the clips, the history and the edits kept for the next save to the file, without
+     * modifying them. A text referred to several times, such as the clipboard which is also the text of the latest
+     * cut, is written once, the first time it is referred to, and then referred to by its index.
+     *
+     * @param file the spill file, which is created or overwritten
+     * @throws IOException if the file cannot be written
+     */
+    private void spillHistory(Path file) throws IOException {
+        Map<UnrolledTextList, Integer> ids = new IdentityHashMap<>(); // index of every text written so far
+
+        try (DataOutputStream output = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(file)))) {
+            writeText(output, ids, clipboard);
+            output.writeInt(clipboards.size());
+
+            for (int slot = 0; slot < clipboards.size(); slot++) {
+                writeText(output, ids, clipboards.get(slot));
+            }
+
+            writeEdits(output, ids, undoHistory);
+            writeEdits(output, ids, redoHistory);
+            writeTextEdits(output, unsaved);
+        }
+    }
+
+    /**
+     * Reads back the file written by {@link #spillHistory(Path)}. Nothing is modified unless the whole file is read.
+     * The clips and the history are trimmed to the budgets, which may have been lowered in the meantime.
+     *
+     * @param file the spill file
+     * @throws IOException if the file cannot be read
+     */
+    private void unspillHistory(Path file) throws IOException {
+        List<UnrolledTextList> texts = new ArrayList<>(); // the texts read so far, by index
+        UnrolledTextList clip;
+        UnrolledTextList[] clips;
+        List<Edit> undone;
+        List<Edit> redone;
+        List<TextEdit> edits;
+
+        try (DataInputStream input = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            clip = readText(input, texts);
+            clips = new UnrolledTextList[input.readInt()];
+
+            for (int slot = 0; slot < clips.length; slot++) {
+                clips[slot] = readText(input, texts);
+            }
+
+            undone = readEdits(input, texts);
+            redone = readEdits(input, texts);
+            edits = readTextEdits(input);
+        }
+
+        clipboard = clip;
+
+        for (int slot = clips.length - 1; slot >= 0; slot--) {
+            clipboards.push(clips[slot]);
+        }
+
+        for (Edit edit : undone) {
+            undoHistory.addLast(edit);
+            historyBytes += edit.bytes;
+        }
+
+        for (Edit edit : redone) {
+            redoHistory.addLast(edit);
+            historyBytes += edit.bytes;
+        }
+
+        trimHistory();
+        unsaved = edits;
+
+        for (TextEdit edit : edits) {
+            unsavedChars += edit.text().length();
+        }
+    }
+
+    /**
+     * Writes the edits of the history, the latest first.
+     *
+     * @param output the stream to write to
+     * @param ids index of every text written so far
+     * @param edits the edits to be written
+     * @throws IOException if the stream cannot be written
+     */
+    private static void writeEdits(DataOutput output, Map<UnrolledTextList, Integer> ids, Deque<Edit> edits)
+            throws IOException {
+        output.writeInt(edits.size());
+
+        for (Edit edit : edits) {
+            output.writeByte(edit.operation.ordinal());
+            output.writeInt(edit.position);
+            writeText(output, ids, edit.text);
+            writeText(output, ids, edit.previousClipboard);
+            writeTextEdits(output, edit.batch);
+            output.writeLong(edit.bytes);
+        }
+    }
+
+    /**
+     * Reads the edits written by {@link #writeEdits(DataOutput, Map, Deque)}.
+     *
+     * @param input the stream to read from
+     * @param texts the texts read so far, by index
+     * @return the edits, the latest first
+     * @throws IOException if the stream cannot be read
+     */
+    private List<Edit> readEdits(DataInput input, List<UnrolledTextList> texts) throws IOException {
+        int count = input.readInt();
+        List<Edit> edits = new ArrayList<>(count);
+
+        for (int k = 0; k < count; k++) {
+            Operation operation = Operation.values()[input.readByte()];
+            int position = input.readInt();
+            UnrolledTextList text = readText(input, texts);
+            UnrolledTextList previousClipboard = readText(input, texts);
+            List<TextEdit> batch = readTextEdits(input);
+            edits.add(new Edit(operation, position, text, batch, previousClipboard, input.readLong()));
+        }
+
+        return edits;
+    }
+
+    /**
+     * Writes a reference to the text, followed by the text itself the first time it is referred to.
+     *
+     * @param output the stream to write to
+     * @param ids index of every text written so far
+     * @param text the text, null if there is none
+     * @throws IOException if the stream cannot be written
+     */
+    private static void writeText(DataOutput output, Map<UnrolledTextList, Integer> ids, UnrolledTextList text)
+            throws IOException {
+        if (text == null) {
+            output.writeInt(-1);
+            return;
+        }
+
+        Integer id = ids.get(text);
+
+        if (id != null) {
+            output.writeInt(id);
+            return;
+        }
+
+        output.writeInt(ids.size());
+        ids.put(text, ids.size());
+        text.writeTo(output);
+    }
+
+    /**
+     * Reads a text written by {@link #writeText(DataOutput, Map, UnrolledTextList)}.
+     *
+     * @param input the stream to read from
+     * @param texts the texts read so far, by index
+     * @return the text, null if there is none
+     * @throws IOException if the stream cannot be read or refers to a text which was not written
+     */
+    private UnrolledTextList readText(DataInput input, List<UnrolledTextList> texts) throws IOException {
+        int id = input.readInt();
+
+        if (id == texts.size()) {
+            texts.add(document.readList(input));
+        } else if (id < -1 || id > texts.size()) {
+            throw new IOException("Spill file refers to text " + id + " before it was written");
+        }
+
+        return id == -1 ? null : texts.get(id);
+    }
+
+    /**
+     * Writes the edits, their count being -1 if there are none.
+     *
+     * @param output the stream to write to
+     * @param edits the edits, null if there are none
+     * @throws IOException if the stream cannot be written
+     */
+    private static void writeTextEdits(DataOutput output, List<TextEdit> edits) throws IOException {
+        output.writeInt(edits == null ? -1 : edits.size());
+
+        for (int k = 0; edits != null && k < edits.size(); k++) {
+            TextEdit edit = edits.get(k);
+            output.writeInt(edit.start());
+            output.writeInt(edit.end());
+            output.writeInt(edit.text().length());
+            output.writeChars(edit.text());
+        }
+    }
+
+    /**
+     * Reads the edits written by {@link #writeTextEdits(DataOutput, List)}.
+     *
+     * @param input the stream to read from
+     * @return the edits, null if there are none
+     * @throws IOException if the stream cannot be read
+     */
+    private static List<TextEdit> readTextEdits(DataInput input) throws IOException {
+        int count = input.readInt();
+
+        if (count == -1) {
+            return null;
+        }
+
+        List<TextEdit> edits = new ArrayList<>(count);
+
+        for (int k = 0; k < count; k++) {
+            int start = input.readInt();
+            int end = input.readInt();
+            char[] text = new char[input.readInt()];
+
+            for (int i = 0; i < text.length; i++) {
+                text[i] = input.readChar();
+            }
+
+            edits.add(TextEdit.replace(start, end, new String(text)));
+        }
+
+        return edits;
+    }
+
+    /**
+     * Reports the latency of an operation and the size of the text it moved to or from the clipboard.
+     *
+     * @param metrics the receiver of the measurements, null if the editor is not measured
+     * @param operation the measured operation
+     * @param start the time the operation started at, from System.nanoTime()
+     * @param chars number of characters moved to or from the clipboard
+     */
+    private static void measured(EditorMetrics metrics, EditorMetrics.Operation operation, long start, int chars) {
+        if (metrics != null) {
+            metrics.latency(operation, System.nanoTime() - start);
+            metrics.bytesCopied(operation, (long) chars * Character.BYTES);
+        }
+    }
+
+    /**
+     * Makes the next save rewrite the whole file, after the edits kept for it could not be saved.
+     */
+    private void needCheckpoint() {
+        long stamp = lock.writeLock();
+
+        try {
+            checkpointNeeded = true;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Checks if the edits need to be kept for the next save, which is the case once the document was saved and as
+     * long as the next save does not rewrite the whole file.
+     *
+     * @return true if the edits need to be kept
+     */
+    private boolean journaling() {
+        return savedPath != null && !checkpointNeeded;
+    }
+
+    /**
+     * Keeps the edit for the next save. Once the kept edits insert more characters than the document holds, they are
+     * dropped and the next save rewrites the whole file instead.
+     *
+     * @param edit the edit applied to the document
+     */
+    private void journal(TextEdit edit) {
+        unsaved.add(edit);
+        unsavedChars += edit.text().length();
+
+        if (unsavedChars > Math.max(JOURNAL_BUDGET, document.length())) {
+            unsaved = new ArrayList<>();
+            unsavedChars = 0;
+            checkpointNeeded = true;
+        }
+    }
+
+    /**
+     * Adds the change to the changes waiting to be delivered to every listener. Called with the write lock held.
+     *
+     * @param offset the index of the first replaced character
+     * @param removed number of removed characters
+     * @param inserted number of inserted characters
+     */
+    private void changed(int offset, int removed, int inserted) {
+        if (removed == 0 && inserted == 0) {
+            return;
+        }
+
+        for (Subscription subscription : subscriptions) {
+            subscription.add(new TextChange(offset, removed, inserted));
+        }
+    }
+
+    /**
+     * Schedules the delivery of the pending changes of every listener, removing the listeners whose executor rejects
+     * it. Called once the edit has succeeded and released the write lock, so the listeners can read the editor even
+     * when the changes are delivered on the editing thread. The changes of a failed edit are delivered by the next one.
+     */
+    private void dispatch() {
+        for (Subscription subscription : subscriptions) {
+            if (!subscription.schedule()) {
+                subscription.removed = true;
+                subscriptions.remove(subscription);
+            }
+        }
+    }
+
+    /**
+     * Sets the clipboard, and makes it the latest clip of the clipboard history.
+     *
+     * @param clip the new clipboard, null if there is none
+     */
+    private void setClipboard(UnrolledTextList clip) {
+        clipboard = clip;
+
+        if (clip != null) {
+            clipboards.push(clip);
+        }
+    }
+
+    /**
+     * Adds the edit to the history, discarding the edits which could be redone.
+     *
+     * @param edit the edit to be added
+     */
+    private void record(Edit edit) {
+        for (Edit undone : redoHistory) {
+            historyBytes -= undone.bytes;
+        }
+
+        redoHistory.clear();
+        undoHistory.push(edit);
+        historyBytes += edit.bytes;
+        trimHistory();
+    }
+
+    /**
+     * Forgets the oldest edits till the history fits into its budget.
+     */
+    private void trimHistory() {
+        while (historyBytes > historyBudget && !undoHistory.isEmpty()) {
+            historyBytes -= undoHistory.removeLast().bytes;
+        }
+
+        while (historyBytes > historyBudget && !redoHistory.isEmpty()) {
+            historyBytes -= redoHistory.removeLast().bytes;
+        }
+    }
+
+    /**
+     * Counts the number of misspelled words that overlap the text from ith character to jth character in the
+     * document (inclusive). Words are separated by single spaces or line breaks, so consecutive separators form empty
+     * words. Large ranges are scanned in parallel.
+     *
+     * @param i the index of the starting character
+     * @param j the index of the ending character
+     * @return number of misspelled words touching the text between i and j
+     */
+    private int misspelledWords(int i, int j) {
+        return MisspellingScan.count(document, dictionary, MisspellingScan.wordStart(document, i),
+                MisspellingScan.wordEnd(document, j));
     }
 }
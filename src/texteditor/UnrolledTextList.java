@@ -6,16 +6,66 @@
 
 package texteditor;
 
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.GatheringByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+
 /**
  * <b>UnrolledTextList</b> represents an mutable Unrolled Linked List which stores text.
+ * <p>
+ * Besides the next pointers, the nodes are also linked into a treap ordered by their position in the list, where
+ * every node knows the number of characters in its subtree. This index lets us find the node containing any
+ * character in O(log(n / node_size)) instead of walking the list from the head. The list also remembers the last node
+ * that was found (the cursor), and starts searching from it, so positions close to the previous one are found in
+ * O(log(distance / node_size)). A lookup only replaces the cursor, so several threads can read the list at the same
+ * time as long as none of them modifies it. Every node of the index also knows the number of line breaks in its
+ * subtree, so lines are mapped to character offsets and back in O(log(n / node_size) + node_size).
+ * <p>
+ * The text can be read without copying it through {@link #asCharSequence()}, and exported by streaming the nodes
+ * with {@link #writeTo(Writer)} or {@link #transferTo(WritableByteChannel)}. The String returned by
+ * {@link #toString()} is cached until the list is modified.
+ * <p>
+ * Copying and pasting does not copy the text of the nodes which are copied as a whole. Instead, the new nodes share
+ * the text with the original ones, and a node copies its text only when it is modified while being shared.
+ * <p>
+ * Edits leave partially filled nodes behind, so the nodes around every edit are compacted: a node holding less than
+ * half of the node capacity is merged with its neighbour, or takes characters from it when they do not fit into a
+ * single node. Automatic compaction can be turned off, and the whole list can be compacted with {@link #compact()}.
  */
 public class UnrolledTextList {
     /**
      * Node class representing a Linked List Node.
      */
     private class Node {
-        StringBuilder text; // the String that the node stores
+        GapBuffer text; // the text that the node stores
         Node next; // next pointer
+        Node left; // left child in the index
+        Node right; // right child in the index
+        Node parent; // parent in the index
+        final int priority = ThreadLocalRandom.current().nextInt(); // heap priority in the index
+        int weight; // number of characters in the index subtree rooted at this node
+        int newlines; // number of line breaks in the text of this node
+        int lines; // number of line breaks in the index subtree rooted at this node
+        ContentHash hash; // hash of the text of the index subtree rooted at this node, null if not computed
+        boolean shared; // true if the text may be referenced by other nodes, and must be copied before modifying
 
         /**
          * Constructs an isolated node with the given text
@@ -23,7 +73,7 @@ public class UnrolledTextList {
          * @param text the String to be added to the node
          * @throws IllegalArgumentException if text is null
          */
-        public Node(StringBuilder text) {
+        public Node(GapBuffer text) {
             if (text == null) {
                 throw new IllegalArgumentException("Text cannot be negative");
             }
@@ -32,9 +82,220 @@ public class UnrolledTextList {
         }
     }
 
+    /**
+     * The last node that was found, with its starting character index. A cursor is never modified but replaced, so
+     * threads reading the list at the same time always see a node together with its own index.
+     */
+    private final class Cursor {
+        final Node node; // the node that was found
+        final int index; // starting character index of the node
+
+        Cursor(Node node, int index) {
+            this.node = node;
+            this.index = index;
+        }
+    }
+
+    /**
+     * Read only CharSequence view of a range of characters in the list.
+     */
+    private final class TextView implements CharSequence {
+        private final int start; // index of the first character of the view
+        private final int end; // index after the last character of the view, -1 if the view ends with the list
+        private Node node; // the node containing the last character read
+        private int nodeIndex; // starting character index of the node
+        private int expectedModCount = -1; // modCount of the list when the node was found
+
+        /**
+         * Constructs a view of the characters from start to end (exclusive).
+         *
+         * @param start index of the first character of the view
+         * @param end index after the last character of the view, -1 if the view ends with the list
+         */
+        TextView(int start, int end) {
+            this.start = start;
+            this.end = end;
+        }
+
+        @Override
+        public int length() {
+            return (end == -1 ? UnrolledTextList.this.length() : end) - start;
+        }
+
+        @Override
+        public char charAt(int index) {
+            if (index < 0 || index >= length()) {
+                throw new IndexOutOfBoundsException("Index " + index + " is out of bounds");
+            }
+
+            int i = start + index;
+
+            if (expectedModCount != modCount || i < nodeIndex) {
+                moveTo(i);
+            } else if (i >= nodeIndex + node.text.length()) {
+                // while reading in order, the next character is usually in the next node
+                Node next = node.next;
+                int nextIndex = nodeIndex + node.text.length();
+
+                if (next != null && i < nextIndex + next.text.length()) {
+                    node = next;
+                    nodeIndex = nextIndex;
+                } else {
+                    moveTo(i);
+                }
+            }
+
+            return node.text.charAt(i - nodeIndex);
+        }
+
+        @Override
+        public CharSequence subSequence(int from, int to) {
+            if (from < 0 || to > length() || from > to) {
+                throw new IndexOutOfBoundsException("Range [" + from + ", " + to + ") is out of bounds");
+            }
+
+            return new TextView(start + from, start + to);
+        }
+
+        @Override
+        public String toString() {
+            return substring(start, start + length());
+        }
+
+        /**
+         * Finds the node containing the ith character of the list using the index.
+         *
+         * @param i the index of the character in the list
+         */
+        private void moveTo(int i) {
+            Object[] nodeData = findNode(i);
+            node = (Node) nodeData[0];
+            nodeIndex = (int) nodeData[1];
+            expectedModCount = modCount;
+        }
+    }
+
+    /**
+     * Piece of an edited text, which is either a range of the current text or an inserted text. The pieces of the
+     * edited text are kept in a treap ordered by their position in the edited text, like the nodes in the index.
+     */
+    private static final class Piece {
+        final int start; // index of the first character in the current text
+        final int end; // index after the last character in the current text
+        final String text; // the inserted text, null if the piece is a range of the current text
+        final int priority = ThreadLocalRandom.current().nextInt(); // heap priority in the tree of pieces
+        Piece left; // left child in the tree of pieces
+        Piece right; // right child in the tree of pieces
+        int weight; // number of characters in the subtree of pieces rooted at this piece
+
+        /**
+         * Constructs a piece of the edited text.
+         *
+         * @param start index of the first character in the current text
+         * @param end index after the last character in the current text
+         * @param text the inserted text, null if the piece is a range of the current text
+         */
+        Piece(int start, int end, String text) {
+            this.start = start;
+            this.end = end;
+            this.text = text;
+            weight = length();
+        }
+
+        /**
+         * Returns the number of characters in the piece.
+         *
+         * @return length of the piece
+         */
+        int length() {
+            return text == null ? end - start : text.length();
+        }
+
+        /**
+         * Returns the piece containing the characters from ith character to jth character (exclusive) of this piece.
+         *
+         * @param i the index of the first character in the piece
+         * @param j the index after the last character in the piece
+         * @return the new piece
+         */
+        Piece subPiece(int i, int j) {
+            return text == null ? new Piece(start + i, start + j, null) : new Piece(0, 0, text.substring(i, j));
+        }
+    }
+
+    /**
+     * Chain of nodes built by a batch of edits, before it is linked into the list.
+     */
+    private final class Chain {
+        Node head; // first node of the chain
+        Node tail; // last node of the chain
+        boolean kept; // true if the tail is a node of the list, whose text cannot be appended to
+
+        /**
+         * Appends a node of the list to the chain. Empty nodes are dropped.
+         *
+         * @param node the node to be appended
+         */
+        void add(Node node) {
+            if (node.text.length() > 0) {
+                link(node);
+                kept = true;
+            }
+        }
+
+        /**
+         * Appends the characters from start to end (exclusive) of the text to the chain, filling the new nodes to
+         * the maximum capacity.
+         *
+         * @param text the text to be appended
+         * @param start the index of the first character
+         * @param end the index after the last character
+         */
+        void append(CharSequence text, int start, int end) {
+            int capacity = Math.max(nodeSize, 1);
+
+            while (start < end) {
+                if (tail == null || kept || tail.text.length() == capacity) {
+                    link(new Node(new GapBuffer(Math.min(capacity, end - start), capacity)));
+                    kept = false;
+                }
+
+                int count = Math.min(end - start, capacity - tail.text.length());
+                tail.text.append(text, start, start + count);
+                start += count;
+            }
+        }
+
+        /**
+         * Links the node after the tail of the chain.
+         *
+         * @param node the node to be linked
+         */
+        private void link(Node node) {
+            if (head == null) {
+                head = node;
+            } else {
+                tail.next = node;
+            }
+
+            tail = node;
+        }
+    }
+
+    private static final int READ_BUFFER_SIZE = 1 << 16; // number of bytes read from a file at once
+    private static final int LOAD_GAP = 32; // a loaded node leaves 1/LOAD_GAP of its capacity free for insertions
+    private static final int WRITE_BUFFER_SIZE = 1 << 16; // number of bytes written to a channel at once
+    private static final int GATHER_SIZE = 128; // max number of buffers written by a single gathering write
+
     private Node head; // head of the list
     private Node tail; // tail of the list
+    private Node root; // root of the index
+    private Cursor cursor; // the last node that was found, null if there is none
+    private int modCount; // number of times the list was modified
+    private String text; // cached String representation of the list, null if the list was modified
+    private boolean autoCompact = true; // true if the nodes around every edit are compacted
     private final int nodeSize; // max number of characters per node
+    private EditorMetrics metrics; // receiver of the number of nodes visited by the lookups, null if not measured
 
     /**
      * Constructs an empty list with the given node capacity
@@ -50,6 +311,62 @@ public class UnrolledTextList {
         this.nodeSize = nodeSize;
     }
 
+    /**
+     * Loads the UTF-8 encoded file into a new list. The file is read in chunks and decoded straight into the
+     * nodes, so the text is never held in memory as a whole String. Line terminators are kept as they are.
+     *
+     * @param path the path of the file to be loaded
+     * @param nodeSize number of characters per node
+     * @return A UnrolledTextList containing the text of the file
+     * @throws IllegalArgumentException if path is null or nodeSize is not positive
+     * @throws IOException if the file cannot be read
+     */
+    public static UnrolledTextList load(Path path, int nodeSize) throws IOException {
+        if (path == null) {
+            throw new IllegalArgumentException("Path cannot be null");
+        }
+
+        if (nodeSize <= 0) {
+            throw new IllegalArgumentException("Node capacity must be positive");
+        }
+
+        UnrolledTextList list = new UnrolledTextList(nodeSize);
+        CharsetDecoder decoder = StandardCharsets.UTF_8.newDecoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        ByteBuffer bytes = ByteBuffer.allocateDirect(READ_BUFFER_SIZE);
+        // text of the node being filled, a surrogate pair needs room for 2 characters
+        CharBuffer chars = CharBuffer.allocate(Math.max(list.loadedLength(), 2));
+
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            boolean endOfInput = false;
+
+            while (!endOfInput) {
+                endOfInput = channel.read(bytes) == -1;
+                bytes.flip();
+
+                // decoding the bytes read so far, emitting a node every time it is full
+                while (decoder.decode(bytes, chars, endOfInput).isOverflow()) {
+                    list.appendChars(chars);
+                }
+
+                bytes.compact();
+            }
+
+            while (decoder.flush(chars) == CoderResult.OVERFLOW) {
+                list.appendChars(chars);
+            }
+        }
+
+        if (chars.position() > 0) {
+            list.appendChars(chars);
+        }
+
+        list.compactTail();
+
+        return list;
+    }
+
     /**
      * Appends the given text into the list, filling each node to the maximum capacity.
      *
@@ -63,8 +380,9 @@ public class UnrolledTextList {
 
         // if head is null, initialize the list
         if (head == null) {
-            head = new Node(new StringBuilder());
+            head = new Node(new GapBuffer(Math.min(nodeSize, text.length()), nodeSize));
             tail = head;
+            attach(null, head);
         }
 
         int i = 0; // iterator for the text
@@ -73,6 +391,8 @@ public class UnrolledTextList {
         int tailBufferLength = nodeSize - tail.text.length();
 
         if (tailBufferLength > 0) {
+            unshare(tail);
+
             if (textLength < tailBufferLength) {
                 // whole text can be accommodated in the tail node
                 tail.text.append(text);
@@ -83,17 +403,21 @@ public class UnrolledTextList {
                 tail.text.append(text, i, tailBufferLength);
                 i += tailBufferLength;
             }
+
+            resized(tail);
         }
 
         // breaking text into chucks of node size and appending them to the list
         while (i < textLength) {
-            Node node = i + nodeSize < textLength ? new Node(new StringBuilder(text.substring(i, i + nodeSize))) :
-                    new Node(new StringBuilder(text.substring(i)));
+            Node node = new Node(new GapBuffer(text, i, Math.min(i + nodeSize, textLength), nodeSize));
             tail.next = node;
+            attach(tail, node);
             tail = node;
 
             i += nodeSize;
         }
+
+        compactTail();
     }
 
     /**
@@ -110,7 +434,7 @@ public class UnrolledTextList {
         boundsCheck(i, j);
 
         // find the node containing i
-        // make deep copy
+        // make deep copy of the partial nodes, share the text of the full nodes
         // return
         Object[] nodeData = findNode(i);
         Node ithNode = (Node) nodeData[0];
@@ -127,7 +451,7 @@ public class UnrolledTextList {
             copyText.insertText(ithNode.text.substring(offset, offset + copyLength));
             return copyText;
         }
-        // i and j in different nodes: new node(i to end of starting node) -> new node(full nodes in between) ->
+        // i and j in different nodes: new node(i to end of starting node) -> shared nodes(full nodes in between) ->
         // new node(starting of ending node to j)
 
         // iterator on characters of the text that needs to be copied
@@ -139,9 +463,9 @@ public class UnrolledTextList {
         Node curr = ithNode.next;
 
         // full nodes in between
-        while (curr != null && i + iter + curr.text.length() < j) {
+        while (curr != null && i + iter + curr.text.length() <= j) { // j is exclusive
             iter += curr.text.length();
-            copyText.insertText(curr.text.toString());
+            copyText.append(share(curr));
             curr = curr.next;
         }
 
@@ -182,7 +506,10 @@ public class UnrolledTextList {
         // i and j both in node
         if (offset + cutLength < nodeTextLength) {
             cutText.insertText(ithNode.text.substring(offset, offset + cutLength));
+            unshare(ithNode);
             ithNode.text.delete(offset, offset + cutLength);
+            resized(ithNode);
+            compactAround(ithNode, ithNode);
             return cutText;
         }
         // i and j in different nodes: new node(i to end of starting node) -> full nodes in between ->
@@ -193,14 +520,18 @@ public class UnrolledTextList {
 
         // new node(i to end of starting node)
         cutText.insertText(ithNode.text.substring(offset));
+        unshare(ithNode);
         ithNode.text.delete(offset, nodeTextLength);
+        resized(ithNode);
         iter += nodeTextLength - offset;
         Node curr = ithNode.next;
 
         // full nodes in between
         while (curr != null && i + iter + curr.text.length() <= j) { // j is exclusive
             iter += curr.text.length();
+            detach(curr);
             cutText.tail.next = curr;
+            cutText.attach(cutText.tail, curr);
             cutText.tail = cutText.tail.next;
             curr = curr.next;
             cutText.tail.next = null;
@@ -209,12 +540,16 @@ public class UnrolledTextList {
         // new node(starting of ending node to j)
         if (curr != null && iter < cutLength) {
             cutText.insertText(curr.text.substring(0, cutLength - iter));
+            unshare(curr);
             curr.text.delete(0, cutLength - iter);
+            resized(curr);
         }
 
         // trying to combine nodes
         if (curr != null && ithNode.text.length() + curr.text.length() <= nodeSize) {
             ithNode.text.append(curr.text);
+            resized(ithNode);
+            detach(curr);
             ithNode.next = curr.next;
             curr = curr.next;
         } else {
@@ -227,6 +562,8 @@ public class UnrolledTextList {
             tail = ithNode;
         }
 
+        compactAround(ithNode, ithNode.next);
+
         return cutText;
     }
 
@@ -242,123 +579,1930 @@ public class UnrolledTextList {
             throw new IllegalArgumentException("clipboard cannot be null");
         }
 
-        // make a deep copy of a clipboard
         // find node that contains i
-        // if i is at the last index of a node, we do not split, simply add the list in between the nodes
-        // else we have to split the node containing i into 2 parts
-        UnrolledTextList clipboard = new UnrolledTextList(nodeSize);
-        clipboard.insertText(pasteText.toString());
-
+        // if i is at the last index of a node, the clipboard is pasted after the node
         Object[] nodeData = findNode(i);
         Node ithNode = (Node) nodeData[0];
         nodeFound(ithNode);
         int ithNodeIndex = (int) nodeData[1];
+        boolean afterNode = ithNodeIndex + (ithNode.text.length() - 1) == i;
+
+        paste(ithNode, afterNode ? ithNode.text.length() : i - ithNodeIndex, pasteText);
+    }
+
+    /**
+     * Inserts the text in the clipboard into the list, so that its first character ends up at the given index.
+     * Unlike {@link #pasteText(int, UnrolledTextList)}, the clipboard is never pasted after the character at the
+     * index.
+     *
+     * @param index the index of the first inserted character, at most the length of the list
+     * @param pasteText unrolled text list in the clipboard
+     * @throws IllegalArgumentException if index < 0 or index > length of the list or clipboard is null
+     */
+    void insertAt(int index, UnrolledTextList pasteText) {
+        if (pasteText == null) {
+            throw new IllegalArgumentException("clipboard cannot be null");
+        }
+
+        if (index < 0 || index > length()) {
+            throw new IllegalArgumentException("Index is out of bounds");
+        }
+
+        if (head == null) {
+            for (Node curr = pasteText.head; curr != null; curr = curr.next) {
+                append(share(curr));
+            }
 
-        if (ithNodeIndex + (ithNode.text.length() - 1) == i) {
+            compactTail();
+            return;
+        }
+
+        if (index == length()) {
+            paste(tail, tail.text.length(), pasteText);
+            return;
+        }
+
+        Object[] nodeData = findNode(index);
+        Node node = (Node) nodeData[0];
+        int offset = index - (int) nodeData[1];
+        Node prev = offset == 0 ? previous(node) : null;
+
+        // at the start of a node, the clipboard is added after the previous node instead of splitting this one
+        if (prev != null) {
+            // the cursor has to start before the pasted text
+            cursor = new Cursor(prev, index - prev.text.length());
+            paste(prev, prev.text.length(), pasteText);
+        } else {
+            paste(node, offset, pasteText);
+        }
+    }
+
+    /**
+     * Pastes the text in the clipboard into the node at the given offset.
+     *
+     * @param ithNode the node the clipboard is pasted into
+     * @param offset index in the node of the first pasted character, the length of the node to paste after it
+     * @param pasteText unrolled text list in the clipboard
+     */
+    private void paste(Node ithNode, int offset, UnrolledTextList pasteText) {
+        // if the clipboard fits into the node, we simply insert the text into the node
+        // else make a shallow copy of a clipboard, sharing the text of its nodes
+        // if the offset is at the end of the node, we do not split, simply add the list in between the nodes
+        // else we have to split the node into 2 parts
+        boolean afterNode = offset == ithNode.text.length();
+
+        if (pasteText != this && ithNode.text.length() + pasteText.length() <= nodeSize) {
+            unshare(ithNode);
+
+            for (Node curr = pasteText.head; curr != null; curr = curr.next) {
+                ithNode.text.insert(offset, curr.text, 0, curr.text.length());
+                offset += curr.text.length();
+            }
+
+            resized(ithNode);
+            compactAround(ithNode, ithNode);
+            return;
+        }
+
+        Node clipboardHead = null;
+        Node clipboardTail = null;
+
+        for (Node curr = pasteText.head; curr != null; curr = curr.next) {
+            Node node = share(curr);
+
+            if (clipboardHead == null) {
+                clipboardHead = node;
+            } else {
+                clipboardTail.next = node;
+            }
+
+            clipboardTail = node;
+        }
+
+        // nothing to paste
+        if (clipboardHead == null) {
+            return;
+        }
+
+        if (afterNode) {
             Node temp = ithNode.next;
-            ithNode.next = clipboard.head;
-            clipboard.tail.next = temp;
+            ithNode.next = clipboardHead;
+            clipboardTail.next = temp;
+            attachAll(ithNode, clipboardHead, temp);
 
             // edge case, if ithNode is the last node
             if (temp == null) {
-                tail = clipboard.tail;
+                tail = clipboardTail;
             }
+
+            compactAround(ithNode, clipboardTail);
         } else {
-            int offset = i - ithNodeIndex;
             // right part of the split node
-            Node laterHalf = new Node(new StringBuilder(ithNode.text.substring(offset)));
+            Node laterHalf = new Node(new GapBuffer(ithNode.text, offset, ithNode.text.length(), nodeSize));
             laterHalf.next = ithNode.next;
             // trimming left part of the split node
+            unshare(ithNode);
             ithNode.text.delete(offset, ithNode.text.length());
 
             if (offset == 0) {
-                ithNode.text.append(clipboard.head.text);
-                ithNode.next = clipboard.head.next != null ? clipboard.head.next : laterHalf;
+                ithNode.text.append(clipboardHead.text);
+                ithNode.next = clipboardHead.next != null ? clipboardHead.next : laterHalf;
             } else {
                 // joining clipboard in middle
-                ithNode.next = clipboard.head;
+                ithNode.next = clipboardHead;
             }
 
-            clipboard.tail.next = laterHalf;
+            clipboardTail.next = laterHalf;
+            resized(ithNode);
+            attachAll(ithNode, ithNode.next, laterHalf.next);
 
             // edge case, if ithNode is the last node
             if (laterHalf.next == null) {
                 tail = laterHalf;
             }
+
+            compactAround(ithNode, laterHalf);
         }
     }
 
     /**
-     * Clears the list
+     * Applies the batch of edits, with the same result as applying the edits one after another. The positions of
+     * the edits are translated into positions in the current text first, so the edits are sorted and merged, and
+     * then applied in a single walk over the nodes between the first and the last edit. The nodes which are not
+     * touched by any edit are kept as they are, the edited text is written into new nodes.
+     *
+     * @param edits the edits to be applied, in order
+     * @throws IllegalArgumentException if edits is null or contains null, or an edit is out of bounds
      */
-    public void clear() {
-        head = null;
-        tail = null;
+    public void applyBatch(List<TextEdit> edits) {
+        replace(normalize(edits), false);
     }
 
     /**
-     * Converts the list into its text (String) representation.
+     * Translates the batch of edits into the replacements of the current text. The replacements are sorted, do not
+     * overlap and do not touch each other, and their positions refer to the current text. The list is not modified.
      *
-     * @return String representing the text in the list
+     * @param edits the edits to be translated, in order
+     * @return the replacements of the current text, empty if the batch does not edit anything
+     * @throws IllegalArgumentException if edits is null or contains null, or an edit is out of bounds
      */
-    public String toString() {
-        StringBuilder text = new StringBuilder();
-        Node curr = head;
+    List<TextEdit> normalize(List<TextEdit> edits) {
+        if (edits == null) {
+            throw new IllegalArgumentException("Edits cannot be null");
+        }
 
-        while (curr != null) {
-            text.append(curr.text);
-            curr = curr.next;
+        List<TextEdit> replacements = normalizeSorted(edits);
+
+        if (replacements != null) {
+            return replacements;
         }
 
-        return text.toString();
-    }
+        // the edited text as a tree of pieces of the current text and inserted texts
+        Piece pieces = length() > 0 ? new Piece(0, length(), null) : null;
+        int length = length();
 
-    ///////////////////////////////////////////////////////////////////////////////////////
-    ////  Util methods
-    ///////////////////////////////////////////////////////////////////////////////////////
+        for (TextEdit edit : edits) {
+            if (edit == null) {
+                throw new IllegalArgumentException("Edit cannot be null");
+            }
+
+            if (edit.end() > length) {
+                throw new IllegalArgumentException("Edit is out of bounds");
+            }
+
+            Piece[] before = splitPieces(pieces, edit.start());
+            Piece[] after = splitPieces(before[1], edit.end() - edit.start());
+            Piece inserted = edit.text().isEmpty() ? null : new Piece(0, 0, edit.text());
+            pieces = mergePieces(mergePieces(before[0], inserted), after[1]);
+            length += edit.text().length() - (edit.end() - edit.start());
+        }
+
+        // the gaps between the kept pieces of the current text are the replacements, found in order
+        replacements = new ArrayList<>();
+        StringBuilder inserted = new StringBuilder();
+        Deque<Piece> path = new ArrayDeque<>();
+        int kept = 0; // index after the last kept character of the current text
+
+        for (Piece piece = pieces; piece != null || !path.isEmpty(); piece = piece.right) {
+            for (; piece != null; piece = piece.left) {
+                path.push(piece);
+            }
+
+            piece = path.pop();
+
+            if (piece.text != null) {
+                inserted.append(piece.text);
+                continue;
+            }
+
+            if (piece.start > kept || inserted.length() > 0) {
+                replacements.add(TextEdit.replace(kept, piece.start, inserted.toString()));
+                inserted.setLength(0);
+            }
+
+            kept = piece.end;
+        }
+
+        if (kept < length() || inserted.length() > 0) {
+            replacements.add(TextEdit.replace(kept, length(), inserted.toString()));
+        }
+
+        return replacements;
+    }
 
     /**
-     * Checks the bounds for i and j
+     * Translates the batch of edits into the replacements of the current text in a single pass, if every edit starts
+     * after the text edited by the previous edits, as in a batch built from left to right.
      *
-     * @param i the index of the starting character in the document
-     * @param j the index of the ending character in the document
-     * @throws IllegalArgumentException if j < i or i < 0
+     * @param edits the edits to be translated, in order
+     * @return the replacements of the current text, null if the edits are not sorted
+     * @throws IllegalArgumentException if edits contains null, or an edit is out of bounds
      */
-    private void boundsCheck(int i, int j) {
-        if (j < i || i < 0) {
-            throw new IllegalArgumentException("Ending index cannot be smaller than starting index");
+    private List<TextEdit> normalizeSorted(List<TextEdit> edits) {
+        List<TextEdit> replacements = new ArrayList<>();
+        StringBuilder inserted = new StringBuilder(); // text replacing the pending replacement
+        int start = -1; // index of the first character of the pending replacement, -1 if there is none
+        int end = 0; // index after the last character of the pending replacement
+        int shift = 0; // number of characters added to the text before the next edit by the previous edits
+        int limit = 0; // index of the first character of the edited text after the previous edits
+
+        for (TextEdit edit : edits) {
+            if (edit == null) {
+                throw new IllegalArgumentException("Edit cannot be null");
+            }
+
+            if (edit.start() < limit) {
+                return null;
+            }
+
+            if (edit.end() - shift > length()) {
+                throw new IllegalArgumentException("Edit is out of bounds");
+            }
+
+            if (edit.start() == edit.end() && edit.text().isEmpty()) {
+                continue;
+            }
+
+            // a replacement touching the pending one is merged with it
+            if (start != -1 && edit.start() - shift > end) {
+                replacements.add(TextEdit.replace(start, end, inserted.toString()));
+                inserted.setLength(0);
+                start = -1;
+            }
+
+            if (start == -1) {
+                start = edit.start() - shift;
+            }
+
+            end = edit.end() - shift;
+            inserted.append(edit.text());
+            shift += edit.text().length() - (edit.end() - edit.start());
+            limit = edit.start() + edit.text().length();
+        }
+
+        if (start != -1) {
+            replacements.add(TextEdit.replace(start, end, inserted.toString()));
         }
+
+        return replacements;
     }
 
     /**
-     * Returns the node containing the ith character in the text document, and
-     * also returns the starting character index of that node.
+     * Applies the replacements returned by {@link #normalize(List)} in a single walk over the nodes. The nodes
+     * between the replacements are kept, the characters around them are copied into new nodes together with the
+     * replacing text.
      *
-     * @param i the ith character which needs to be found
-     * @return the node containing the ith character and the starting character index of that node,
-     * returns <b>special value: </b> null, if the index is out of bounds
+     * @param replacements the sorted replacements of the current text
+     * @param inverse true if the edits undoing the replacements need to be returned
+     * @return the sorted replacements of the edited text undoing the replacements, null if inverse is false
      */
-    private Object[] findNode(int i) {
-        Node curr = head;
-        int index = 0;
+    List<TextEdit> replace(List<TextEdit> replacements, boolean inverse) {
+        List<TextEdit> undo = inverse ? new ArrayList<>() : null;
+        int shift = 0; // change in the length of the text before the next replacement
 
-        while (curr != null && index + curr.text.length() <= i) {
-            index += curr.text.length();
-            curr = curr.next;
+        if (replacements.isEmpty()) {
+            return undo;
         }
 
-        return new Object[]{curr, index};
+        // the walk starts at the node containing the first replaced character
+        Node node = head;
+        int nodeIndex = 0; // starting character index of the node
+
+        if (length() > 0) {
+            Object[] nodeData = findNode(Math.min(replacements.get(0).start(), length() - 1));
+            node = (Node) nodeData[0];
+            nodeIndex = (int) nodeData[1];
+        }
+
+        Node prev = node != null ? previous(node) : null;
+        Chain chain = new Chain();
+        int index = nodeIndex; // index of the next character of the current text
+
+        for (TextEdit replacement : replacements) {
+            // keeping the characters before the replacement, whole nodes are reused
+            while (index < replacement.start()) {
+                int nodeEnd = nodeIndex + node.text.length();
+                int end = Math.min(replacement.start(), nodeEnd);
+
+                if (index == nodeIndex && end == nodeEnd) {
+                    chain.add(node);
+                } else {
+                    chain.append(node.text, index - nodeIndex, end - nodeIndex);
+                }
+
+                index = end;
+
+                if (index == nodeEnd) {
+                    nodeIndex = nodeEnd;
+                    node = removeNode(node);
+                }
+            }
+
+            // skipping the replaced characters
+            StringBuilder replaced = inverse ? new StringBuilder(replacement.end() - replacement.start()) : null;
+
+            while (index < replacement.end()) {
+                int nodeEnd = nodeIndex + node.text.length();
+                int end = Math.min(replacement.end(), nodeEnd);
+
+                if (inverse) {
+                    replaced.append(node.text, index - nodeIndex, end - nodeIndex);
+                }
+
+                index = end;
+
+                if (index == nodeEnd) {
+                    nodeIndex = nodeEnd;
+                    node = removeNode(node);
+                }
+            }
+
+            chain.append(replacement.text(), 0, replacement.text().length());
+
+            // the replaced characters are put back at the position of the replacing text in the edited text
+            if (inverse) {
+                int start = replacement.start() + shift;
+                undo.add(TextEdit.replace(start, start + replacement.text().length(), replaced.toString()));
+                shift += replacement.text().length() - (replacement.end() - replacement.start());
+            }
+        }
+
+        // the rest of the node containing the end of the last replacement
+        if (node != null && index > nodeIndex) {
+            chain.append(node.text, index - nodeIndex, node.text.length());
+            node = removeNode(node);
+        }
+
+        splice(prev, chain, node);
+
+        return undo;
     }
 
     /**
-     * Checks if i is in bounds
+     * Returns the number of characters in the list.
      *
-     * @param ithNode the index of the starting character in the document
-     * @throws  IllegalArgumentException if i > document length
+     * @return length of the text in the list
      */
-    private void nodeFound(Node ithNode) {
-        if (ithNode == null) {
-            throw new IllegalArgumentException("starting index is greater than the document length");
-        }
+    public int length() {
+        return weight(root);
+    }
+
+    /**
+     * Returns the ith character in the list.
+     *
+     * @param i the index of the character
+     * @return the character at index i
+     * @throws IllegalArgumentException if i < 0 or i >= length of the list
+     */
+    public char charAt(int i) {
+        Object[] nodeData = findNode(i);
+        Node ithNode = (Node) nodeData[0];
+
+        if (i < 0 || ithNode == null) {
+            throw new IllegalArgumentException("Index is out of bounds");
+        }
+
+        return ithNode.text.charAt(i - (int) nodeData[1]);
+    }
+
+    /**
+     * Returns the index of the first occurrence of the character at or after the starting index.
+     *
+     * @param c the character to search for
+     * @param from the index to start searching from
+     * @return index of the first occurrence of c at or after from, -1 if there is no such occurrence
+     */
+    public int indexOf(char c, int from) {
+        return indexOf(c, c, from);
+    }
+
+    /**
+     * Returns the index of the first occurrence of either character at or after the starting index.
+     *
+     * @param c the first character to search for
+     * @param d the second character to search for
+     * @param from the index to start searching from
+     * @return index of the first occurrence of c or d at or after from, -1 if there is no such occurrence
+     */
+    int indexOf(char c, char d, int from) {
+        from = Math.max(from, 0);
+        Object[] nodeData = findNode(from);
+        Node curr = (Node) nodeData[0];
+        int index = (int) nodeData[1];
+        int offset = from - index;
+
+        while (curr != null) {
+            int k = curr.text.indexOf(c, d, offset);
+
+            if (k != -1) {
+                return index + k;
+            }
+
+            index += curr.text.length();
+            offset = 0;
+            curr = curr.next;
+        }
+
+        return -1;
+    }
+
+    /**
+     * Returns the index of the last occurrence of the character at or before the starting index.
+     *
+     * @param c the character to search for
+     * @param from the index to start searching backwards from
+     * @return index of the last occurrence of c at or before from, -1 if there is no such occurrence
+     */
+    public int lastIndexOf(char c, int from) {
+        return lastIndexOf(c, c, from);
+    }
+
+    /**
+     * Returns the index of the last occurrence of either character at or before the starting index.
+     *
+     * @param c the first character to search for
+     * @param d the second character to search for
+     * @param from the index to start searching backwards from
+     * @return index of the last occurrence of c or d at or before from, -1 if there is no such occurrence
+     */
+    int lastIndexOf(char c, char d, int from) {
+        from = Math.min(from, length() - 1);
+
+        if (from < 0) {
+            return -1;
+        }
+
+        Object[] nodeData = findNode(from);
+        Node curr = (Node) nodeData[0];
+        int index = (int) nodeData[1];
+        int offset = from - index;
+
+        while (curr != null) {
+            int k = curr.text.lastIndexOf(c, d, offset);
+
+            if (k != -1) {
+                return index + k;
+            }
+
+            curr = previous(curr);
+
+            if (curr != null) {
+                index -= curr.text.length();
+                offset = curr.text.length() - 1;
+            }
+        }
+
+        return -1;
+    }
+
+    /**
+     * Returns the index of the first occurrence of the pattern at or after the starting index. The nodes are searched
+     * in place with Boyer-Moore-Horspool, including the occurrences spanning several nodes.
+     *
+     * @param pattern the pattern to search for
+     * @param from the index to start searching from
+     * @return index of the first occurrence of pattern at or after from, -1 if there is no such occurrence
+     * @throws IllegalArgumentException if pattern is null or empty
+     */
+    public int indexOf(String pattern, int from) {
+        return new Horspool(pattern).find(asCharSequence(), from);
+    }
+
+    /**
+     * Returns every occurrence of the patterns, including the overlapping ones, ordered by their starting index and
+     * then by their ending index. The nodes are read once with Aho-Corasick, however many patterns are searched.
+     *
+     * @param patterns the patterns to search for
+     * @return the matches of the patterns
+     * @throws IllegalArgumentException if patterns is null, or a pattern is null or empty
+     */
+    public List<Match> findAll(List<String> patterns) {
+        return new AhoCorasick(patterns).findAll(asCharSequence());
+    }
+
+    /**
+     * Replaces every occurrence of the target with the replacement, from left to right. The occurrences are found in
+     * place, and replaced in a single walk over the nodes which keeps the nodes without occurrences.
+     *
+     * @param target the text to be replaced
+     * @param replacement the text replacing every occurrence
+     * @return number of replaced occurrences
+     * @throws IllegalArgumentException if target is null or empty or replacement is null
+     */
+    public int replaceAll(String target, String replacement) {
+        List<TextEdit> replacements = occurrences(target, replacement);
+        replace(replacements, false);
+
+        return replacements.size();
+    }
+
+    /**
+     * Returns the replacements of every occurrence of the target, from left to right, as accepted by
+     * {@link #replace(List, boolean)}.
+     *
+     * @param target the text to be replaced
+     * @param replacement the text replacing every occurrence
+     * @return the sorted replacements of the occurrences
+     * @throws IllegalArgumentException if target is null or empty or replacement is null
+     */
+    List<TextEdit> occurrences(String target, String replacement) {
+        if (replacement == null) {
+            throw new IllegalArgumentException("Replacement cannot be null");
+        }
+
+        Horspool horspool = new Horspool(target);
+        CharSequence view = asCharSequence();
+        List<TextEdit> replacements = new ArrayList<>();
+
+        for (int i = horspool.find(view, 0); i != -1; i = horspool.find(view, i + horspool.length())) {
+            replacements.add(TextEdit.replace(i, i + horspool.length(), replacement));
+        }
+
+        return replacements;
+    }
+
+    /**
+     * Returns the text from ith character to jth character in the list (exclusive). If the ending index is
+     * greater than the length of the list, then the text ranges from starting index to the end of the list.
+     *
+     * @param i the index of the starting character
+     * @param j the index of the ending character
+     * @return String containing the text between i and j
+     * @throws IllegalArgumentException if j < i or i < 0 or i > length of the list
+     */
+    public String substring(int i, int j) {
+        boundsCheck(i, j);
+
+        if (i > length()) {
+            throw new IllegalArgumentException("starting index is greater than the document length");
+        }
+
+        j = Math.min(j, length());
+        Object[] nodeData = findNode(i);
+        Node ithNode = (Node) nodeData[0];
+        int offset = i - (int) nodeData[1];
+
+        // the text is copied as bytes if all the nodes in the range are Latin-1
+        boolean latin1 = true;
+        int remaining = j - i + offset; // number of characters from the start of the node till j
+
+        for (Node curr = ithNode; curr != null && remaining > 0; curr = curr.next) {
+            latin1 &= curr.text.isLatin1();
+            remaining -= curr.text.length();
+        }
+
+        byte[] bytes = latin1 ? new byte[j - i] : null;
+        char[] chars = latin1 ? null : new char[j - i];
+        int copied = 0; // number of characters copied so far
+        Node curr = ithNode;
+
+        while (curr != null && copied < j - i) {
+            int end = Math.min(curr.text.length(), offset + j - i - copied);
+
+            if (latin1) {
+                curr.text.getBytes(offset, end, bytes, copied);
+            } else {
+                curr.text.getChars(offset, end, chars, copied);
+            }
+
+            copied += end - offset;
+            offset = 0;
+            curr = curr.next;
+        }
+
+        return latin1 ? new String(bytes, StandardCharsets.ISO_8859_1) : new String(chars);
+    }
+
+    /**
+     * Returns the number of lines in the list. Lines are separated by '\n', so a list ending with a line break ends
+     * with an empty line, and an empty list has a single empty line.
+     *
+     * @return number of lines
+     */
+    public int lineCount() {
+        return lines(root) + 1;
+    }
+
+    /**
+     * Returns the index of the first character of the line.
+     *
+     * @param line the index of the line, starting from 0
+     * @return index of the first character of the line
+     * @throws IllegalArgumentException if line < 0 or line >= number of lines
+     */
+    public int lineToOffset(int line) {
+        if (line < 0 || line >= lineCount()) {
+            throw new IllegalArgumentException("Line is out of bounds");
+        }
+
+        int index = 0; // starting character index of the subtree rooted at curr
+        int breaks = line; // number of line breaks before the line, which are in the subtree rooted at curr
+        Node curr = root;
+
+        while (breaks > 0) {
+            int leftLines = lines(curr.left);
+
+            if (breaks <= leftLines) {
+                curr = curr.left;
+            } else if (breaks <= leftLines + curr.newlines) {
+                // the line starts after a line break of this node
+                int k = -1;
+
+                for (int b = breaks - leftLines; b > 0; b--) {
+                    k = curr.text.indexOf('\n', k + 1);
+                }
+
+                return index + weight(curr.left) + k + 1;
+            } else {
+                breaks -= leftLines + curr.newlines;
+                index += weight(curr.left) + curr.text.length();
+                curr = curr.right;
+            }
+        }
+
+        return index;
+    }
+
+    /**
+     * Returns the index of the line containing the ith character. The column of the character is its index minus
+     * {@link #lineToOffset(int)} of its line.
+     *
+     * @param i the index of the character, at most the length of the list
+     * @return index of the line, starting from 0
+     * @throws IllegalArgumentException if i < 0 or i > length of the list
+     */
+    public int offsetToLine(int i) {
+        if (i < 0 || i > length()) {
+            throw new IllegalArgumentException("Index is out of bounds");
+        }
+
+        int index = 0; // starting character index of the subtree rooted at curr
+        int line = 0; // number of line breaks before the subtree rooted at curr
+        Node curr = root;
+
+        while (curr != null) {
+            int leftWeight = weight(curr.left);
+
+            if (i < index + leftWeight) {
+                curr = curr.left;
+            } else if (i < index + leftWeight + curr.text.length()) {
+                return line + lines(curr.left) + curr.text.count('\n', 0, i - index - leftWeight);
+            } else {
+                line += lines(curr.left) + curr.newlines;
+                index += leftWeight + curr.text.length();
+                curr = curr.right;
+            }
+        }
+
+        return line;
+    }
+
+    /**
+     * Returns the text of the line, without its line break ("\n" or "\r\n").
+     *
+     * @param line the index of the line, starting from 0
+     * @return String containing the text of the line
+     * @throws IllegalArgumentException if line < 0 or line >= number of lines
+     */
+    public String getLine(int line) {
+        int start = lineToOffset(line);
+        int end = length();
+
+        if (line + 1 < lineCount()) {
+            end = lineToOffset(line + 1) - 1;
+
+            if (end > start && charAt(end - 1) == '\r') {
+                end--;
+            }
+        }
+
+        return substring(start, end);
+    }
+
+    /**
+     * Returns the index at which {@link #pasteText(int, UnrolledTextList)} inserts the clipboard when pasting at
+     * the ith character. The clipboard is pasted after the ith character if it is the last character of its node,
+     * and before it otherwise.
+     *
+     * @param i the index of the starting character in the document
+     * @return the index of the first pasted character
+     */
+    int insertionPoint(int i) {
+        Object[] nodeData = findNode(i);
+        Node ithNode = (Node) nodeData[0];
+
+        if (ithNode != null && (int) nodeData[1] + (ithNode.text.length() - 1) == i) {
+            return i + 1;
+        }
+
+        return i;
+    }
+
+    /**
+     * Returns a new list sharing the text of every node with this list. Neither list copies any text until one of
+     * its nodes is modified, so the new list keeps the current text while this list is edited. The new list can be
+     * read by another thread, as long as its nodes are only modified by that thread.
+     *
+     * @return a list containing the same text
+     */
+    UnrolledTextList snapshot() {
+        UnrolledTextList snapshot = new UnrolledTextList(nodeSize);
+
+        for (Node curr = head; curr != null; curr = curr.next) {
+            snapshot.append(share(curr));
+        }
+
+        snapshot.text = text;
+
+        return snapshot;
+    }
+
+    /**
+     * Returns the cached String representation of the list.
+     *
+     * @return the cached String, null if the list was modified since the String was built
+     */
+    String cachedText() {
+        return text;
+    }
+
+    /**
+     * Caches the String representation of the list, which was built outside of the list.
+     *
+     * @param text the String containing the text of the list
+     */
+    void cacheText(String text) {
+        this.text = text;
+    }
+
+    /**
+     * Adds the buffers of the nodes containing the text from start to end (exclusive) to the list, in order. The
+     * buffers are not copied, so they can be read concurrently, but only until the list is modified.
+     *
+     * @param start the index of the first character
+     * @param end the index after the last character
+     * @param texts the list the buffers are added to
+     * @return index of the first character of the first node added
+     */
+    int nodeTexts(int start, int end, List<GapBuffer> texts) {
+        Object[] nodeData = findNode(start);
+        Node curr = (Node) nodeData[0];
+        int index = (int) nodeData[1];
+
+        for (int k = index; curr != null && k < end; curr = curr.next) {
+            texts.add(curr.text);
+            k += curr.text.length();
+        }
+
+        return index;
+    }
+
+    /**
+     * Compacts the whole list, so every node holds between half of the node capacity and the full capacity. Only the
+     * last node can hold less, if the whole list fits into it.
+     */
+    public void compact() {
+        if (head != null) {
+            compact(head, tail);
+        }
+    }
+
+    /**
+     * Turns the automatic compaction of the nodes around every edit on or off. It is on by default.
+     *
+     * @param autoCompact true if the nodes around every edit need to be compacted
+     */
+    public void setAutoCompact(boolean autoCompact) {
+        this.autoCompact = autoCompact;
+    }
+
+    /**
+     * Sets the receiver of the number of nodes visited by every lookup of a character. The lists created from this
+     * one, like cut and copied text, are not measured.
+     *
+     * @param metrics the receiver of the measurements, null to stop measuring
+     */
+    void setMetrics(EditorMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    /**
+     * Returns the statistics of how the text is spread over the nodes.
+     *
+     * @return the fragmentation statistics of the list
+     */
+    public Fragmentation fragmentation() {
+        int nodes = 0;
+        int underfilledNodes = 0;
+        int smallestNode = 0;
+        int largestNode = 0;
+
+        for (Node curr = head; curr != null; curr = curr.next) {
+            int length = curr.text.length();
+            smallestNode = nodes == 0 ? length : Math.min(smallestNode, length);
+            largestNode = Math.max(largestNode, length);
+            nodes++;
+
+            if (length < minFill()) {
+                underfilledNodes++;
+            }
+        }
+
+        return new Fragmentation(length(), nodeSize, nodes, underfilledNodes, smallestNode, largestNode);
+    }
+
+    /**
+     * Clears the list
+     */
+    public void clear() {
+        modified();
+        head = null;
+        tail = null;
+        root = null;
+        cursor = null;
+    }
+
+    /**
+     * Converts the list into its text (String) representation.
+     *
+     * @return String representing the text in the list
+     */
+    public String toString() {
+        if (text == null) {
+            text = substring(0, length());
+        }
+
+        return text;
+    }
+
+    /**
+     * Returns a read only view of the text in the list, which reads the characters straight from the nodes.
+     * Reading the characters in order is O(1) per character. The view reflects later modifications of the list.
+     *
+     * @return CharSequence representing the text in the list
+     */
+    public CharSequence asCharSequence() {
+        return new TextView(0, -1);
+    }
+
+    /**
+     * Returns the hash of the text in the list. The hash of every index subtree is kept in its root till the subtree
+     * is modified, so after an edit only the hashes of the edited nodes and their ancestors are computed again. Lists
+     * with the same text have the same hash however their text is split into nodes. The hashes are only comparable
+     * within a process, and different texts of length n have the same hash with probability at most n / 2^61.
+     *
+     * @return the hash of the text
+     */
+    public long contentHash() {
+        return hash(root).value();
+    }
+
+    /**
+     * Checks if the other list contains the same text as this list by comparing their hashes, which is O(1) for lists
+     * sharing their nodes, like a snapshot and the list it was taken from, and O(changed region) after edits.
+     *
+     * @param other the list to be compared
+     * @return true if both lists contain the same text, unless their hashes collide
+     * @throws IllegalArgumentException if other is null
+     */
+    public boolean contentEquals(UnrolledTextList other) {
+        if (other == null) {
+            throw new IllegalArgumentException("List cannot be null");
+        }
+
+        return length() == other.length() && hash(root).matches(other.hash(other.root));
+    }
+
+    /**
+     * Returns the edit turning the text of this list into the text of the other list, replacing the range between
+     * their common prefix and common suffix. Both are found by binary search over the hashes of the prefixes and
+     * suffixes, which are built from the hashes of the subtrees, so the text outside the changed region is not read.
+     *
+     * @param other the list to be compared
+     * @return the edit replacing the changed region, null if both lists contain the same text
+     * @throws IllegalArgumentException if other is null
+     */
+    public TextEdit diff(UnrolledTextList other) {
+        if (contentEquals(other)) {
+            return null;
+        }
+
+        int shorter = Math.min(length(), other.length());
+        int low = 0;
+        int high = shorter;
+
+        // finding the longest common prefix
+        while (low < high) {
+            int mid = (low + high + 1) >>> 1;
+
+            if (prefixHash(mid).matches(other.prefixHash(mid))) {
+                low = mid;
+            } else {
+                high = mid - 1;
+            }
+        }
+
+        int prefix = low;
+        low = 0;
+        high = shorter - prefix;
+
+        // finding the longest common suffix which does not overlap the prefix
+        while (low < high) {
+            int mid = (low + high + 1) >>> 1;
+
+            if (suffixHash(mid).matches(other.suffixHash(mid))) {
+                low = mid;
+            } else {
+                high = mid - 1;
+            }
+        }
+
+        return TextEdit.replace(prefix, length() - low, other.substring(prefix, other.length() - low));
+    }
+
+    /**
+     * Writes the text in the list to the writer, node by node.
+     *
+     * @param writer the writer to write the text to
+     * @throws IllegalArgumentException if writer is null
+     * @throws IOException if the writer fails
+     */
+    public void writeTo(Writer writer) throws IOException {
+        if (writer == null) {
+            throw new IllegalArgumentException("Writer cannot be null");
+        }
+
+        char[] chars = new char[nodeSize]; // buffer for nodes which are not stored as chars
+
+        for (Node curr = head; curr != null; curr = curr.next) {
+            curr.text.writeTo(writer, chars);
+        }
+    }
+
+    /**
+     * Writes the text in the list to the channel encoded in UTF-8, node by node. The nodes which only contain
+     * ASCII characters are written straight from their buffers, and consecutive ASCII nodes are written at once with
+     * a gathering write.
+     *
+     * @param channel the channel to write the text to
+     * @return number of bytes written
+     * @throws IllegalArgumentException if channel is null
+     * @throws IOException if the channel fails
+     */
+    public long transferTo(WritableByteChannel channel) throws IOException {
+        if (channel == null) {
+            throw new IllegalArgumentException("Channel cannot be null");
+        }
+
+        CharsetEncoder encoder = StandardCharsets.UTF_8.newEncoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        ByteBuffer bytes = ByteBuffer.allocate(WRITE_BUFFER_SIZE);
+        CharBuffer chars = CharBuffer.allocate(nodeSize + 1); // room for a surrogate left from the previous node
+        List<ByteBuffer> gathered = new ArrayList<>(); // bytes of the ASCII nodes waiting to be written
+        long written = 0;
+
+        for (Node curr = head; curr != null; curr = curr.next) {
+            if (curr.text.isAscii() && chars.position() == 0) {
+                if (gathered.isEmpty()) {
+                    written += drain(channel, bytes);
+                }
+
+                curr.text.addBytes(gathered);
+
+                if (gathered.size() >= GATHER_SIZE) {
+                    written += gather(channel, gathered);
+                }
+
+                continue;
+            }
+
+            written += gather(channel, gathered);
+
+            if (chars.remaining() < curr.text.length()) {
+                chars = CharBuffer.allocate(curr.text.length() + 1).put(chars.flip());
+            }
+
+            curr.text.getChars(0, curr.text.length(), chars.array(), chars.position());
+            chars.position(chars.position() + curr.text.length()).flip();
+
+            while (encoder.encode(chars, bytes, false).isOverflow()) {
+                written += drain(channel, bytes);
+            }
+
+            chars.compact();
+        }
+
+        written += gather(channel, gathered);
+        chars.flip();
+
+        while (encoder.encode(chars, bytes, true).isOverflow()) {
+            written += drain(channel, bytes);
+        }
+
+        while (encoder.flush(bytes).isOverflow()) {
+            written += drain(channel, bytes);
+        }
+
+        return written + drain(channel, bytes);
+    }
+
+    /**
+     * Writes the text in the list to the spill file as it is held in memory, two bytes per character, and clears the
+     * list. Unlike the UTF-8 of transferTo, every character is read back as it was, including unpaired surrogates.
+     *
+     * @param file the spill file, which is created or overwritten
+     * @throws IOException if the file cannot be written, in which case the list is not cleared
+     */
+    void spill(Path file) throws IOException {
+        ByteBuffer bytes = ByteBuffer.allocateDirect(WRITE_BUFFER_SIZE);
+        char[] chars = new char[WRITE_BUFFER_SIZE / Character.BYTES];
+        int filled = 0; // number of characters in chars
+
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            for (Node curr = head; curr != null; curr = curr.next) {
+                for (int start = 0; start < curr.text.length(); ) {
+                    int end = Math.min(curr.text.length(), start + chars.length - filled);
+                    curr.text.getChars(start, end, chars, filled);
+                    filled += end - start;
+                    start = end;
+
+                    if (filled == chars.length) {
+                        bytes.asCharBuffer().put(chars, 0, filled);
+                        bytes.position(filled * Character.BYTES);
+                        drain(channel, bytes);
+                        filled = 0;
+                    }
+                }
+            }
+
+            bytes.asCharBuffer().put(chars, 0, filled);
+            bytes.position(filled * Character.BYTES);
+            drain(channel, bytes);
+        }
+
+        clear();
+    }
+
+    /**
+     * Appends the text of a spill file written by {@link #spill(Path)} to the list, filling each node to the maximum
+     * capacity.
+     *
+     * @param file the spill file
+     * @throws IOException if the file cannot be read, in which case the list is cleared
+     */
+    void unspill(Path file) throws IOException {
+        ByteBuffer bytes = ByteBuffer.allocateDirect(READ_BUFFER_SIZE);
+        CharBuffer chars = CharBuffer.allocate(Math.max(loadedLength(), 1)); // text of the node being filled
+
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            while (channel.read(bytes) != -1) {
+                bytes.flip();
+
+                while (bytes.remaining() >= Character.BYTES) {
+                    CharBuffer read = bytes.asCharBuffer();
+                    int count = Math.min(read.remaining(), chars.remaining());
+                    chars.put(read.limit(count));
+                    bytes.position(bytes.position() + count * Character.BYTES);
+
+                    if (!chars.hasRemaining()) {
+                        appendChars(chars);
+                    }
+                }
+
+                bytes.compact();
+            }
+        } catch (IOException exception) {
+            clear();
+            throw exception;
+        }
+
+        if (chars.position() > 0) {
+            appendChars(chars);
+        }
+
+        compactTail();
+    }
+
+    /**
+     * Writes the length of the text followed by its characters, two bytes per character, so several lists can be
+     * written to the same stream and read back by {@link #readList(DataInput)}. The list is not modified.
+     *
+     * @param output the stream to write to
+     * @throws IOException if the stream cannot be written
+     */
+    void writeTo(DataOutput output) throws IOException {
+        char[] chars = new char[Math.max(nodeSize, 1)];
+        byte[] bytes = new byte[chars.length * Character.BYTES];
+        output.writeInt(length());
+
+        for (Node curr = head; curr != null; curr = curr.next) {
+            int length = curr.text.length();
+
+            if (length > chars.length) {
+                chars = new char[length];
+                bytes = new byte[length * Character.BYTES];
+            }
+
+            curr.text.getChars(0, length, chars, 0);
+            ByteBuffer.wrap(bytes).asCharBuffer().put(chars, 0, length);
+            output.write(bytes, 0, length * Character.BYTES);
+        }
+    }
+
+    /**
+     * Reads a text written by {@link #writeTo(DataOutput)} into a new list with the node capacity of this list,
+     * filling each node like a load.
+     *
+     * @param input the stream to read from
+     * @return the list containing the text
+     * @throws IOException if the stream cannot be read
+     */
+    UnrolledTextList readList(DataInput input) throws IOException {
+        UnrolledTextList list = new UnrolledTextList(nodeSize);
+        CharBuffer chars = CharBuffer.allocate(Math.max(loadedLength(), 1)); // text of the node being filled
+        byte[] bytes = new byte[chars.capacity() * Character.BYTES];
+
+        for (int left = input.readInt(); left > 0; ) {
+            int count = Math.min(left, chars.remaining());
+            input.readFully(bytes, 0, count * Character.BYTES);
+            chars.put(ByteBuffer.wrap(bytes, 0, count * Character.BYTES).asCharBuffer());
+            left -= count;
+
+            if (!chars.hasRemaining()) {
+                list.appendChars(chars);
+            }
+        }
+
+        if (chars.position() > 0) {
+            list.appendChars(chars);
+        }
+
+        list.compactTail();
+
+        return list;
+    }
+
+    ///////////////////////////////////////////////////////////////////////////////////////
+    ////  Util methods
+    ///////////////////////////////////////////////////////////////////////////////////////
+
+    /**
+     * Checks the bounds for i and j
+     *
+     * @param i the index of the starting character in the document
+     * @param j the index of the ending character in the document
+     * @throws IllegalArgumentException if j < i or i < 0
+     */
+    private void boundsCheck(int i, int j) {
+        if (j < i || i < 0) {
+            throw new IllegalArgumentException("Ending index cannot be smaller than starting index");
+        }
+    }
+
+    /**
+     * Appends the node at the end of the list.
+     *
+     * @param node the node to be appended
+     */
+    private void append(Node node) {
+        if (head == null) {
+            head = node;
+        } else {
+            tail.next = node;
+        }
+
+        attach(tail, node);
+        tail = node;
+    }
+
+    /**
+     * Splits the tree of pieces into the pieces before and after the ith character of the edited text, splitting the
+     * piece containing it.
+     *
+     * @param root the root of the tree of pieces, null if the tree is empty
+     * @param i the index of the character in the edited text
+     * @return the roots of the trees of the first i characters and of the rest
+     */
+    private static Piece[] splitPieces(Piece root, int i) {
+        if (root == null) {
+            return new Piece[2];
+        }
+
+        int leftWeight = root.left == null ? 0 : root.left.weight;
+
+        if (i <= leftWeight) {
+            Piece[] trees = splitPieces(root.left, i);
+            root.left = trees[1];
+            trees[1] = reweigh(root);
+            return trees;
+        }
+
+        int offset = i - leftWeight; // index of the character in the piece
+
+        if (offset < root.length()) {
+            Piece left = mergePieces(root.left, root.subPiece(0, offset));
+            Piece right = mergePieces(root.subPiece(offset, root.length()), root.right);
+            return new Piece[]{left, right};
+        }
+
+        Piece[] trees = splitPieces(root.right, offset - root.length());
+        root.right = trees[0];
+        trees[0] = reweigh(root);
+        return trees;
+    }
+
+    /**
+     * Joins two trees of pieces, the pieces of the first tree coming first.
+     *
+     * @param first the root of the first tree, null if it is empty
+     * @param second the root of the second tree, null if it is empty
+     * @return the root of the joined tree
+     */
+    private static Piece mergePieces(Piece first, Piece second) {
+        if (first == null) {
+            return second;
+        }
+
+        if (second == null) {
+            return first;
+        }
+
+        if (first.priority > second.priority) {
+            first.right = mergePieces(first.right, second);
+            return reweigh(first);
+        }
+
+        second.left = mergePieces(first, second.left);
+        return reweigh(second);
+    }
+
+    /**
+     * Updates the weight of the piece after its children have changed.
+     *
+     * @param piece the root of the subtree
+     * @return the piece
+     */
+    private static Piece reweigh(Piece piece) {
+        piece.weight = (piece.left == null ? 0 : piece.left.weight) + piece.length()
+                + (piece.right == null ? 0 : piece.right.weight);
+        return piece;
+    }
+
+    /**
+     * Removes the node from the index while a batch of edits walks over it. The next pointer is kept, so the walk
+     * can continue.
+     *
+     * @param node the node which was walked over
+     * @return the next node
+     */
+    private Node removeNode(Node node) {
+        Node next = node.next;
+        detach(node);
+
+        return next;
+    }
+
+    /**
+     * Replaces the nodes between prev and after with the chain built by a batch of edits, and compacts them.
+     *
+     * @param prev the node before the chain, null if the chain starts the list
+     * @param chain the chain of nodes
+     * @param after the node after the chain, null if the chain ends the list
+     */
+    private void splice(Node prev, Chain chain, Node after) {
+        Node first = chain.head != null ? chain.head : after;
+        // the cursor may be after the chain, which now starts at another index
+        cursor = null;
+
+        if (prev == null) {
+            head = first;
+        } else {
+            prev.next = first;
+        }
+
+        if (chain.head != null) {
+            chain.tail.next = after;
+            attachAll(prev, chain.head, after);
+        }
+
+        if (after == null) {
+            tail = chain.tail != null ? chain.tail : prev;
+        }
+
+        Node firstModified = chain.head != null ? chain.head : prev != null ? prev : after;
+
+        if (firstModified != null) {
+            compactAround(firstModified, chain.tail != null ? chain.tail : after);
+        }
+    }
+
+    /**
+     * Writes the bytes in the buffer to the channel, and clears the buffer.
+     *
+     * @param channel the channel to write to
+     * @param bytes the buffer holding the bytes
+     * @return number of bytes written
+     * @throws IOException if the channel fails
+     */
+    private static int drain(WritableByteChannel channel, ByteBuffer bytes) throws IOException {
+        bytes.flip();
+        int written = bytes.remaining();
+
+        while (bytes.hasRemaining()) {
+            channel.write(bytes);
+        }
+
+        bytes.clear();
+
+        return written;
+    }
+
+    /**
+     * Writes the buffers to the channel, with gathering writes if the channel supports them, and clears the list.
+     *
+     * @param channel the channel to write to
+     * @param buffers the buffers holding the bytes, in order
+     * @return number of bytes written
+     * @throws IOException if the channel fails
+     */
+    private static long gather(WritableByteChannel channel, List<ByteBuffer> buffers) throws IOException {
+        ByteBuffer[] array = buffers.toArray(new ByteBuffer[0]);
+        long written = 0;
+
+        if (channel instanceof GatheringByteChannel) {
+            GatheringByteChannel gathering = (GatheringByteChannel) channel;
+            int first = 0; // index of the first buffer which has not been written completely
+
+            while (first < array.length) {
+                written += gathering.write(array, first, array.length - first);
+
+                while (first < array.length && !array[first].hasRemaining()) {
+                    first++;
+                }
+            }
+        } else {
+            for (ByteBuffer buffer : array) {
+                while (buffer.hasRemaining()) {
+                    written += channel.write(buffer);
+                }
+            }
+        }
+
+        buffers.clear();
+
+        return written;
+    }
+
+    /**
+     * Records that the text in the list has changed, dropping the cached String.
+     */
+    private void modified() {
+        modCount++;
+        text = null;
+    }
+
+    /**
+     * Returns the number of characters in a node filled by a load, which leaves a small gap in the node, so the first
+     * insertions into a loaded node neither grow its array nor split it.
+     *
+     * @return number of characters per loaded node
+     */
+    private int loadedLength() {
+        return nodeSize - nodeSize / LOAD_GAP;
+    }
+
+    /**
+     * Appends a new node containing the characters written to the buffer, and clears the buffer. The array of the node
+     * has the node capacity, so the gap left by the load is already allocated.
+     *
+     * @param chars the buffer holding the text of the node
+     */
+    private void appendChars(CharBuffer chars) {
+        chars.flip();
+        GapBuffer text = new GapBuffer(Math.max(nodeSize, chars.length()), nodeSize);
+        text.append(chars, 0, chars.length());
+        append(new Node(text));
+        chars.clear();
+    }
+
+    /**
+     * Returns a new isolated node sharing the text of the given node.
+     *
+     * @param node the node whose text needs to be shared
+     * @return the new node
+     */
+    private Node share(Node node) {
+        node.shared = true;
+        Node copy = new Node(node.text);
+        copy.shared = true;
+
+        return copy;
+    }
+
+    /**
+     * Makes the text of the node safe to modify, by giving the node its own copy of the text if it is shared.
+     *
+     * @param node the node which is going to be modified
+     */
+    private void unshare(Node node) {
+        if (node.shared) {
+            node.text = new GapBuffer(node.text, 0, node.text.length(), nodeSize);
+            node.shared = false;
+        }
+    }
+
+    /**
+     * Returns the node containing the ith character in the text document, and
+     * also returns the starting character index of that node.
+     *
+     * @param i the ith character which needs to be found
+     * @return the node containing the ith character and the starting character index of that node,
+     * returns <b>special value: </b> null, if the index is out of bounds
+     */
+    private Object[] findNode(int i) {
+        Cursor cursor = this.cursor;
+        Node curr = root;
+        int index = 0; // starting character index of the subtree rooted at curr
+        int traversed = 0; // number of visited nodes
+
+        if (cursor != null) {
+            // climbing up from the cursor till its subtree contains i
+            curr = cursor.node;
+            index = cursor.index - weight(curr.left);
+
+            while (curr.parent != null && (i < index || i >= index + curr.weight)) {
+                if (curr.parent.right == curr) {
+                    index -= weight(curr.parent.left) + curr.parent.text.length();
+                }
+
+                curr = curr.parent;
+                traversed++;
+            }
+        }
+
+        while (curr != null) {
+            int leftWeight = weight(curr.left);
+            traversed++;
+
+            if (i < index + leftWeight) {
+                curr = curr.left;
+            } else if (i < index + leftWeight + curr.text.length()) {
+                if (cursor == null || cursor.node != curr || cursor.index != index + leftWeight) {
+                    this.cursor = new Cursor(curr, index + leftWeight);
+                }
+
+                if (metrics != null) {
+                    metrics.nodesTraversed(traversed);
+                }
+
+                return new Object[]{curr, index + leftWeight};
+            } else {
+                index += leftWeight + curr.text.length();
+                curr = curr.right;
+            }
+        }
+
+        if (metrics != null) {
+            metrics.nodesTraversed(traversed);
+        }
+
+        return new Object[]{null, index};
+    }
+
+    /**
+     * Checks if i is in bounds
+     *
+     * @param ithNode the index of the starting character in the document
+     * @throws  IllegalArgumentException if i > document length
+     */
+    private void nodeFound(Node ithNode) {
+        if (ithNode == null) {
+            throw new IllegalArgumentException("starting index is greater than the document length");
+        }
+    }
+
+    ///////////////////////////////////////////////////////////////////////////////////////
+    ////  Compaction methods
+    ///////////////////////////////////////////////////////////////////////////////////////
+
+    /**
+     * Returns the minimum number of characters of a node which is not the only node of the list.
+     *
+     * @return half of the node capacity, rounded up
+     */
+    private int minFill() {
+        return (nodeSize + 1) / 2;
+    }
+
+    /**
+     * Compacts the nodes from first to last (inclusive) and their neighbours, if automatic compaction is on.
+     *
+     * @param first the first modified node
+     * @param last the last modified node, null if the list ends with first
+     */
+    private void compactAround(Node first, Node last) {
+        if (autoCompact) {
+            Node prev = previous(first);
+            compact(prev != null ? prev : first, last != null ? last : first);
+        }
+    }
+
+    /**
+     * Compacts the nodes at the end of the list, if automatic compaction is on.
+     */
+    private void compactTail() {
+        if (autoCompact && tail != null) {
+            compactAround(tail, tail);
+        }
+    }
+
+    /**
+     * Compacts the nodes from first to last (inclusive), and the node following last. Walking from the left, a
+     * node holding less than half of the node capacity is merged with the next node if they fit into a single node,
+     * otherwise the characters are split evenly between both.
+     *
+     * @param first the first node to be compacted
+     * @param last the last node to be compacted, must follow first in the list
+     */
+    private void compact(Node first, Node last) {
+        Node curr = first;
+        int minFill = minFill();
+
+        while (curr.next != null) {
+            Node next = curr.next;
+            boolean lastPair = curr == last;
+
+            if (curr.text.length() + next.text.length() <= nodeSize
+                    && (curr.text.length() < minFill || next.text.length() < minFill)) {
+                merge(curr);
+
+                // the merged node may still be too small, so it is compared with the node following it
+                if (next == last || lastPair) {
+                    last = curr;
+                }
+
+                continue;
+            }
+
+            if (curr.text.length() < minFill || next.text.length() < minFill) {
+                redistribute(curr);
+            }
+
+            if (lastPair) {
+                return;
+            }
+
+            curr = next;
+        }
+    }
+
+    /**
+     * Appends the text of the next node to the node, and removes the next node from the list.
+     *
+     * @param node the node to be merged with its next node
+     */
+    private void merge(Node node) {
+        Node next = node.next;
+
+        unshare(node);
+        node.text.append(next.text);
+        resized(node);
+        detach(next);
+        node.next = next.next;
+
+        if (tail == next) {
+            tail = node;
+        }
+    }
+
+    /**
+     * Moves characters between the node and its next node, so both hold half of their characters.
+     *
+     * @param node the node whose characters are split with its next node
+     */
+    private void redistribute(Node node) {
+        Node next = node.next;
+        int length = node.text.length();
+        int moved = (length + next.text.length()) / 2 - length; // number of characters moved into node
+
+        unshare(node);
+        unshare(next);
+
+        if (moved > 0) {
+            node.text.append(next.text, 0, moved);
+            next.text.delete(0, moved);
+        } else {
+            next.text.insert(0, node.text, length + moved, length);
+            node.text.delete(length + moved, length);
+        }
+
+        resized(node);
+        resized(next);
+
+        // the next node now starts at another index
+        Cursor cursor = this.cursor;
+
+        if (cursor != null && cursor.node == next) {
+            this.cursor = new Cursor(next, cursor.index + moved);
+        }
+    }
+
+    ///////////////////////////////////////////////////////////////////////////////////////
+    ////  Index methods
+    ///////////////////////////////////////////////////////////////////////////////////////
+
+    /**
+     * Adds the node to the index right after prev. The node must already be linked into the list.
+     *
+     * @param prev the node after which the node is placed, null if the node is the first one
+     * @param node the node to be added to the index
+     */
+    private void attach(Node prev, Node node) {
+        // every change to the text of the list goes through the index
+        modified();
+        node.left = null;
+        node.right = null;
+        node.weight = node.text.length();
+        node.newlines = node.text.count('\n', 0, node.text.length());
+        node.lines = node.newlines;
+        node.hash = null;
+
+        if (root == null) {
+            node.parent = null;
+            root = node;
+            return;
+        }
+
+        // the new node becomes the leftmost node of the subtree right of prev
+        Node parent = prev == null ? root : prev.right;
+
+        if (parent == null) {
+            prev.right = node;
+            node.parent = prev;
+        } else {
+            while (parent.left != null) {
+                parent = parent.left;
+            }
+
+            parent.left = node;
+            node.parent = parent;
+        }
+
+        for (Node curr = node.parent; curr != null; curr = curr.parent) {
+            curr.weight += node.weight;
+            curr.lines += node.lines;
+            curr.hash = null;
+        }
+
+        // restoring the heap order
+        while (node.parent != null && node.parent.priority < node.priority) {
+            rotateUp(node);
+        }
+    }
+
+    /**
+     * Adds the nodes from first (inclusive) to last (exclusive) to the index right after prev, in list order.
+     *
+     * @param prev the node after which the nodes are placed
+     * @param first the first node to be added
+     * @param last the node following the last node to be added
+     */
+    private void attachAll(Node prev, Node first, Node last) {
+        for (Node curr = first; curr != last; curr = curr.next) {
+            attach(prev, curr);
+            prev = curr;
+        }
+    }
+
+    /**
+     * Removes the node from the index. The next pointers are not modified.
+     *
+     * @param node the node to be removed from the index
+     */
+    private void detach(Node node) {
+        modified();
+
+        if (cursor != null && cursor.node == node) {
+            cursor = null;
+        }
+
+        // rotating the node down till it has at most one child
+        while (node.left != null && node.right != null) {
+            rotateUp(node.left.priority > node.right.priority ? node.left : node.right);
+        }
+
+        Node child = node.left != null ? node.left : node.right;
+        Node parent = node.parent;
+
+        if (child != null) {
+            child.parent = parent;
+        }
+
+        if (parent == null) {
+            root = child;
+        } else if (parent.left == node) {
+            parent.left = child;
+        } else {
+            parent.right = child;
+        }
+
+        node.left = null;
+        node.right = null;
+        node.parent = null;
+        update(parent);
+    }
+
+    /**
+     * Returns the node preceding the given node in the list.
+     *
+     * @param node the node whose predecessor needs to be found
+     * @return the previous node, null if node is the head
+     */
+    private Node previous(Node node) {
+        if (node.left != null) {
+            node = node.left;
+
+            while (node.right != null) {
+                node = node.right;
+            }
+
+            return node;
+        }
+
+        while (node.parent != null && node.parent.left == node) {
+            node = node.parent;
+        }
+
+        return node.parent;
+    }
+
+    /**
+     * Updates the index after the length of the text in the node has changed.
+     *
+     * @param node the node whose text was modified
+     */
+    private void resized(Node node) {
+        node.newlines = node.text.count('\n', 0, node.text.length());
+        update(node);
+    }
+
+    /**
+     * Updates the index from the node up to the root, after the subtree of the node has changed.
+     *
+     * @param node the node whose subtree was modified, null if the root was removed
+     */
+    private void update(Node node) {
+        modified();
+
+        for (Node curr = node; curr != null; curr = curr.parent) {
+            curr.weight = weight(curr.left) + curr.text.length() + weight(curr.right);
+            curr.lines = lines(curr.left) + curr.newlines + lines(curr.right);
+            curr.hash = null;
+        }
+    }
+
+    /**
+     * Rotates the node above its parent in the index.
+     *
+     * @param node the node to be rotated, must have a parent
+     */
+    private void rotateUp(Node node) {
+        Node parent = node.parent;
+        Node grandParent = parent.parent;
+
+        if (parent.left == node) {
+            parent.left = node.right;
+
+            if (node.right != null) {
+                node.right.parent = parent;
+            }
+
+            node.right = parent;
+        } else {
+            parent.right = node.left;
+
+            if (node.left != null) {
+                node.left.parent = parent;
+            }
+
+            node.left = parent;
+        }
+
+        parent.parent = node;
+        node.parent = grandParent;
+
+        if (grandParent == null) {
+            root = node;
+        } else if (grandParent.left == parent) {
+            grandParent.left = node;
+        } else {
+            grandParent.right = node;
+        }
+
+        node.weight = parent.weight;
+        node.lines = parent.lines;
+        node.hash = parent.hash;
+        parent.hash = null;
+        parent.weight = weight(parent.left) + parent.text.length() + weight(parent.right);
+        parent.lines = lines(parent.left) + parent.newlines + lines(parent.right);
+    }
+
+    /**
+     * Returns the number of characters in the index subtree rooted at the node.
+     *
+     * @param node the root of the subtree
+     * @return number of characters in the subtree, 0 if node is null
+     */
+    private int weight(Node node) {
+        return node == null ? 0 : node.weight;
+    }
+
+    /**
+     * Returns the number of line breaks in the index subtree rooted at the node.
+     *
+     * @param node the root of the subtree
+     * @return number of line breaks in the subtree, 0 if node is null
+     */
+    private int lines(Node node) {
+        return node == null ? 0 : node.lines;
+    }
+
+    /**
+     * Returns the hash of the text in the index subtree rooted at the node, computing it from the hashes of the
+     * children if the subtree was modified since it was last computed.
+     *
+     * @param node the root of the subtree
+     * @return hash of the text of the subtree, the hash of the empty text if node is null
+     */
+    private ContentHash hash(Node node) {
+        if (node == null) {
+            return ContentHash.EMPTY;
+        }
+
+        if (node.hash == null) {
+            node.hash = hash(node.left).concat(node.text.hash()).concat(hash(node.right));
+        }
+
+        return node.hash;
+    }
+
+    /**
+     * Returns the hash of the first length characters of the list, walking down from the root and hashing only the
+     * part of the node where the prefix ends.
+     *
+     * @param length number of characters in the prefix
+     * @return hash of the prefix
+     */
+    private ContentHash prefixHash(int length) {
+        ContentHash prefix = ContentHash.EMPTY;
+        Node curr = root;
+
+        while (curr != null && length > 0) {
+            int leftWeight = weight(curr.left);
+
+            if (length <= leftWeight) {
+                curr = curr.left;
+            } else if (length < leftWeight + curr.text.length()) {
+                return prefix.concat(hash(curr.left)).concat(ContentHash.of(curr.text, 0, length - leftWeight));
+            } else {
+                prefix = prefix.concat(hash(curr.left)).concat(curr.text.hash());
+                length -= leftWeight + curr.text.length();
+                curr = curr.right;
+            }
+        }
+
+        return prefix;
+    }
+
+    /**
+     * Returns the hash of the last length characters of the list.
+     *
+     * @param length number of characters in the suffix
+     * @return hash of the suffix
+     */
+    private ContentHash suffixHash(int length) {
+        return prefixHash(length() - length).suffixOf(hash(root), length);
     }
 }
@@ -0,0 +1,274 @@
+/*
+ * Copyright 2020 <Copyright Vasu Gupta>
+ * Vasu Gupta
+ * Email: vasu99g@gmail.com
+ */
+
+package texteditor;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Stream;
+
+/**
+ * <b>Workspace</b> represents a set of editors sharing a memory budget.
+ * <p>
+ * The workspace keeps the documents in memory in least recently used order. Every operation of an editor which needs
+ * its document marks it as the most recently used, and once the editors in memory hold more than the budget, counting
+ * their documents, undo histories, clipboards and unsaved edits, the least recently used ones are evicted to spill
+ * files in a directory of the workspace. An evicted editor also spills its clips, its undo history and its unsaved
+ * edits next to its document, since they may share its nodes, and reads them back with it. An evicted document is
+ * read back by the next operation which needs it, so the editors are used as if all the documents were in memory. An
+ * editor being used by another thread is skipped rather than waited for, and the document being used is never
+ * evicted, so a single document larger than the budget stays in memory while it is used. The spill files are written
+ * without holding the workspace, so the other editors do not wait for the disk.
+ * <p>
+ * The dictionary is shared by all the editors, whether they belong to a workspace or not.
+ */
+public final class Workspace implements Closeable {
+    private final long memoryBudget; // max number of bytes held by the editors in memory
+    private final Path spillDirectory; // directory of the spill files
+    private final Set<TextEditor> editors = new HashSet<>(); // editors of the workspace
+    private final Map<TextEditor, Long> resident = new LinkedHashMap<>(16, 0.75f, true); // footprints, LRU first
+    private long memoryUsage; // estimated number of bytes held by the editors in memory
+    private boolean closed; // true once the workspace is closed
+
+    /**
+     * Constructs an empty workspace, whose spill files are kept in a new temporary directory.
+     *
+     * @param memoryBudget max number of bytes held by the editors in memory
+     * @throws IllegalArgumentException if memoryBudget is negative
+     * @throws IOException if the directory of the spill files cannot be created
+     */
+    public Workspace(long memoryBudget) throws IOException {
+        this(memoryBudget, Path.of(System.getProperty("java.io.tmpdir")));
+    }
+
+    /**
+     * Constructs an empty workspace, whose spill files are kept in a new directory inside the given directory.
+     *
+     * @param memoryBudget max number of bytes held by the editors in memory
+     * @param directory the directory to create the directory of the spill files in
+     * @throws IllegalArgumentException if memoryBudget is negative or directory is null
+     * @throws IOException if the directory of the spill files cannot be created
+     */
+    public Workspace(long memoryBudget, Path directory) throws IOException {
+        if (memoryBudget < 0) {
+            throw new IllegalArgumentException("Memory budget cannot be negative");
+        }
+
+        if (directory == null) {
+            throw new IllegalArgumentException("Directory cannot be null");
+        }
+
+        this.memoryBudget = memoryBudget;
+        spillDirectory = Files.createTempDirectory(directory, "workspace");
+    }
+
+    /**
+     * Opens the file into a new editor of the workspace, recovering the document from its journal if needed.
+     *
+     * @param path the path of the file
+     * @return the editor of the file
+     * @throws IllegalArgumentException if path is null
+     * @throws IllegalStateException if the workspace is closed
+     * @throws IOException if the file cannot be read
+     */
+    public TextEditor open(Path path) throws IOException {
+        TextEditor editor = TextEditor.open(path);
+        add(editor);
+
+        return editor;
+    }
+
+    /**
+     * Adds the editor to the workspace, which may evict the documents of the other editors.
+     *
+     * @param editor the editor to be added
+     * @throws IllegalArgumentException if editor is null or already belongs to a workspace
+     * @throws IllegalStateException if the workspace is closed
+     */
+    public void add(TextEditor editor) {
+        if (editor == null) {
+            throw new IllegalArgumentException("Editor cannot be null");
+        }
+
+        synchronized (this) {
+            if (closed) {
+                throw new IllegalStateException("Workspace is closed");
+            }
+
+            if (!editors.add(editor)) {
+                throw new IllegalArgumentException("Editor already belongs to the workspace");
+            }
+        }
+
+        try {
+            editor.join(this);
+        } catch (IllegalArgumentException exception) {
+            synchronized (this) {
+                editors.remove(editor);
+            }
+
+            throw exception;
+        }
+    }
+
+    /**
+     * Removes the editor from the workspace, reading its document back if it was evicted.
+     *
+     * @param editor the editor to be removed
+     * @throws IllegalArgumentException if editor does not belong to the workspace
+     */
+    public void remove(TextEditor editor) {
+        synchronized (this) {
+            if (!editors.remove(editor)) {
+                throw new IllegalArgumentException("Editor does not belong to the workspace");
+            }
+
+            Long footprint = resident.remove(editor);
+            memoryUsage -= footprint != null ? footprint : 0;
+        }
+
+        editor.leave();
+    }
+
+    /**
+     * Returns the estimated number of bytes held by the editors in memory.
+     *
+     * @return memory used by the editors in bytes
+     */
+    public synchronized long memoryUsage() {
+        return memoryUsage;
+    }
+
+    /**
+     * Returns the max number of bytes held by the editors in memory.
+     *
+     * @return the memory budget in bytes
+     */
+    public long memoryBudget() {
+        return memoryBudget;
+    }
+
+    /**
+     * Returns the number of documents in memory.
+     *
+     * @return number of documents which are not evicted
+     */
+    public synchronized int residentDocuments() {
+        return resident.size();
+    }
+
+    /**
+     * Removes every editor from the workspace, reading the evicted documents back, and deletes the directory of the
+     * spill files.
+     *
+     * @throws IOException if the directory of the spill files cannot be deleted
+     */
+    @Override
+    public void close() throws IOException {
+        List<TextEditor> removed;
+
+        synchronized (this) {
+            closed = true;
+            removed = new ArrayList<>(editors);
+        }
+
+        for (TextEditor editor : removed) {
+            remove(editor);
+        }
+
+        try (Stream<Path> files = Files.list(spillDirectory)) {
+            for (Iterator<Path> iterator = files.iterator(); iterator.hasNext(); ) {
+                Files.deleteIfExists(iterator.next());
+            }
+        }
+
+        Files.deleteIfExists(spillDirectory);
+    }
+
+    /**
+     * Marks the document of the editor as the most recently used, and evicts the least recently used documents till
+     * the editors in memory fit into the budget. Called by the editor, with its write lock or read lock held. The
+     * victims are picked while holding the workspace, and evicted once it is released.
+     *
+     * @param editor the editor whose document was used
+     * @param footprint estimated number of bytes held by the editor
+     */
+    void accessed(TextEditor editor, long footprint) {
+        List<TextEditor> victims = new ArrayList<>();
+
+        synchronized (this) {
+            if (!editors.contains(editor)) {
+                // the editor is being removed from the workspace
+                return;
+            }
+
+            Long previous = resident.put(editor, footprint);
+            memoryUsage += footprint - (previous != null ? previous : 0);
+            long excess = memoryUsage - memoryBudget; // number of bytes left to be released
+
+            for (Iterator<Map.Entry<TextEditor, Long>> iterator = resident.entrySet().iterator();
+                 excess > 0 && iterator.hasNext(); ) {
+                Map.Entry<TextEditor, Long> entry = iterator.next();
+
+                if (entry.getKey() != editor) {
+                    victims.add(entry.getKey());
+                    excess -= entry.getValue();
+                }
+            }
+        }
+
+        for (TextEditor victim : victims) {
+            evict(victim);
+        }
+    }
+
+    /**
+     * Records that the document of the editor was evicted. Called by the editor, with its write lock held.
+     *
+     * @param editor the evicted editor
+     */
+    synchronized void evicted(TextEditor editor) {
+        Long footprint = resident.remove(editor);
+        memoryUsage -= footprint != null ? footprint : 0;
+    }
+
+    /**
+     * Evicts the document of the editor to a new spill file, unless the editor is in use or was already evicted.
+     *
+     * @param editor the editor to be evicted
+     */
+    private void evict(TextEditor editor) {
+        // the editors never wait for each other here, since an editor which is in use is skipped
+        Path file = null;
+
+        try {
+            file = Files.createTempFile(spillDirectory, "document", ".spill");
+
+            if (editor.evict(file)) {
+                return;
+            }
+        } catch (IOException exception) {
+            // the document stays in memory
+        }
+
+        try {
+            if (file != null) {
+                Files.deleteIfExists(file);
+            }
+        } catch (IOException exception) {
+            // the file is deleted together with the directory when the workspace is closed
+        }
+    }
+}